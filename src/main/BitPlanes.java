@@ -0,0 +1,116 @@
+package main;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Decomposition of packed RGB images into their 24 bit planes in a single pass.
+ * <p>
+ * Plane {@code p} holds bit {@code p} of every pixel: planes 0 to 7 are the blue bits (plane 0 being the LSB layer
+ * used by {@link Steganography}), 8 to 15 the green bits and 16 to 23 the red bits. A plane is stored as a packed
+ * bitmap where each row starts on a new word: bit {@code x % 64} of word {@code y * stride + x / 64}, with
+ * {@code stride} = ceil(width / 64), is the bit of pixel (x, y).
+ * @see Steganography#revealBWImage(int[][])
+ */
+public final class BitPlanes
+{
+    /** Number of bit planes of a packed RGB image */
+    public static final int PLANES = 24;
+
+    /** Mask selecting all the planes */
+    public static final int ALL = (1 << PLANES) - 1;
+
+    private static final int ROWS_PER_BAND = 64;
+
+    /**
+     * Returns the number of words of each row of a plane
+     * @param width The width of the image
+     * @return The stride of the packed bitmaps
+     */
+    public static int getStride(int width)
+    {
+        return (width + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Extracts the selected bit planes of an image, reading each pixel once. Bands of rows are processed in parallel
+     * @param image a HxW int array
+     * @param planeMask a mask whose bit {@code p} selects plane {@code p}, e.g. {@link #ALL}
+     * @return an array of {@link #PLANES} packed bitmaps, {@code null} for planes which were not selected
+     */
+    public static long[][] decompose(int[][] image, int planeMask)
+    {
+        assert Utils.isImage(image) : "Not a valid image";
+        assert (planeMask & ~ALL) == 0 : "Not a valid plane mask";
+
+        int height = image.length;
+        int width = image[0].length;
+        int stride = getStride(width);
+
+        int[] selected = IntStream.range(0, PLANES).filter(p -> (planeMask >> p & 1) == 1).toArray();
+        long[][] planes = new long[PLANES][];
+        for(int p : selected)
+            planes[p] = new long[height * stride];
+
+        int bands = (height + ROWS_PER_BAND - 1) / ROWS_PER_BAND;
+        IntStream.range(0, bands).parallel().forEach(band ->
+        {
+            long[] words = new long[selected.length];
+            int last = Math.min(height, (band + 1) * ROWS_PER_BAND);
+
+            for(int y=band * ROWS_PER_BAND; y<last; ++y)
+            {
+                int[] row = image[y];
+                for(int word=0; word<stride; ++word)
+                {
+                    int first = word * Long.SIZE;
+                    int count = Math.min(Long.SIZE, width - first);
+
+                    Arrays.fill(words, 0);
+                    for(int i=0; i<count; ++i)
+                    {
+                        int rgb = row[first + i];
+                        for(int j=0; j<selected.length; ++j)
+                            words[j] |= (long)(rgb >>> selected[j] & 1) << i;
+                    }
+
+                    for(int j=0; j<selected.length; ++j)
+                        planes[selected[j]][y * stride + word] = words[j];
+                }
+            }
+        });
+
+        return planes;
+    }
+
+    /**
+     * Extracts all the bit planes of an image, reading each pixel once
+     * @param image a HxW int array
+     * @return an array of {@link #PLANES} packed bitmaps
+     * @see #decompose(int[][], int)
+     */
+    public static long[][] decompose(int[][] image)
+    {
+        return decompose(image, ALL);
+    }
+
+    /**
+     * Converts a packed bitmap to a black and white image, which can be rendered with {@link ImageMessage#toRGB(boolean[][])}
+     * @param plane a packed bitmap of a plane
+     * @param height the height of the image
+     * @param width the width of the image
+     * @return a HxW boolean array, true where the bit is set
+     */
+    public static boolean[][] toBWImage(long[] plane, int height, int width)
+    {
+        int stride = getStride(width);
+        assert plane.length == height * stride : "Plane does not match image size";
+
+        boolean[][] image = new boolean[height][width];
+        for(int y=0; y<height; ++y)
+            for(int x=0; x<width; ++x)
+                image[y][x] = (plane[y * stride + x / Long.SIZE] >>> x & 1) == 1;
+
+        return image;
+    }
+}
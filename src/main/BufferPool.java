@@ -0,0 +1,144 @@
+package main;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe pool of reusable rasters and bit buffers, so that batch processing does not allocate a full-size
+ * image or bit array for every image it handles.
+ * <p>
+ * Rasters are bucketed by their exact dimensions. Bit buffers are bucketed by capacity, rounded up to the next
+ * power of two, so an acquired bit buffer is usually larger than requested: callers must keep track of the
+ * number of meaningful bits themselves. Acquired buffers are <b>not</b> cleared.
+ * @see Steganography#embedText(int[][], String, BufferPool)
+ * @see Steganography#revealText(int[][], BufferPool)
+ * @see Helper#readChecked(String, BufferPool)
+ * @see FrameSequence#readFrame(int, BufferPool)
+ */
+public final class BufferPool
+{
+    /** Largest bit buffer the pool can provide, the largest array most virtual machines allocate */
+    public static final int MAX_BITS = Integer.MAX_VALUE - 8;
+
+    private final int maxPerBucket;
+
+    private final ConcurrentHashMap<Long, ArrayDeque<int[][]>> rasters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, ArrayDeque<boolean[]>> bits = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxPerBucket The maximum number of idle buffers kept for each size, extra released buffers are dropped
+     */
+    public BufferPool(int maxPerBucket)
+    {
+        assert maxPerBucket > 0 : "Pool must keep at least one buffer per bucket";
+
+        this.maxPerBucket = maxPerBucket;
+    }
+
+    /**
+     * Borrows a raster from the pool, allocating it if no idle raster of this size is available
+     * @param height The height of the raster
+     * @param width The width of the raster
+     * @return A HxW int array with unspecified content
+     */
+    public int[][] acquireRaster(int height, int width)
+    {
+        assert height > 0 && width > 0 : "Not a valid image size";
+
+        int[][] raster = poll(rasters.get(rasterKey(height, width)));
+        return raster != null ? raster : new int[height][width];
+    }
+
+    /**
+     * Gives a raster back to the pool
+     * @param raster A raster obtained from {@link #acquireRaster(int, int)}, which must not be used afterwards
+     */
+    public void releaseRaster(int[][] raster)
+    {
+        assert Utils.isImage(raster) : "Not a valid image";
+
+        offer(rasters.computeIfAbsent(rasterKey(raster.length, raster[0].length), k -> new ArrayDeque<>()), raster);
+    }
+
+    /**
+     * Borrows a bit buffer from the pool, allocating it if no idle buffer of this capacity is available
+     * @param length The minimum number of bits
+     * @return A boolean array of at least {@code length} values, with unspecified content
+     * @throws IllegalArgumentException if {@code length} exceeds {@link #MAX_BITS}
+     */
+    public boolean[] acquireBits(int length)
+    {
+        assert length >= 0 : "Negative length";
+        if(length > MAX_BITS)
+            throw new IllegalArgumentException("Bit buffer too large: " + length);
+
+        int bucket = bitsBucket(length);
+        boolean[] buffer = poll(bits.get(bucket));
+        return buffer != null ? buffer : new boolean[bucketSize(bucket)];
+    }
+
+    /**
+     * Gives a bit buffer back to the pool
+     * @param buffer A buffer obtained from {@link #acquireBits(int)}, which must not be used afterwards
+     */
+    public void releaseBits(boolean[] buffer)
+    {
+        int bucket = bitsBucket(buffer.length);
+
+        // Buffers which were not allocated by the pool do not fit a bucket
+        if(buffer.length != bucketSize(bucket))
+            return;
+
+        offer(bits.computeIfAbsent(bucket, k -> new ArrayDeque<>()), buffer);
+    }
+
+    /**
+     * Drops every idle buffer, letting them be garbage collected
+     */
+    public void clear()
+    {
+        rasters.clear();
+        bits.clear();
+    }
+
+    private static long rasterKey(int height, int width)
+    {
+        return ((long)height << 32) | width;
+    }
+
+    /**
+     * @return The base-2 logarithm of the smallest power of two greater or equal to {@code length}
+     */
+    private static int bitsBucket(int length)
+    {
+        return length <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    /**
+     * @return The capacity of the buffers of a bucket, a power of two except for the last bucket
+     */
+    private static int bucketSize(int bucket)
+    {
+        return bucket == Integer.SIZE - 1 ? MAX_BITS : 1 << bucket;
+    }
+
+    private static <T> T poll(ArrayDeque<T> queue)
+    {
+        if(queue == null)
+            return null;
+
+        synchronized(queue)
+        {
+            return queue.pollFirst();
+        }
+    }
+
+    private <T> void offer(ArrayDeque<T> queue, T buffer)
+    {
+        synchronized(queue)
+        {
+            if(queue.size() < maxPerBucket)
+                queue.addFirst(buffer);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decides whether a payload fits a cover and how to embed it from their sizes alone, without pixel data nor
+ * embedding attempts.
+ * <p>
+ * A {@link Payload} records the number of bits of a payload in each codec, measured once. A {@link Plan} of that
+ * payload for a cover then gives in constant time, for each {@link Mode}, the capacity of the cover, the number of
+ * pixels a cover needs, and the expected number of changed pixels, assuming the LSB layer of the cover is random.
+ * The cheapest viable mode is the one which changes the fewest pixels, so that batch jobs can be rejected, or
+ * sent to a larger cover, before any image is decoded.
+ * <p>
+ * Every mode stores at most one payload bit per pixel. There is no multi-bit embedding, which would write several
+ * low bits of each pixel, so no such mode is planned; {@link Mode#MATRIX} goes the other way, holding fewer bits
+ * than plain LSB embedding in exchange for fewer changed pixels.
+ * @see Utils#isCoverLargeEnough(int[][], boolean[])
+ */
+public final class CapacityPlanner
+{
+    /**
+     * The ways of embedding a payload
+     */
+    public enum Mode
+    {
+        /** Framed payload in rows, see {@link Steganography#embedFramedText(int[][], String, Traversal, int, int)} */
+        LINEAR(Traversal.LINEAR),
+        /** Framed payload in a spiral */
+        SPIRAL(Traversal.SPIRAL),
+        /** Framed payload along a Hilbert curve */
+        HILBERT(Traversal.HILBERT),
+        /**
+         * Payload without header, {@code k} bits per group of {@code 2^k-1} pixels, see {@link MatrixEmbedding}.
+         * Its capacity is below one bit per pixel, but it changes at most one pixel per group. The length and {@code k} have to be known to reveal it, and neither checksum nor encryption is available
+         */
+        MATRIX(Traversal.LINEAR);
+
+        private final Traversal traversal;
+
+        Mode(Traversal traversal)
+        {
+            this.traversal = traversal;
+        }
+
+        /**
+         * @return The order of the pixels carrying the payload
+         */
+        public Traversal getTraversal()
+        {
+            return traversal;
+        }
+    }
+
+    /** Smallest number of bits per group considered for {@link Mode#MATRIX}, below which it is plain LSB embedding */
+    public static final int MIN_MATRIX_BITS = 2;
+
+    private static final int CODECS = 3;
+
+    /**
+     * The sizes of a payload, without its bits
+     */
+    public static final class Payload
+    {
+        // Number of bits in each codec, -1 if the payload cannot be encoded with it
+        private final long[] sizes;
+        private final int flags;
+
+        private Payload(long[] sizes, int flags)
+        {
+            this.sizes = sizes;
+            this.flags = flags;
+        }
+
+        /**
+         * Describes a boolean array, which is embedded as it is
+         * @param bits The number of bits of the array
+         * @return The description of the array
+         */
+        public static Payload ofBits(long bits)
+        {
+            assert bits >= 0 : "Not a valid size";
+
+            return new Payload(new long[] {bits, -1, -1}, 0);
+        }
+
+        /**
+         * Describes a String, measuring it in every text codec; this takes a pass over the String, so that planning
+         * it for any number of covers is then constant time
+         * @param message The String to be embedded
+         * @return The description of the String
+         * @see HuffmanCodec#getEncodedSize(String)
+         */
+        public static Payload ofText(String message)
+        {
+            return ofText(message.length(), TextMessage.utf8Length(message), HuffmanCodec.getEncodedSize(message));
+        }
+
+        /**
+         * Describes a String from sizes measured beforehand, e.g. recorded with a batch job
+         * @param chars The number of chars of the String
+         * @param utf8Bytes The number of bytes of its UTF-8 representation
+         * @param huffmanBits The number of bits of its compressed representation, or -1 if unknown
+         * @return The description of the String
+         */
+        public static Payload ofText(long chars, long utf8Bytes, long huffmanBits)
+        {
+            assert chars >= 0 && utf8Bytes >= chars : "Not valid sizes";
+
+            return new Payload(new long[] {Character.SIZE * chars, Byte.SIZE * utf8Bytes, huffmanBits}, 0);
+        }
+
+        /**
+         * @param flags The optional features, {@link PayloadHeader#CRC32C} and {@link PayloadHeader#ENCRYPTED}, or 0
+         * @return A description of the same payload with these features
+         */
+        public Payload withFlags(int flags)
+        {
+            assert (flags & ~(PayloadHeader.CRC32C | PayloadHeader.ENCRYPTED)) == 0 : "Not a valid flag";
+
+            return new Payload(sizes, flags);
+        }
+
+        /**
+         * @param codec A codec, e.g. {@link PayloadHeader#UTF8}
+         * @return The number of bits of the payload in this codec, or -1 if it cannot be encoded with it
+         */
+        public long getSize(int codec)
+        {
+            return codec >= 0 && codec < CODECS ? sizes[codec] : -1;
+        }
+
+        /**
+         * @return The optional features of the payload
+         */
+        public int getFlags()
+        {
+            return flags;
+        }
+
+        /**
+         * Picks the codec giving the fewest bits, the first one on ties. An encrypted String is always UTF-8,
+         * as {@link PayloadCipher#embedText(int[][], String, char[], Traversal)} encodes it
+         */
+        private int getCodec()
+        {
+            if((flags & PayloadHeader.ENCRYPTED) != 0 && sizes[PayloadHeader.UTF8] >= 0)
+                return PayloadHeader.UTF8;
+
+            int codec = PayloadHeader.UTF16;
+            for(int c=1; c<CODECS; ++c)
+                if(sizes[c] >= 0 && sizes[c] < sizes[codec])
+                    codec = c;
+
+            return codec;
+        }
+    }
+
+    /**
+     * The capacities and costs of the modes for a payload and a cover
+     */
+    public static final class Plan
+    {
+        private final int height;
+        private final int width;
+        private final int codec;
+        private final long size;
+        private final int flags;
+        private final int matrixBits;
+
+        private Plan(int height, int width, int codec, long size, int flags)
+        {
+            this.height = height;
+            this.width = width;
+            this.codec = codec;
+            this.size = size;
+            this.flags = flags;
+
+            int k = 0;
+            if(flags == 0)
+                for(int bits=MatrixEmbedding.MAX_BITS; bits>=MIN_MATRIX_BITS && k == 0; --bits)
+                    if(size <= MatrixEmbedding.getCapacity(height, width, bits))
+                        k = bits;
+            this.matrixBits = k;
+        }
+
+        /**
+         * @return The codec of the payload, the most compact one available
+         */
+        public int getCodec()
+        {
+            return codec;
+        }
+
+        /**
+         * @return The number of bits of the payload in its codec, before any encryption
+         */
+        public long getPayloadSize()
+        {
+            return size;
+        }
+
+        /**
+         * Returns the number of payload bits the cover can hold in a mode, with the features of the payload
+         * @param mode A mode
+         * @return The capacity of the cover, in bits of the payload in its codec, which is 0 if the cover cannot
+         * even hold the header or if the mode does not support the features of the payload
+         */
+        public long getCapacity(Mode mode)
+        {
+            long pixels = (long)height * width;
+            if(mode == Mode.MATRIX)
+                return flags != 0 ? 0 : Math.min(Integer.MAX_VALUE, MatrixEmbedding.getCapacity(height, width, MIN_MATRIX_BITS));
+
+            long available = Math.min(Integer.MAX_VALUE, pixels - PayloadHeader.SIZE);
+            if((flags & PayloadHeader.ENCRYPTED) != 0)
+                return PayloadCipher.getPlaintextCapacity(available);
+            if((flags & PayloadHeader.CRC32C) != 0)
+                available -= PayloadHeader.TRAILER_SIZE;
+
+            return Math.max(0, available);
+        }
+
+        /**
+         * Returns the number of pixels a cover needs to hold the payload in a mode
+         * @param mode A mode
+         * @return The smallest number of pixels, or -1 if the mode does not support the features of the payload
+         */
+        public long getRequiredPixels(Mode mode)
+        {
+            if(mode == Mode.MATRIX)
+                return flags != 0 ? -1 : (size + MIN_MATRIX_BITS - 1) / MIN_MATRIX_BITS * MatrixEmbedding.getGroupSize(MIN_MATRIX_BITS);
+            if((flags & PayloadHeader.ENCRYPTED) != 0)
+                return PayloadHeader.SIZE + PayloadCipher.getEncryptedSize(size);
+
+            return PayloadHeader.SIZE + size + ((flags & PayloadHeader.CRC32C) != 0 ? PayloadHeader.TRAILER_SIZE : 0);
+        }
+
+        /**
+         * Returns the side of the smallest square cover which holds the payload in a mode
+         * @param mode A mode
+         * @return The side of the square, or -1 if the mode does not support the features of the payload
+         */
+        public long getRequiredSide(Mode mode)
+        {
+            long pixels = getRequiredPixels(mode);
+            if(pixels < 0)
+                return -1;
+
+            long side = (long)Math.sqrt((double)pixels);
+            while(side * side < pixels)
+                ++side;
+            while(side > 0 && (side - 1) * (side - 1) >= pixels)
+                --side;
+
+            return side;
+        }
+
+        /**
+         * @param mode A mode
+         * @return Whether the cover can hold the payload in this mode
+         */
+        public boolean isViable(Mode mode)
+        {
+            if(size > Integer.MAX_VALUE)
+                return false;
+            if(mode == Mode.MATRIX)
+                return matrixBits > 0;
+
+            long required = getRequiredPixels(mode);
+
+            return required - PayloadHeader.SIZE <= Integer.MAX_VALUE && required <= (long)height * width;
+        }
+
+        /**
+         * @return The number of bits per group of {@link Mode#MATRIX}, the largest one which fits, or 0 if it is not viable
+         */
+        public int getMatrixBits()
+        {
+            return matrixBits;
+        }
+
+        /**
+         * Returns the number of pixels a mode is expected to change, assuming the LSB layer of the cover is random
+         * @param mode A mode
+         * @return The expected number of changed pixels, which is infinite if the mode is not viable
+         */
+        public double getExpectedChanges(Mode mode)
+        {
+            if(!isViable(mode))
+                return Double.POSITIVE_INFINITY;
+            if(mode == Mode.MATRIX)
+                return (double)((size + matrixBits - 1) / matrixBits) * (1 - Math.scalb(1.0, -matrixBits));
+
+            return getRequiredPixels(mode) / 2.0;
+        }
+
+        /**
+         * @return The viable mode which changes the fewest pixels, the first one on ties, or {@code null} if none is viable
+         */
+        public Mode getBestMode()
+        {
+            return getBestMode(Mode.values());
+        }
+
+        /**
+         * @param modes The modes to choose from, e.g. the framed ones when the reader does not know the length
+         * @return The viable mode among {@code modes} which changes the fewest pixels, the first one on ties,
+         * or {@code null} if none is viable
+         */
+        public Mode getBestMode(Mode... modes)
+        {
+            Mode best = null;
+            for(Mode mode : modes)
+                if(isViable(mode) && (best == null || getExpectedChanges(mode) < getExpectedChanges(best)))
+                    best = mode;
+
+            return best;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("%dx%d cover, %d-bit payload in codec %d", height, width, size, codec));
+            for(Mode mode : Mode.values())
+                builder.append(String.format(", %s %d/%d", mode, getRequiredPixels(mode), getCapacity(mode)));
+
+            return builder.append(", best ").append(getBestMode()).toString();
+        }
+    }
+
+    /**
+     * Plans the embedding of a payload into a cover of given dimensions
+     * @param height The height of the cover
+     * @param width The width of the cover
+     * @param payload The description of the payload
+     * @return The plan, computed in constant time
+     */
+    public static Plan plan(int height, int width, Payload payload)
+    {
+        assert height > 0 && width > 0 : "Not valid dimensions";
+
+        int codec = payload.getCodec();
+
+        return new Plan(height, width, codec, payload.getSize(codec), payload.getFlags());
+    }
+
+    /**
+     * Plans the embedding of a payload into an image file, reading only the dimensions from its header
+     * @param path The path of the cover
+     * @param payload The description of the payload
+     * @return The plan
+     * @throws IOException If the file cannot be read or is not an image
+     */
+    public static Plan plan(String path, Payload payload) throws IOException
+    {
+        ImageInputStream input = ImageIO.createImageInputStream(new File(path));
+        ImageReader reader = FrameSequence.openReader(input, path);
+        try
+        {
+            return plan(reader.getHeight(0), reader.getWidth(0), payload);
+        }
+        finally
+        {
+            reader.dispose();
+            input.close();
+        }
+    }
+}
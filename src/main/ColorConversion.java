@@ -0,0 +1,211 @@
+package main;
+
+/**
+ * Table-driven conversion of packed RGB colors to grayscale, with automatic black and white thresholding.
+ * <p>
+ * Each engine precomputes per-channel tables for its luma weighting, so converting a pixel costs three
+ * lookups and no division. The histogram needed by Otsu's thresholding method can be gathered during
+ * the grayscale conversion itself, sparing a pass over the image.
+ * @see ImageMessage#toGray(int[][])
+ */
+public final class ColorConversion
+{
+    /**
+     * Weights of the red, green and blue components in the gray value
+     */
+    public enum Weighting
+    {
+        /** Plain average of the three components, as {@link ImageMessage#getGray(int)} */
+        AVERAGE,
+        /** ITU-R BT.601 luma: 0.299 R + 0.587 G + 0.114 B */
+        REC601,
+        /** ITU-R BT.709 luma: 0.2126 R + 0.7152 G + 0.0722 B */
+        REC709
+    }
+
+    /** Number of gray levels */
+    public static final int LEVELS = 256;
+
+    /** Engine computing the same gray values as {@link ImageMessage#getGray(int)} */
+    public static final ColorConversion AVERAGE = new ColorConversion(Weighting.AVERAGE);
+
+    private static final int FRACTION_BITS = 16;
+
+    private final Weighting weighting;
+
+    // For AVERAGE, the gray value of each sum of components between 0 and 765
+    private final int[] sumToGray;
+
+    // For the other weightings, the weighted value of each component in fixed point
+    private final int[] redTable;
+    private final int[] greenTable;
+    private final int[] blueTable;
+
+    /**
+     * Builds the tables of a conversion engine
+     * @param weighting The weights of the color components
+     */
+    public ColorConversion(Weighting weighting)
+    {
+        this.weighting = weighting;
+
+        if(weighting == Weighting.AVERAGE)
+        {
+            sumToGray = new int[3 * 0xFF + 1];
+            for(int sum=0; sum<sumToGray.length; ++sum)
+                sumToGray[sum] = sum / 3;
+
+            redTable = greenTable = blueTable = null;
+        }
+        else
+        {
+            double[] weights = weighting == Weighting.REC601 ?
+                new double[] {0.299, 0.587, 0.114} :
+                new double[] {0.2126, 0.7152, 0.0722};
+
+            sumToGray = null;
+            redTable = weightTable(weights[0]);
+            greenTable = weightTable(weights[1]);
+            blueTable = weightTable(weights[2]);
+        }
+    }
+
+    /**
+     * @return The weights of the color components used by this engine
+     */
+    public Weighting getWeighting()
+    {
+        return weighting;
+    }
+
+    /**
+     * Returns the gray value of a packed color
+     * @param rgb 32-bits RGB color
+     * @return an integer between 0 and 255
+     */
+    public int getGray(int rgb)
+    {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+
+        if(sumToGray != null)
+            return sumToGray[red + green + blue];
+
+        return (redTable[red] + greenTable[green] + blueTable[blue] + (1 << (FRACTION_BITS - 1))) >> FRACTION_BITS;
+    }
+
+    /**
+     * Converts packed RGB image to grayscale image, gathering its histogram in the same pass
+     * @param image a HxW int array
+     * @param destination a HxW int array receiving the result, may be {@code image} itself
+     * @param histogram an array of {@link #LEVELS} counters incremented for each gray value, or {@code null}
+     * @return {@code destination}
+     */
+    public int[][] toGray(int[][] image, int[][] destination, int[] histogram)
+    {
+        assert Utils.isImage(image) : "Not a valid image";
+        assert Utils.isImage(destination) && destination.length == image.length && destination[0].length == image[0].length : "Destination does not match image size";
+        assert histogram == null || histogram.length == LEVELS : "Histogram must have 256 counters";
+
+        int height = image.length;
+        int width = image[0].length;
+
+        for(int y=0; y<height; ++y)
+        {
+            int[] source = image[y];
+            int[] row = destination[y];
+
+            if(histogram == null)
+                for(int x=0; x<width; ++x)
+                    row[x] = getGray(source[x]);
+            else
+                for(int x=0; x<width; ++x)
+                    ++histogram[row[x] = getGray(source[x])];
+        }
+
+        return destination;
+    }
+
+    /**
+     * Converts packed RGB image to grayscale image
+     * @param image a HxW int array
+     * @return a HxW int array
+     */
+    public int[][] toGray(int[][] image)
+    {
+        assert Utils.isImage(image) : "Not a valid image";
+
+        return toGray(image, new int[image.length][image[0].length], null);
+    }
+
+    /**
+     * Converts packed RGB image to a black and white image, using a threshold computed with Otsu's method
+     * @param image a HxW int array
+     * @return a HxW boolean array
+     * @see #otsuThreshold(int[])
+     * @see ImageMessage#toBW(int[][], int)
+     */
+    public boolean[][] toBW(int[][] image)
+    {
+        assert Utils.isImage(image) : "Not a valid image";
+
+        int[] histogram = new int[LEVELS];
+        int[][] gray = toGray(image, new int[image.length][image[0].length], histogram);
+
+        return ImageMessage.toBW(gray, otsuThreshold(histogram), new boolean[gray.length][gray[0].length]);
+    }
+
+    /**
+     * Computes the threshold separating a histogram into two classes of maximal between-class variance (Otsu's method)
+     * @param histogram an array of {@link #LEVELS} counters
+     * @return the threshold to be given to {@link ImageMessage#getBW(int, int)}: values greater or equal to it belong to the bright class
+     */
+    public static int otsuThreshold(int[] histogram)
+    {
+        assert histogram.length == LEVELS : "Histogram must have 256 counters";
+
+        long total = 0;
+        double sum = 0;
+        for(int level=0; level<LEVELS; ++level)
+        {
+            total += histogram[level];
+            sum += (double)level * histogram[level];
+        }
+
+        long darkCount = 0;
+        double darkSum = 0;
+        double bestVariance = -1;
+        int best = 0;
+
+        for(int level=0; level<LEVELS; ++level)
+        {
+            darkCount += histogram[level];
+            darkSum += (double)level * histogram[level];
+            long brightCount = total - darkCount;
+            if(darkCount == 0)
+                continue;
+            if(brightCount == 0)
+                break;
+
+            double difference = darkSum / darkCount - (sum - darkSum) / brightCount;
+            double variance = (double)darkCount * brightCount * difference * difference;
+            if(variance > bestVariance)
+            {
+                bestVariance = variance;
+                best = level;
+            }
+        }
+
+        return best + 1;
+    }
+
+    private static int[] weightTable(double weight)
+    {
+        int[] table = new int[0xFF + 1];
+        for(int value=0; value<table.length; ++value)
+            table[value] = (int)Math.round(weight * value * (1 << FRACTION_BITS));
+
+        return table;
+    }
+}
@@ -0,0 +1,479 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reveals the payloads of every image of a directory tree, writing one JSON object per line for each image.
+ * <p>
+ * Directories are walked by a work-stealing {@link ForkJoinPool}, one task per directory and per image. Each image is
+ * probed with {@link PayloadProbe} first, and decoded as a whole only if it announces a payload. A failure only
+ * affects the image which caused it and is reported in its line. Lines are handed over to a writer thread, which
+ * appends them to the results file in batches and then records the paths of their images in a checkpoint file;
+ * a scan given the same checkpoint skips the images it lists, so that an interrupted scan can be resumed. Failed
+ * images are not recorded, so that a resumed scan retries them. Symbolic links to directories are not followed.
+ * <p>
+ * Each line holds the {@code path} of the image, the {@code mode} detected, which is {@code "framed"},
+ * {@code "spiral-image"}, {@code "none"} or {@code "error"}, the {@code length} of the payload in bits, the
+ * {@code checksum} status, which is {@code "ok"}, {@code "mismatch"} or {@code "none"}, and the {@code probeMs},
+ * {@code readMs} and {@code revealMs} timings. Framed payloads add their {@code layout}, their {@code codec} and,
+ * unless they are shards or encrypted, their {@code text}; failures add an {@code error} message.
+ */
+public final class CorpusScanner
+{
+    private static final String IMAGE_NAMES = "(?i).*\\.(png|bmp|gif|jpe?g)";
+
+    // Number of lines waiting for the writer before the scanning threads block
+    private static final int QUEUE_CAPACITY = 1024;
+
+    /**
+     * Counts of a scan
+     */
+    public static final class Summary
+    {
+        private final int scanned;
+        private final int skipped;
+        private final int failed;
+
+        Summary(int scanned, int skipped, int failed)
+        {
+            this.scanned = scanned;
+            this.skipped = skipped;
+            this.failed = failed;
+        }
+
+        /**
+         * @return The number of images scanned, failures included
+         */
+        public int getScanned()
+        {
+            return scanned;
+        }
+
+        /**
+         * @return The number of images skipped because the checkpoint lists them
+         */
+        public int getSkipped()
+        {
+            return skipped;
+        }
+
+        /**
+         * @return The number of images, or directories, which could not be scanned
+         */
+        public int getFailed()
+        {
+            return failed;
+        }
+
+        @Override
+        public String toString()
+        {
+            return scanned + " image(s) scanned, " + skipped + " skipped, " + failed + " failed";
+        }
+    }
+
+    /**
+     * Scans a directory tree with one thread per processor
+     * @param root The directory to scan
+     * @param results The path of the JSON lines file, to which lines are appended
+     * @param checkpoint The path of the file listing the scanned images, to which paths are appended, or {@code null} not to resume
+     * @return The counts of the scan
+     * @throws IOException if the results or the checkpoint cannot be written
+     * @see CorpusScanner#scan(String, String, String, int)
+     */
+    public static Summary scan(String root, String results, String checkpoint) throws IOException
+    {
+        return scan(root, results, checkpoint, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Scans a directory tree, skipping the images listed in the checkpoint
+     * @param root The directory to scan
+     * @param results The path of the JSON lines file, to which lines are appended
+     * @param checkpoint The path of the file listing the scanned images, to which paths are appended, or {@code null} not to resume
+     * @param parallelism The number of scanning threads
+     * @return The counts of the scan
+     * @throws IOException if the results or the checkpoint cannot be written
+     */
+    public static Summary scan(String root, String results, String checkpoint, int parallelism) throws IOException
+    {
+        assert parallelism > 0 : "Not a valid parallelism";
+
+        Set<String> done = new HashSet<>();
+        if(checkpoint != null && Files.exists(Paths.get(checkpoint)))
+            done.addAll(Files.readAllLines(Paths.get(checkpoint), StandardCharsets.UTF_8));
+
+        AtomicInteger scanned = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try(ResultWriter writer = new ResultWriter(Paths.get(results), checkpoint == null ? null : Paths.get(checkpoint)))
+        {
+            Scan scan = new Scan(done, writer, scanned, skipped, failed, parallelism);
+            pool.invoke(scan.new DirectoryTask(Paths.get(root).toAbsolutePath().normalize()));
+        }
+        catch(UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return new Summary(scanned.get(), skipped.get(), failed.get());
+    }
+
+    /**
+     * Reveals the payload of an image, if any
+     * @return The JSON object describing the image, without line separator
+     */
+    private static String describe(String path, long start, BufferPool rasters) throws IOException
+    {
+        PayloadProbe.Kind kind = PayloadProbe.probe(path);
+        long probed = System.nanoTime();
+        if(kind == PayloadProbe.Kind.NONE)
+            return line(path, "none", 0, "none", start, probed, probed, probed, null);
+
+        int[][] image = Helper.readChecked(path, rasters);
+        long read = System.nanoTime();
+        try
+        {
+            return describe(path, kind, image, start, probed, read);
+        }
+        finally
+        {
+            rasters.releaseRaster(image);
+        }
+    }
+
+    /**
+     * Reveals the payload announced by the probe from the decoded image
+     */
+    private static String describe(String path, PayloadProbe.Kind kind, int[][] image, long start, long probed, long read)
+    {
+        if(kind == PayloadProbe.Kind.SPIRAL_IMAGE)
+        {
+            int[] size = Steganography.revealSpiralImageSize(image);
+            return line(path, "spiral-image", (long)size[0] * size[1], "none", start, probed, read, System.nanoTime(), null);
+        }
+
+        // The CRC, if any, is checked by the reveal
+        PayloadHeader header = Steganography.revealHeader(image);
+        boolean[] payload = Steganography.revealFramedBitArray(image, header);
+        boolean crc = (header.getFlags() & PayloadHeader.CRC32C) != 0;
+        String text = payload == null || (header.getFlags() & (PayloadHeader.SHARD | PayloadHeader.ENCRYPTED)) != 0 ? null
+            : Steganography.decodeText(payload, header.getCodec());
+
+        StringBuilder extra = new StringBuilder()
+            .append(",\"layout\":").append(header.getLayout())
+            .append(",\"codec\":").append(header.getCodec());
+        if(text != null)
+            extra.append(",\"text\":").append(quote(text));
+
+        return line(path, "framed", header.getLength(), !crc ? "none" : payload != null ? "ok" : "mismatch",
+            start, probed, read, System.nanoTime(), extra.toString());
+    }
+
+    private static String line(String path, String mode, long length, String checksum, long start, long probed, long read, long revealed, String extra)
+    {
+        return "{\"path\":" + quote(path) + ",\"mode\":\"" + mode + "\",\"length\":" + length + ",\"checksum\":\"" + checksum + "\""
+            + ",\"probeMs\":" + millis(probed - start) + ",\"readMs\":" + millis(read - probed) + ",\"revealMs\":" + millis(revealed - read)
+            + (extra == null ? "" : extra) + "}";
+    }
+
+    private static String error(String path, Throwable e, long start)
+    {
+        long now = System.nanoTime();
+
+        return line(path, "error", 0, "none", start, now, now, now, ",\"error\":" + quote(String.valueOf(e)));
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Quotes a String as a JSON string, escaping the surrogates so that unpaired ones survive the UTF-8 encoding
+     */
+    private static String quote(String value)
+    {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for(int i=0; i<value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if(c < 0x20 || Character.isSurrogate(c))
+                builder.append(String.format("\\u%04x", (int)c));
+            else
+                builder.append(c);
+        }
+
+        return builder.append('"').toString();
+    }
+
+    /**
+     * State shared by the tasks of a scan
+     */
+    private static final class Scan
+    {
+        final Set<String> done;
+        final ResultWriter writer;
+        final AtomicInteger scanned;
+        final AtomicInteger skipped;
+        final AtomicInteger failed;
+
+        // Rasters of the images being revealed, reused across images of the same size
+        final BufferPool rasters;
+
+        Scan(Set<String> done, ResultWriter writer, AtomicInteger scanned, AtomicInteger skipped, AtomicInteger failed, int parallelism)
+        {
+            this.done = done;
+            this.writer = writer;
+            this.scanned = scanned;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.rasters = new BufferPool(parallelism);
+        }
+
+        @SuppressWarnings("serial")
+        final class DirectoryTask extends RecursiveAction
+        {
+            private final Path directory;
+
+            DirectoryTask(Path directory)
+            {
+                this.directory = directory;
+            }
+
+            @Override
+            protected void compute()
+            {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                try(DirectoryStream<Path> entries = Files.newDirectoryStream(directory))
+                {
+                    for(Path entry : entries)
+                    {
+                        // Following links could walk a cycle forever
+                        if(Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))
+                            tasks.add(new DirectoryTask(entry));
+                        else if(!entry.getFileName().toString().matches(IMAGE_NAMES))
+                            continue;
+                        else if(done.contains(entry.toString()))
+                            skipped.incrementAndGet();
+                        else
+                            tasks.add(new ImageTask(entry));
+                    }
+                }
+                catch(IOException | RuntimeException e)
+                {
+                    // The images listed so far are still scanned
+                    failed.incrementAndGet();
+                    submit(null, error(directory.toString(), e, System.nanoTime()));
+                }
+
+                invokeAll(tasks);
+            }
+        }
+
+        @SuppressWarnings("serial")
+        final class ImageTask extends RecursiveAction
+        {
+            private final Path image;
+
+            ImageTask(Path image)
+            {
+                this.image = image;
+            }
+
+            @Override
+            protected void compute()
+            {
+                String path = image.toString();
+                long start = System.nanoTime();
+                String line;
+                String checkpointed = path;
+                try
+                {
+                    line = describe(path, start, rasters);
+                }
+                catch(IOException | RuntimeException | AssertionError | OutOfMemoryError e)
+                {
+                    // Only this image is lost, e.g. to a truncated file or to an image too large for the heap,
+                    // and it stays out of the checkpoint since the failure may be transient
+                    failed.incrementAndGet();
+                    line = error(path, e, start);
+                    checkpointed = null;
+                }
+
+                scanned.incrementAndGet();
+                submit(checkpointed, line);
+            }
+        }
+
+        private void submit(String path, String line)
+        {
+            try
+            {
+                writer.submit(path, line);
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Appends lines to the results file from its own thread, batch after batch. The results are flushed before
+     * the paths of their images are appended to the checkpoint, so that a checkpointed image always has its line
+     */
+    private static final class ResultWriter implements AutoCloseable
+    {
+        private static final String[] END = new String[2];
+
+        private final BlockingQueue<String[]> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        private final BufferedWriter results;
+        private final BufferedWriter checkpoint;
+        private final Thread thread;
+        private volatile IOException failure;
+
+        ResultWriter(Path results, Path checkpoint) throws IOException
+        {
+            this.results = Files.newBufferedWriter(results, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            try
+            {
+                this.checkpoint = checkpoint == null ? null
+                    : Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            catch(IOException e)
+            {
+                this.results.close();
+                throw e;
+            }
+
+            thread = new Thread(this::run, "Corpus results writer");
+            thread.start();
+        }
+
+        /**
+         * Queues a line, blocking while the writer is too far behind
+         * @param path The path to record in the checkpoint once the line is written, or {@code null}
+         */
+        void submit(String path, String line) throws IOException
+        {
+            if(failure != null)
+                throw failure;
+            try
+            {
+                queue.put(new String[] {path, line});
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queuing results");
+            }
+        }
+
+        private void run()
+        {
+            List<String[]> batch = new ArrayList<>();
+            try
+            {
+                while(true)
+                {
+                    batch.add(queue.take());
+                    queue.drainTo(batch);
+
+                    boolean end = batch.remove(END);
+                    if(failure == null)
+                        write(batch);
+                    batch.clear();
+                    if(end)
+                        return;
+                }
+            }
+            catch(InterruptedException e)
+            {
+                failure = new InterruptedIOException("Interrupted while writing results");
+            }
+        }
+
+        private void write(List<String[]> batch)
+        {
+            try
+            {
+                for(String[] item : batch)
+                {
+                    results.write(item[1]);
+                    results.newLine();
+                }
+                results.flush();
+
+                if(checkpoint != null)
+                {
+                    for(String[] item : batch)
+                        if(item[0] != null)
+                        {
+                            checkpoint.write(item[0]);
+                            checkpoint.newLine();
+                        }
+                    checkpoint.flush();
+                }
+            }
+            catch(IOException e)
+            {
+                // Lines keep being taken, so that the scanning threads do not block, until the next submit fails
+                failure = e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                queue.put(END);
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                thread.interrupt();
+                throw new InterruptedIOException("Interrupted while writing results");
+            }
+            finally
+            {
+                results.close();
+                if(checkpoint != null)
+                    checkpoint.close();
+            }
+
+            if(failure != null)
+                throw failure;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package main;
+
+/**
+ * Distortion caused by an embedding, accumulated while the pixels are written: the number of changed pixels,
+ * the squared error of each color channel and the resulting PSNR.
+ * <p>
+ * An instance is filled by a single thread at a time; parallel embeddings give each band of rows its own instance
+ * and merge them at the end. Successive embeddings into the same instance add up.
+ * @see Steganography#embedBitArray(int[][], boolean[], int[][], EmbedMetrics)
+ * @see Steganography#embedSpiralBitArray(int[][], boolean[], int[][], EmbedMetrics)
+ */
+public final class EmbedMetrics
+{
+    /** Index of the red channel */
+    public static final int RED = 0;
+    /** Index of the green channel */
+    public static final int GREEN = 1;
+    /** Index of the blue channel, which holds the LSB layer */
+    public static final int BLUE = 2;
+
+    /** Number of color channels */
+    public static final int CHANNELS = 3;
+
+    private static final double PEAK = 255;
+
+    private long pixels;
+    private long changed;
+    private final long[] squaredErrors = new long[CHANNELS];
+
+    /**
+     * Counts pixels of the cover, changed or not, in the denominator of the mean squared error
+     * @param count The number of pixels
+     */
+    void addPixels(long count)
+    {
+        pixels += count;
+    }
+
+    /**
+     * Accounts for a pixel written by the embedding
+     * @param before The packed RGB color of the cover pixel
+     * @param after The packed RGB color written in its place
+     */
+    void add(int before, int after)
+    {
+        if(before == after)
+            return;
+
+        ++changed;
+        for(int c=0; c<CHANNELS; ++c)
+        {
+            int shift = Byte.SIZE * (CHANNELS - 1 - c);
+            int difference = (before >> shift & 0xFF) - (after >> shift & 0xFF);
+            squaredErrors[c] += difference * difference;
+        }
+    }
+
+    /**
+     * Adds the counts of another instance to this one
+     * @param other The metrics of another part of the embedding
+     */
+    void merge(EmbedMetrics other)
+    {
+        pixels += other.pixels;
+        changed += other.changed;
+        for(int c=0; c<CHANNELS; ++c)
+            squaredErrors[c] += other.squaredErrors[c];
+    }
+
+    /**
+     * @return The number of pixels of the cover
+     */
+    public long getPixelCount()
+    {
+        return pixels;
+    }
+
+    /**
+     * @return The number of pixels whose color was changed by the embedding
+     */
+    public long getChangedPixelCount()
+    {
+        return changed;
+    }
+
+    /**
+     * @return The ratio of changed pixels among the pixels of the cover, between 0 and 1
+     */
+    public double getChangeRate()
+    {
+        return pixels == 0 ? 0 : (double)changed / pixels;
+    }
+
+    /**
+     * @param channel The index of a channel, e.g. {@link #BLUE}
+     * @return The sum of the squared differences of the channel over all the pixels
+     */
+    public long getSquaredError(int channel)
+    {
+        assert channel >= 0 && channel < CHANNELS : "Not a valid channel";
+
+        return squaredErrors[channel];
+    }
+
+    /**
+     * @return The mean squared error over the 3 channels of all the pixels
+     */
+    public double getMeanSquaredError()
+    {
+        long total = 0;
+        for(long error : squaredErrors)
+            total += error;
+
+        return pixels == 0 ? 0 : (double)total / (CHANNELS * pixels);
+    }
+
+    /**
+     * @return The peak signal-to-noise ratio, in decibels, which is infinite if no pixel was changed
+     */
+    public double getPSNR()
+    {
+        double mse = getMeanSquaredError();
+
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(PEAK * PEAK / mse);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d of %d pixel(s) changed, squared error %d/%d/%d, PSNR %.2f dB",
+            changed, pixels, squaredErrors[RED], squaredErrors[GREEN], squaredErrors[BLUE], getPSNR());
+    }
+}
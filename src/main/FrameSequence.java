@@ -0,0 +1,403 @@
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Sequence of frames, read one at a time from a multi-frame image file (e.g. an animated GIF) or from a directory
+ * of numbered images, carrying a single payload too large for one frame.
+ * <p>
+ * The first frame starts with a {@link PayloadHeader} flagged with {@link PayloadHeader#SEQUENCE}, giving the
+ * traversal and the total length of the payload; the payload then fills each frame along the traversal before
+ * continuing in the next one. Decoding, embedding and encoding run on three threads, and at most a few frames
+ * are held in memory at any time, whatever the length of the sequence; their rasters come from a {@link BufferPool},
+ * so that frames of the same size reuse them.
+ * <p>
+ * Frames are written as numbered PNG files: a palette format like GIF would map the embedded colors back to the
+ * palette and lose the LSBs. The frames of an animated GIF are read as stored, without compositing them.
+ */
+public final class FrameSequence implements AutoCloseable
+{
+    /** Name of the written frames, formatted with the index of the frame */
+    public static final String FRAME_FORMAT = "frame-%05d.png";
+
+    // Number of frames the decoder and the encoder may be ahead of, or behind, the embedding
+    private static final int FRAMES_AHEAD = 2;
+
+    private static final int PNG_LEVEL = 6;
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final File[] files;
+    private final int[] heights;
+    private final int[] widths;
+
+    private FrameSequence(ImageInputStream input, ImageReader reader, File[] files, int[] heights, int[] widths)
+    {
+        this.input = input;
+        this.reader = reader;
+        this.files = files;
+        this.heights = heights;
+        this.widths = widths;
+    }
+
+    /**
+     * Opens a sequence of frames, reading only their dimensions
+     * @param path A multi-frame image file, or a directory whose images are the frames in the order of their names
+     * @return The sequence, to be closed after use
+     * @throws IOException if the file or one of the images cannot be read
+     */
+    public static FrameSequence open(String path) throws IOException
+    {
+        File file = new File(path);
+
+        if(file.isDirectory())
+        {
+            File[] files = file.listFiles((directory, name) -> name.matches("(?i).*\\.(png|bmp|gif|jpe?g)"));
+            if(files == null)
+                throw new IOException("Cannot list " + path);
+            Arrays.sort(files);
+
+            int[] heights = new int[files.length];
+            int[] widths = new int[files.length];
+            for(int i=0; i<files.length; ++i)
+            {
+                ImageInputStream input = ImageIO.createImageInputStream(files[i]);
+                ImageReader reader = openReader(input, files[i].getPath());
+                try
+                {
+                    heights[i] = reader.getHeight(0);
+                    widths[i] = reader.getWidth(0);
+                }
+                finally
+                {
+                    reader.dispose();
+                    input.close();
+                }
+            }
+
+            return new FrameSequence(null, null, files, heights, widths);
+        }
+
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        ImageReader reader = openReader(input, path);
+        try
+        {
+            int count = reader.getNumImages(true);
+            int[] heights = new int[count];
+            int[] widths = new int[count];
+            for(int i=0; i<count; ++i)
+            {
+                heights[i] = reader.getHeight(i);
+                widths[i] = reader.getWidth(i);
+            }
+
+            return new FrameSequence(input, reader, null, heights, widths);
+        }
+        catch(IOException | RuntimeException e)
+        {
+            reader.dispose();
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of frames
+     */
+    public int getFrameCount()
+    {
+        return heights.length;
+    }
+
+    /**
+     * Returns the number of payload bits the frames can hold
+     * @return The capacity of the sequence, in payload bits, which is 0 if the first frame cannot even hold the header
+     */
+    public long getCapacity()
+    {
+        long capacity = -PayloadHeader.SIZE;
+        for(int i=0; i<heights.length; ++i)
+            capacity += (long)heights[i] * widths[i];
+
+        return heights.length == 0 || (long)heights[0] * widths[0] < PayloadHeader.SIZE ? 0 : Math.max(0, capacity);
+    }
+
+    /**
+     * Decodes a frame. Frames may be read from one thread at a time only
+     * @param index The index of the frame
+     * @return The frame, as an array of packed RGB colors
+     * @throws IOException if the frame cannot be decoded
+     */
+    public int[][] readFrame(int index) throws IOException
+    {
+        return Helper.fromBufferedImage(decode(index));
+    }
+
+    /**
+     * Decodes a frame into a raster borrowed from a pool. Frames may be read from one thread at a time only
+     * @param index The index of the frame
+     * @param pool The pool providing the raster
+     * @return The frame, as an array of packed RGB colors, to be given back with {@link BufferPool#releaseRaster(int[][])}
+     * @throws IOException if the frame cannot be decoded
+     */
+    public int[][] readFrame(int index, BufferPool pool) throws IOException
+    {
+        BufferedImage image = decode(index);
+
+        return Helper.fromBufferedImage(image, pool.acquireRaster(image.getHeight(), image.getWidth()));
+    }
+
+    private BufferedImage decode(int index) throws IOException
+    {
+        assert index >= 0 && index < heights.length : "Not a valid frame";
+
+        BufferedImage image = reader != null ? reader.read(index) : ImageIO.read(files[index]);
+        if(image == null)
+            throw new IOException("Unsupported image format: " + files[index]);
+
+        return image;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if(reader != null)
+        {
+            reader.dispose();
+            input.close();
+        }
+    }
+
+    /**
+     * Embeds a boolean array across the frames of a sequence, writing every frame to a directory as it completes
+     * @param input A multi-frame image file, or a directory of frames
+     * @param outputDirectory The directory receiving the frames, named after {@link #FRAME_FORMAT}
+     * @param payload The boolean array to be embedded
+     * @param traversal The order of the pixels carrying the payload in each frame
+     * @return The number of frames written
+     * @throws IOException if a frame cannot be read or written
+     * @see FrameSequence#revealBitArray(String)
+     */
+    public static int embedBitArray(String input, String outputDirectory, boolean[] payload, Traversal traversal) throws IOException
+    {
+        File directory = new File(outputDirectory);
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + outputDirectory);
+
+        PayloadHeader header = new PayloadHeader(traversal.getLayout(), PayloadHeader.UTF16, PayloadHeader.SEQUENCE, payload.length);
+        PngWriter writer = new PngWriter(PNG_LEVEL, PngWriter.Filter.ADAPTIVE);
+        BufferPool rasters = new BufferPool(2 * FRAMES_AHEAD + 2);
+        ExecutorService decoder = Executors.newSingleThreadExecutor();
+        ExecutorService encoder = Executors.newSingleThreadExecutor();
+
+        try(FrameSequence frames = open(input))
+        {
+            assert frames.getCapacity() >= payload.length : "Message is too big for frames";
+
+            int count = frames.getFrameCount();
+            Deque<Future<int[][]>> decoded = new ArrayDeque<>();
+            Deque<Future<Boolean>> encoded = new ArrayDeque<>();
+            int position = 0;
+
+            for(int i=0, next=0; i<count; ++i)
+            {
+                for(; next < count && next <= i + FRAMES_AHEAD; ++next)
+                {
+                    int index = next;
+                    decoded.add(decoder.submit(() -> frames.readFrame(index, rasters)));
+                }
+
+                int[][] frame = await(decoded.remove());
+                int skip = 0;
+                if(i == 0)
+                {
+                    Steganography.embedBitArray(frame, header.toBitArray(), frame);
+                    skip = PayloadHeader.SIZE;
+                }
+
+                int end = (int)Math.min(payload.length, position + (long)frame.length * frame[0].length - skip);
+                Steganography.embed(frame, payload, position, end, skip, traversal);
+                position = end;
+
+                // The frame goes back to the pool once written
+                String path = new File(directory, String.format(FRAME_FORMAT, i)).getPath();
+                encoded.add(encoder.submit(() ->
+                {
+                    try
+                    {
+                        return writer.write(path, frame);
+                    }
+                    finally
+                    {
+                        rasters.releaseRaster(frame);
+                    }
+                }));
+                if(encoded.size() > FRAMES_AHEAD && !await(encoded.remove()))
+                    throw new IOException("Cannot write a frame to " + outputDirectory);
+            }
+
+            while(!encoded.isEmpty())
+                if(!await(encoded.remove()))
+                    throw new IOException("Cannot write a frame to " + outputDirectory);
+
+            return count;
+        }
+        finally
+        {
+            decoder.shutdownNow();
+            encoder.shutdownNow();
+        }
+    }
+
+    /**
+     * Reveals a boolean array which was embedded across the frames of a sequence, decoding frames only until the
+     * payload is complete
+     * @param input A directory of frames, or a multi-frame image file
+     * @return The payload, or {@code null} if the first frame does not contain a valid sequence header
+     * @throws IOException if a frame cannot be read
+     * @see FrameSequence#embedBitArray(String, String, boolean[], Traversal)
+     */
+    public static boolean[] revealBitArray(String input) throws IOException
+    {
+        BufferPool rasters = new BufferPool(FRAMES_AHEAD + 2);
+        ExecutorService decoder = Executors.newSingleThreadExecutor();
+
+        try(FrameSequence frames = open(input))
+        {
+            int count = frames.getFrameCount();
+            if(frames.getCapacity() == 0)
+                return null;
+
+            Deque<Future<int[][]>> decoded = new ArrayDeque<>();
+            decoded.add(decoder.submit(() -> frames.readFrame(0, rasters)));
+            int[][] frame = await(decoded.remove());
+
+            PayloadHeader header = PayloadHeader.fromBitArray(Steganography.revealBitArray(frame, 0, PayloadHeader.SIZE), 0);
+            if(header == null || (header.getFlags() & PayloadHeader.SEQUENCE) == 0 || header.getLength() > frames.getCapacity())
+                return null;
+            Traversal traversal = Traversal.forLayout(header.getLayout());
+            if(traversal == null)
+                return null;
+
+            boolean[] payload = new boolean[header.getLength()];
+            int position = 0;
+            int skip = PayloadHeader.SIZE;
+
+            // Payload bits reached by the frames submitted to the decoder
+            long reached = (long)frames.heights[0] * frames.widths[0] - skip;
+
+            for(int i=0, next=1; ; ++i)
+            {
+                int end = (int)Math.min(payload.length, position + (long)frames.heights[i] * frames.widths[i] - skip);
+
+                // Decode the next frames while this one is revealed, as long as the payload goes on
+                for(; next < count && next <= i + FRAMES_AHEAD && reached < payload.length; ++next)
+                {
+                    int index = next;
+                    decoded.add(decoder.submit(() -> frames.readFrame(index, rasters)));
+                    reached += (long)frames.heights[index] * frames.widths[index];
+                }
+
+                Steganography.reveal(frame, payload, position, end, skip, traversal);
+                rasters.releaseRaster(frame);
+                position = end;
+                skip = 0;
+
+                if(position == payload.length)
+                    return payload;
+                frame = await(decoded.remove());
+            }
+        }
+        finally
+        {
+            decoder.shutdownNow();
+        }
+    }
+
+    /**
+     * Embeds a String across the frames of a sequence, writing every frame to a directory as it completes
+     * @param input A multi-frame image file, or a directory of frames
+     * @param outputDirectory The directory receiving the frames, named after {@link #FRAME_FORMAT}
+     * @param message The String to be embedded
+     * @param traversal The order of the pixels carrying the String in each frame
+     * @return The number of frames written
+     * @throws IOException if a frame cannot be read or written
+     * @see FrameSequence#revealText(String)
+     */
+    public static int embedText(String input, String outputDirectory, String message, Traversal traversal) throws IOException
+    {
+        return embedBitArray(input, outputDirectory, TextMessage.stringToBitArray(message), traversal);
+    }
+
+    /**
+     * Reveals a String which was embedded across the frames of a sequence
+     * @param input A directory of frames, or a multi-frame image file
+     * @return The String, or {@code null} if the first frame does not contain a valid sequence header
+     * @throws IOException if a frame cannot be read
+     * @see FrameSequence#embedText(String, String, String, Traversal)
+     */
+    public static String revealText(String input) throws IOException
+    {
+        boolean[] payload = revealBitArray(input);
+
+        return payload == null ? null : TextMessage.bitArrayToString(payload);
+    }
+
+    /**
+     * Returns the first reader able to decode a stream, closing the stream if there is none
+     */
+    static ImageReader openReader(ImageInputStream input, String path) throws IOException
+    {
+        if(input == null)
+            throw new IOException("Cannot open " + path);
+
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if(!readers.hasNext())
+        {
+            input.close();
+            throw new IOException("Unsupported image format: " + path);
+        }
+
+        ImageReader reader = readers.next();
+        reader.setInput(input, false, false);
+
+        return reader;
+    }
+
+    /**
+     * Waits for a task of the pipeline, rethrowing its failure
+     */
+    private static <T> T await(Future<T> task) throws IOException
+    {
+        try
+        {
+            return task.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing frames");
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
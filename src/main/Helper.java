@@ -8,17 +8,34 @@ import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
 
 /**
  * Provide simple tools to read, write and show pictures.
  */
 public final class Helper {
 
+    // Images with more pixels are shown tile by tile
+    private static final long TILED_PIXELS = 1L << 24;
+
+    // Largest initial size of a window
+    private static final int MAX_WINDOW = 1024;
+
+    // Decoded images, null unless enabled
+    private static volatile ImageCache cache;
+
     // Convert specified BufferedImage into an array
-    private static int[][] fromBufferedImage(BufferedImage image) {
+    static int[][] fromBufferedImage(BufferedImage image) {
+        return fromBufferedImage(image, new int[image.getHeight()][image.getWidth()]);
+    }
+
+    // Convert specified image into an existing array of the same size
+    static int[][] fromBufferedImage(BufferedImage image, int[][] array) {
         int width = image.getWidth();
         int height = image.getHeight();
-        int[][] array = new int[height][width];
         for (int row = 0; row < height; ++row) {
             for (int col = 0; col < width; ++col) {
                 array[row][col] = image.getRGB(col, row) & 0xffffff;
@@ -48,8 +65,7 @@ public final class Helper {
      */
     public static int[][] read(String path) {
         try {
-            BufferedImage image = ImageIO.read(new File(path));
-            return fromBufferedImage(image);
+            return readChecked(path);
         } catch (IOException e) {
             System.out.println(e);
             System.out.println("Path: " + path);
@@ -58,6 +74,118 @@ public final class Helper {
         }
     }
 
+    /**
+     * Reads specified image from disk, leaving failures to the caller instead of exiting.
+     * With the cache enabled, a hit still copies the whole image, which callers may then modify;
+     * only {@link #readShared} hits are free.
+     * @param path Input file path
+     * @return HxW array of packed RGB colors
+     * @throws IOException if the file cannot be read or its format is not supported
+     * @see #read
+     */
+    public static int[][] readChecked(String path) throws IOException {
+        if (cache == null)
+            return fromBufferedImage(decode(new File(path)));
+
+        // Callers are free to modify the returned array, so they get their own copy
+        int[][] shared = readCached(new File(path));
+        int[][] array = new int[shared.length][];
+        for (int row = 0; row < shared.length; ++row)
+            array[row] = shared[row].clone();
+        return array;
+    }
+
+    /**
+     * Reads specified image from disk into a raster borrowed from a pool, so that a batch of images of the same
+     * size reuses the same rasters instead of allocating one per image.
+     * @param path Input file path
+     * @param pool Pool providing the raster
+     * @return HxW array of packed RGB colors, to be given back with {@link BufferPool#releaseRaster(int[][])}
+     * @throws IOException if the file cannot be read or its format is not supported
+     * @see #readChecked(String)
+     */
+    public static int[][] readChecked(String path, BufferPool pool) throws IOException {
+        if (cache == null) {
+            BufferedImage image = decode(new File(path));
+            return fromBufferedImage(image, pool.acquireRaster(image.getHeight(), image.getWidth()));
+        }
+
+        int[][] shared = readCached(new File(path));
+        int[][] array = pool.acquireRaster(shared.length, shared[0].length);
+        for (int row = 0; row < shared.length; ++row)
+            System.arraycopy(shared[row], 0, array[row], 0, shared[row].length);
+        return array;
+    }
+
+    /**
+     * Reads specified image from disk, sharing the decoded pixels with other readers when the cache is enabled.
+     * The returned array must <b>not</b> be modified: it is neither copied nor wrapped, so this is only enforced
+     * by contract. It can be passed to reveal methods and to the copy-on-write
+     * {@link Steganography#embedSpiralBitArray(int[][], boolean[])}.
+     * @param path Input file path
+     * @return HxW array of packed RGB colors, or <code>null</code> on failure
+     * @see #enableCache
+     */
+    public static int[][] readShared(String path) {
+        try {
+            if (cache == null)
+                return fromBufferedImage(decode(new File(path)));
+            return readCached(new File(path));
+        } catch (IOException e) {
+            System.out.println(e);
+            System.out.println("Path: " + path);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    // Decode specified file, failing instead of returning null on unsupported formats
+    private static BufferedImage decode(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null)
+            throw new IOException("Unsupported image format: " + file.getPath());
+        return image;
+    }
+
+    // Look specified file up in the cache, decoding and caching it on a miss
+    private static int[][] readCached(File file) throws IOException {
+        ImageCache current = cache;
+        int[][] array = current.get(file);
+        if (array == null) {
+            // Sampled before decoding, so that a file rewritten meanwhile is not cached as up to date
+            long length = file.length();
+            long lastModified = file.lastModified();
+            array = fromBufferedImage(decode(file));
+            current.put(file, length, lastModified, array);
+        }
+        return array;
+    }
+
+    /**
+     * Enables caching of decoded images for {@link #read} and {@link #readShared},
+     * replacing the previous cache if any.
+     * @param maxBytes Maximum total size of the cached pixels, in bytes
+     * @return The new cache, giving access to its hit statistics
+     */
+    public static ImageCache enableCache(long maxBytes) {
+        cache = new ImageCache(maxBytes);
+        return cache;
+    }
+
+    /**
+     * Disables caching of decoded images and releases the cached ones.
+     */
+    public static void disableCache() {
+        cache = null;
+    }
+
+    /**
+     * @return The current cache of decoded images, or <code>null</code> if caching is disabled
+     */
+    public static ImageCache getCache() {
+        return cache;
+    }
+
     /**
      * Writes specified image to disk.
      * @param path Output file path
@@ -85,6 +213,84 @@ public final class Helper {
 
     }
 
+    /**
+     * Writes specified image to disk as a PNG file, with explicit compression settings.
+     * Large images are compressed in parallel.
+     * @param path Output file path
+     * @param array HxW array of packed RGB colors
+     * @param level zlib compression level, from 0 (fastest) to 9 (smallest)
+     * @param filter row filter applied before compression
+     * @return {@code true} if write operation was successful, {@code false} otherwise
+     * @see #read
+     */
+    public static boolean writePng(String path, int[][] array, int level, PngWriter.Filter filter) {
+        return new PngWriter(level, filter).write(path, array);
+    }
+
+    /**
+     * Writes an image which was updated in place back to the file it was read from, re-encoding as little
+     * as the format allows. Nothing is written if no pixel changed and the file exists. Uncompressed 24-bit
+     * BMP files of the same size are patched by rewriting only the changed rows; other formats are fully
+     * re-encoded. The unchanged pixels are taken from the file, so writing to any other file must go
+     * through {@link #write(String, int[][])} instead.
+     * @param path Path of the file {@code array} was read from, and output file path
+     * @param array HxW array of packed RGB colors
+     * @param changes Summary of the changes made to {@code array} since it was read from {@code path}
+     * @return {@code true} if write operation was successful, {@code false} otherwise
+     * @see Steganography#updateBitArray(int[][], boolean[])
+     */
+    public static boolean write(String path, int[][] array, PixelChanges changes) {
+        File file = new File(path);
+        if (!file.isFile())
+            return write(path, array);
+        if (changes.isEmpty())
+            return true;
+
+        if (path.toLowerCase().endsWith(".bmp")) {
+            try {
+                if (patchBmpRows(file, array, changes.getFirstRow(), changes.getLastRow()))
+                    return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return write(path, array);
+    }
+
+    // Rewrite rows [first, last] of an uncompressed 24-bit BMP file in place,
+    // returns false if the file does not have the expected layout
+    private static boolean patchBmpRows(File file, int[][] array, int first, int last) throws IOException {
+        int width = array[0].length;
+        int height = array.length;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            byte[] header = new byte[34];
+            if (raf.read(header) != header.length || header[0] != 'B' || header[1] != 'M')
+                return false;
+
+            ByteBuffer info = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            int offset = info.getInt(10);
+            if (info.getInt(18) != width || info.getInt(22) != height
+                    || info.getShort(28) != 24 || info.getInt(30) != 0)
+                return false;
+
+            // Rows are padded to 4 bytes and stored bottom-up
+            int rowSize = (3 * width + 3) & ~3;
+            byte[] row = new byte[rowSize];
+            for (int y = first; y <= last; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    int rgb = array[y][x];
+                    row[3 * x] = (byte) rgb;
+                    row[3 * x + 1] = (byte) (rgb >> 8);
+                    row[3 * x + 2] = (byte) (rgb >> 16);
+                }
+                raf.seek(offset + (long) (height - 1 - y) * rowSize);
+                raf.write(row);
+            }
+        }
+        return true;
+    }
+
     /**
      * Shows specified image in a window.
      * @param array HxW array of packed RGB colors
@@ -92,10 +298,83 @@ public final class Helper {
      */
     public static void show(int[][] array, String title) {
 
+        // Large images are not converted at once
+        if ((long) array.length * array[0].length > TILED_PIXELS) {
+            showTiled(array, title);
+            return;
+        }
+
         // Convert array to Java image
         final BufferedImage image = toBufferedImage(array);
 
         // Create a panel to render this image
+        display(imagePanel(image), image.getWidth(), image.getHeight(), title, null);
+    }
+
+    /**
+     * Shows specified image in a window, rendering only the visible tiles at the current zoom.
+     * Memory use depends on the size of the window, not on the size of the image.
+     * The image can be panned by dragging it and zoomed with the mouse wheel.
+     * @param array HxW array of packed RGB colors, which must not be modified while shown
+     * @param title title to be displayed
+     */
+    public static void showTiled(int[][] array, String title) {
+        display(new TileViewer((y, x) -> array[(int) y][(int) x], array.length, array[0].length),
+                array[0].length, array.length, title, null);
+    }
+
+    /**
+     * Shows specified off-heap image in a window, rendering only the visible tiles at the current zoom.
+     * @param raster Image of packed RGB colors, which must stay open while shown
+     * @param title title to be displayed
+     * @see #showTiled(int[][], String)
+     */
+    public static void showTiled(OffHeapRaster raster, String title) {
+        display(new TileViewer(raster::get, raster.getHeight(), raster.getWidth()),
+                (int) Math.min(raster.getWidth(), Integer.MAX_VALUE), (int) Math.min(raster.getHeight(), Integer.MAX_VALUE), title, null);
+    }
+
+    /**
+     * Receives rows of an image shown by {@link #showProgressive}, from any thread.
+     */
+    public interface RowSink {
+
+        /**
+         * Paints specified rows and schedules a repaint of the window.
+         * @param firstRow index of the first row
+         * @param rows array of rows of packed RGB colors
+         */
+        void setRows(int firstRow, int[][] rows);
+    }
+
+    /**
+     * Shows an image computed progressively in a window. The window opens at once, and the producer runs on
+     * a background thread, painting rows of the image in place as they are ready. Closing the window interrupts
+     * the producer.
+     * @param height height of the image
+     * @param width width of the image
+     * @param title title to be displayed
+     * @param producer computes the image, handing its rows over to the given sink
+     * @see Steganography#revealSpiralImage(int[][], int, Steganography.RowListener)
+     */
+    public static void showProgressive(int height, int width, String title, Consumer<RowSink> producer) {
+
+        // Shared image, painted by the producer and drawn by the event dispatch thread
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final JPanel panel = imagePanel(image);
+
+        Thread worker = new Thread(() -> producer.accept((firstRow, rows) -> {
+            for (int row = 0; row < rows.length; ++row)
+                image.setRGB(0, firstRow + row, width, 1, rows[row], 0, width);
+            panel.repaint();
+        }), "Progressive " + title);
+        worker.setDaemon(true);
+
+        display(panel, width, height, title, worker);
+    }
+
+    // Create a panel rendering specified image, scaled to the panel
+    private static JPanel imagePanel(final BufferedImage image) {
         @SuppressWarnings("serial")
         JPanel panel = new JPanel() {
             @Override
@@ -104,11 +383,16 @@ public final class Helper {
                 g.drawImage(image, 0, 0, Math.max(getWidth(), 100), Math.max(getHeight(), 100), null, null);
             }
         };
+        return panel;
+    }
+
+    // Show specified panel in a window until it is closed, running an optional worker while the window is open
+    private static void display(JPanel panel, int width, int height, String title, Thread worker) {
 
         // Create a frame to hold this panel
         final JFrame frame = new JFrame(title);
         frame.add(panel);
-        frame.getContentPane().setPreferredSize(new Dimension(Math.max(image.getWidth(), 300), Math.max(image.getHeight(), 300)));
+        frame.getContentPane().setPreferredSize(new Dimension(Math.min(Math.max(width, 300), MAX_WINDOW), Math.min(Math.max(height, 300), MAX_WINDOW)));
         frame.pack();
 
         // Register closing event
@@ -125,6 +409,8 @@ public final class Helper {
 
         // Show this frame
         frame.setVisible(true);
+        if (worker != null)
+            worker.start();
 
         // Wait for close operation
         try {
@@ -135,6 +421,8 @@ public final class Helper {
         } catch (InterruptedException e) {
             // Empty on purpose
         }
+        if (worker != null)
+            worker.interrupt();
         frame.dispose();
     }
 
@@ -0,0 +1,348 @@
+package main;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Canonical Huffman coding of the UTF-8 bytes of a text, shrinking natural-language payloads.
+ * <p>
+ * The binary representation starts with a compact code table: the 32-bit number of bytes of the text, the 8-bit
+ * number of distinct bytes minus one, then for each distinct byte, in increasing order, its 8-bit value and its
+ * 4-bit code length minus one, each field being stored least significant bit first. Since the codes are canonical,
+ * the lengths are enough to rebuild them. The codes of the bytes follow, first bit of each code first.
+ * <p>
+ * Decoding does not walk a tree: it peeks at the next {@code maxLength} bits of the packed payload and looks the
+ * byte and its code length up in a table of {@code 2^maxLength} entries.
+ * @see PayloadHeader#HUFFMAN
+ */
+public final class HuffmanCodec
+{
+    /** Maximal length of a code, in bits */
+    public static final int MAX_CODE_LENGTH = 15;
+
+    private static final int SYMBOLS = 256;
+    private static final int COUNT_BITS = 32;
+    private static final int SYMBOL_BITS = 8;
+    private static final int LENGTH_BITS = 4;
+
+    // Number of codes of at most 15 bits decoded from a single 64-bit window
+    private static final int CODES_PER_WINDOW = Long.SIZE / MAX_CODE_LENGTH;
+
+    // Number of bits of the node index in the keys of the priority queue
+    private static final int NODE_BITS = 10;
+
+    /**
+     * Converts a String to its canonical Huffman binary representation, code table included
+     * @param message The String to be converted
+     * @return A boolean array corresponding to the compressed representation of {@code message}
+     * @see HuffmanCodec#decode(boolean[])
+     */
+    public static boolean[] encode(String message)
+    {
+        byte[] bytes = TextMessage.stringToUtf8(message);
+
+        int[] frequencies = new int[SYMBOLS];
+        for(byte b : bytes)
+            ++frequencies[b & 0xFF];
+
+        int[] lengths = codeLengths(frequencies);
+        int[] codes = canonicalCodes(lengths);
+
+        int symbols = 0;
+        for(int length : lengths)
+            if(length > 0)
+                ++symbols;
+        long size = encodedSize(frequencies, lengths);
+        assert size <= Integer.MAX_VALUE : "Message is too long";
+
+        boolean[] bits = new boolean[(int)size];
+        int offset = PayloadHeader.putField(bits, 0, bytes.length, COUNT_BITS);
+        offset = PayloadHeader.putField(bits, offset, Math.max(0, symbols - 1), SYMBOL_BITS);
+        for(int symbol=0; symbol<SYMBOLS; ++symbol)
+            if(lengths[symbol] > 0)
+            {
+                offset = PayloadHeader.putField(bits, offset, symbol, SYMBOL_BITS);
+                offset = PayloadHeader.putField(bits, offset, lengths[symbol] - 1, LENGTH_BITS);
+            }
+
+        for(byte b : bytes)
+        {
+            int code = codes[b & 0xFF];
+            for(int j=lengths[b & 0xFF] - 1; j>=0; --j)
+                bits[offset++] = ((code >> j) & 1) == 1;
+        }
+
+        return bits;
+    }
+
+    /**
+     * Returns the number of bits of the compressed representation of a String, without building it
+     * @param message The String to be measured
+     * @return The number of bits of {@code encode(message)}
+     * @see HuffmanCodec#encode(String)
+     */
+    public static long getEncodedSize(String message)
+    {
+        int[] frequencies = new int[SYMBOLS];
+        TextMessage.forEachUtf8Byte(message, value -> ++frequencies[value]);
+
+        return encodedSize(frequencies, codeLengths(frequencies));
+    }
+
+    /**
+     * Converts a boolean array to the String of which it is the canonical Huffman representation
+     * @param bitArray A boolean array representing a String
+     * @return The String that the array represented, or {@code null} if the code table is not valid
+     * @see HuffmanCodec#encode(String)
+     */
+    public static String decode(boolean[] bitArray)
+    {
+        return decode(bitArray, bitArray.length);
+    }
+
+    /**
+     * Converts the first {@code length} values of a boolean array to the String of which they are the canonical
+     * Huffman representation
+     * @param bitArray A boolean array representing a String, possibly larger than the representation
+     * @param length The number of values of {@code bitArray} to decode
+     * @return The String that the array represented, or {@code null} if the code table is not valid or the codes exceed {@code length}
+     */
+    public static String decode(boolean[] bitArray, int length)
+    {
+        assert length <= bitArray.length : "Length exceeds the array";
+
+        return decode(LsbKernels.pack(Arrays.copyOf(bitArray, length)), length);
+    }
+
+    /**
+     * Converts a packed bit array to the String of which it is the canonical Huffman representation.
+     * This is the fast path for payloads revealed with {@link Steganography#revealPackedBitArray(int[][])}
+     * @param words A packed bit array representing a String, 64 bits per word
+     * @param length The number of bits of {@code words} to decode
+     * @return The String that the array represented, or {@code null} if the code table is not valid or the codes exceed {@code length}
+     * @see LsbKernels#pack(boolean[])
+     */
+    public static String decode(long[] words, long length)
+    {
+        assert length <= (long)words.length * Long.SIZE : "Length exceeds the packed array";
+
+        if(length < COUNT_BITS + SYMBOL_BITS)
+            return null;
+        int count = (int)peek(words, 0, COUNT_BITS);
+        int symbols = (int)peek(words, COUNT_BITS, SYMBOL_BITS) + 1;
+        long position = COUNT_BITS + SYMBOL_BITS;
+        if(count < 0)
+            return null;
+        if(count == 0)
+            return "";
+        if(position + (long)symbols * (SYMBOL_BITS + LENGTH_BITS) > length)
+            return null;
+
+        int[] lengths = new int[SYMBOLS];
+        for(int i=0; i<symbols; ++i)
+        {
+            int symbol = (int)peek(words, position, SYMBOL_BITS);
+            lengths[symbol] = (int)peek(words, position + SYMBOL_BITS, LENGTH_BITS) + 1;
+            position += SYMBOL_BITS + LENGTH_BITS;
+            if(lengths[symbol] > MAX_CODE_LENGTH)
+                return null;
+        }
+
+        int maxLength = 0;
+        long kraft = 0;
+        for(int symbol=0; symbol<SYMBOLS; ++symbol)
+            if(lengths[symbol] > 0)
+            {
+                maxLength = Math.max(maxLength, lengths[symbol]);
+                kraft += 1L << (MAX_CODE_LENGTH + 1 - lengths[symbol]);
+            }
+        // Over-subscribed lengths cannot come from a prefix code
+        if(kraft > 1L << (MAX_CODE_LENGTH + 1))
+            return null;
+
+        // Every code takes at least 1 bit, so a count larger than the bits left cannot be valid
+        if(count > length - position)
+            return null;
+
+        short[] table = decodingTable(lengths, canonicalCodes(lengths), maxLength);
+        int mask = (1 << maxLength) - 1;
+        byte[] bytes = new byte[count];
+
+        // A 64-bit window holds the codes of at least 4 bytes, so the table is looked up 4 times per window read.
+        // The last windows, which may run past the words, are read bit-safely
+        long safe = Math.min(length, ((long)words.length - 1) * Long.SIZE);
+        int i = 0;
+        for(; i+CODES_PER_WINDOW <= count && position < safe; i+=CODES_PER_WINDOW)
+        {
+            int index = (int)(position >>> 6);
+            int shift = (int)position & 63;
+            long window = words[index] >>> shift;
+            if(shift != 0)
+                window |= words[index + 1] << (Long.SIZE - shift);
+
+            int consumed = 0;
+            for(int j=0; j<CODES_PER_WINDOW; ++j)
+            {
+                int entry = table[(int)(window >>> consumed) & mask];
+                if(entry == 0)
+                    return null;
+                bytes[i + j] = (byte)(entry >>> LENGTH_BITS);
+                consumed += entry & 0xF;
+            }
+            position += consumed;
+        }
+        for(; i<count && position < length; ++i)
+        {
+            int entry = table[(int)peek(words, position, maxLength)];
+            if(entry == 0)
+                return null;
+            bytes[i] = (byte)(entry >>> LENGTH_BITS);
+            position += entry & 0xF;
+        }
+
+        return i < count || position > length ? null : TextMessage.utf8ToString(bytes, count);
+    }
+
+    /**
+     * Counts the bits of the symbol count, of the code table and of the codes of all the bytes
+     */
+    private static long encodedSize(int[] frequencies, int[] lengths)
+    {
+        long size = COUNT_BITS + SYMBOL_BITS;
+        for(int symbol=0; symbol<SYMBOLS; ++symbol)
+            if(lengths[symbol] > 0)
+                size += SYMBOL_BITS + LENGTH_BITS + (long)frequencies[symbol] * lengths[symbol];
+
+        return size;
+    }
+
+    /**
+     * Computes the code lengths of a Huffman code limited to {@link #MAX_CODE_LENGTH} bits, flattening the
+     * frequencies until the tree is shallow enough
+     */
+    private static int[] codeLengths(int[] frequencies)
+    {
+        long[] weights = new long[SYMBOLS];
+        for(int symbol=0; symbol<SYMBOLS; ++symbol)
+            weights[symbol] = frequencies[symbol];
+
+        while(true)
+        {
+            int[] lengths = new int[SYMBOLS];
+            int[] leaves = new int[SYMBOLS];
+            int[] parents = new int[2 * SYMBOLS];
+            PriorityQueue<Long> queue = new PriorityQueue<>();
+            int nodes = 0;
+
+            for(int symbol=0; symbol<SYMBOLS; ++symbol)
+                if(weights[symbol] > 0)
+                {
+                    leaves[nodes] = symbol;
+                    queue.add(weights[symbol] << NODE_BITS | nodes++);
+                }
+
+            int leafCount = nodes;
+            if(leafCount == 1)
+                lengths[leaves[0]] = 1;
+            if(leafCount <= 1)
+                return lengths;
+
+            while(queue.size() > 1)
+            {
+                long first = queue.poll();
+                long second = queue.poll();
+                parents[(int)(first & ((1 << NODE_BITS) - 1))] = nodes;
+                parents[(int)(second & ((1 << NODE_BITS) - 1))] = nodes;
+                queue.add(((first >>> NODE_BITS) + (second >>> NODE_BITS)) << NODE_BITS | nodes++);
+            }
+
+            // Parents are created after their children, so depths can be computed from the root down
+            int[] depths = new int[nodes];
+            int maxLength = 0;
+            for(int node=nodes-2; node>=0; --node)
+            {
+                depths[node] = depths[parents[node]] + 1;
+                if(node < leafCount)
+                {
+                    lengths[leaves[node]] = depths[node];
+                    maxLength = Math.max(maxLength, depths[node]);
+                }
+            }
+
+            if(maxLength <= MAX_CODE_LENGTH)
+                return lengths;
+
+            for(int symbol=0; symbol<SYMBOLS; ++symbol)
+                if(weights[symbol] > 0)
+                    weights[symbol] = Math.max(1, weights[symbol] >> 1);
+        }
+    }
+
+    /**
+     * Assigns consecutive codes to the symbols sorted by code length, then by value
+     */
+    private static int[] canonicalCodes(int[] lengths)
+    {
+        int[] lengthCounts = new int[MAX_CODE_LENGTH + 1];
+        for(int length : lengths)
+            ++lengthCounts[length];
+        lengthCounts[0] = 0;
+
+        int[] nextCodes = new int[MAX_CODE_LENGTH + 1];
+        int code = 0;
+        for(int length=1; length<=MAX_CODE_LENGTH; ++length)
+        {
+            code = (code + lengthCounts[length - 1]) << 1;
+            nextCodes[length] = code;
+        }
+
+        int[] codes = new int[SYMBOLS];
+        for(int symbol=0; symbol<SYMBOLS; ++symbol)
+            if(lengths[symbol] > 0)
+                codes[symbol] = nextCodes[lengths[symbol]]++;
+
+        return codes;
+    }
+
+    /**
+     * Builds the table giving, for every {@code maxLength}-bit window read first bit first, the symbol starting it
+     * and its code length, packed as {@code symbol << 4 | length}. Windows matching no code are 0
+     */
+    private static short[] decodingTable(int[] lengths, int[] codes, int maxLength)
+    {
+        short[] table = new short[1 << maxLength];
+
+        for(int symbol=0; symbol<SYMBOLS; ++symbol)
+        {
+            int length = lengths[symbol];
+            if(length == 0)
+                continue;
+
+            // The first bit of a code is the least significant bit of the window
+            int reversed = Integer.reverse(codes[symbol]) >>> (Integer.SIZE - length);
+            short entry = (short)(symbol << LENGTH_BITS | length);
+            for(int fill=reversed; fill<table.length; fill+=1<<length)
+                table[fill] = entry;
+        }
+
+        return table;
+    }
+
+    /**
+     * Reads {@code size} bits of a packed bit array starting at a position, as a value whose least significant bit
+     * is the first bit. Bits past the end of the array read as 0
+     */
+    private static long peek(long[] words, long position, int size)
+    {
+        int index = (int)(position >>> 6);
+        int shift = (int)position & 63;
+        if(index >= words.length)
+            return 0;
+
+        long window = words[index] >>> shift;
+        if(shift != 0 && index + 1 < words.length)
+            window |= words[index + 1] << (Long.SIZE - shift);
+
+        return window & ((1L << size) - 1);
+    }
+}
@@ -0,0 +1,153 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of decoded images, bounded by the total size of the cached pixels.
+ * Entries are keyed by canonical path and are only returned while the file size
+ * and modification time still match the ones observed when the image was decoded.
+ * Cached arrays are shared between all callers and must never be modified.
+ * @see Helper#enableCache(long)
+ */
+public final class ImageCache {
+
+    private static final class Entry {
+        final long length;
+        final long lastModified;
+        final int[][] pixels;
+
+        Entry(long length, long lastModified, int[][] pixels) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.pixels = pixels;
+        }
+
+        long bytes() {
+            return (long) pixels.length * pixels[0].length * Integer.BYTES;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache.
+     * @param maxBytes Maximum total size of the cached pixels, in bytes
+     */
+    public ImageCache(long maxBytes) {
+        assert maxBytes > 0 : "Cache size must be positive";
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached pixels of specified file, if they are still up to date.
+     * @param file Image file
+     * @return Shared HxW array of packed RGB colors, or <code>null</code> if absent or stale
+     * @throws IOException if the canonical path cannot be resolved
+     */
+    public synchronized int[][] get(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        Entry entry = entries.get(key);
+
+        if (entry != null && (entry.length != file.length() || entry.lastModified != file.lastModified())) {
+            entries.remove(key);
+            bytes -= entry.bytes();
+            entry = null;
+        }
+
+        if (entry == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.pixels;
+    }
+
+    /**
+     * Adds the decoded pixels of specified file, evicting the least recently used images if needed.
+     * Images larger than the whole cache are not stored.
+     * The file size and modification time must be sampled <b>before</b> decoding: a file rewritten
+     * during the decoding then no longer matches them, and its stale pixels are never served.
+     * @param file Image file the pixels were decoded from
+     * @param length Size of the file before it was decoded, as given by {@link File#length()}
+     * @param lastModified Modification time of the file before it was decoded, as given by {@link File#lastModified()}
+     * @param pixels HxW array of packed RGB colors, which must not be modified afterwards
+     * @throws IOException if the canonical path cannot be resolved
+     */
+    public synchronized void put(File file, long length, long lastModified, int[][] pixels) throws IOException {
+        Entry entry = new Entry(length, lastModified, pixels);
+        if (entry.bytes() > maxBytes)
+            return;
+
+        Entry previous = entries.put(file.getCanonicalPath(), entry);
+        if (previous != null)
+            bytes -= previous.bytes();
+        bytes += entry.bytes();
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Removes every cached image, keeping the statistics.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return Total size of the cached pixels, in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of lookups which returned cached pixels
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of lookups which required decoding the file
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Number of images removed to make room for others
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Ratio of hits among all lookups, between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d image(s), %d bytes, hit rate %.1f%% (%d hits, %d misses, %d evictions)",
+                entries.size(), bytes, 100 * getHitRate(), hits, misses, evictions);
+    }
+}
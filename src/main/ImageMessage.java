@@ -134,17 +134,25 @@ public final class ImageMessage
     public static int[][] toGray(int[][] image)
     {
         assert Utils.isImage(image) : "Not a valid image";
-        
-        int height = image.length;
-        int width = image[0].length;
 
-        int[][] grayImage = new int[height][width];
+        return toGray(image, new int[image.length][image[0].length]);
+    }
 
-        for(int y=0; y<height; ++y)
-            for(int x=0; x<width; ++x)
-                grayImage[y][x] = getGray(image[y][x]);
+    /**
+     * Converts packed RGB image to grayscale image, without allocating.
+     * Gray values are looked up in a precomputed table rather than divided.
+     * @param image a HxW int array
+     * @param destination a HxW int array receiving the result, may be {@code image} itself
+     * @return {@code destination}
+     * @see #toGray(int[][])
+     * @see ColorConversion#AVERAGE
+     */
+    public static int[][] toGray(int[][] image, int[][] destination)
+    {
+        assert Utils.isImage(image) : "Not a valid image";
+        assert isSameSize(image.length, image[0].length, destination) : "Destination does not match image size";
 
-        return grayImage;
+        return ColorConversion.AVERAGE.toGray(image, destination, null);
     }
 
     /**
@@ -156,17 +164,30 @@ public final class ImageMessage
     public static int[][] toRGB(int[][] gray)
     {
         assert Utils.isImage(gray) : "Not a valid image";
+
+        return toRGB(gray, new int[gray.length][gray[0].length]);
+    }
+
+    /**
+     * Converts grayscale image to packed RGB image, without allocating.
+     * @param gray a HxW int array
+     * @param destination a HxW int array receiving the result, may be {@code gray} itself
+     * @return {@code destination}
+     * @see #toRGB(int[][])
+     */
+    public static int[][] toRGB(int[][] gray, int[][] destination)
+    {
+        assert Utils.isImage(gray) : "Not a valid image";
+        assert isSameSize(gray.length, gray[0].length, destination) : "Destination does not match image size";
         
         int height = gray.length;
         int width = gray[0].length;
 
-        int[][] rgbImage = new int[height][width];
-
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                rgbImage[y][x] = getRGB(gray[y][x]);
+                destination[y][x] = getRGB(gray[y][x]);
 
-        return rgbImage;
+        return destination;
     }
 
     /**
@@ -178,17 +199,31 @@ public final class ImageMessage
     public static boolean[][] toBW(int[][] gray, int threshold)
     {
         assert Utils.isImage(gray) : "Not a valid image";
+
+        return toBW(gray, threshold, new boolean[gray.length][gray[0].length]);
+    }
+
+    /**
+     * Converts grayscale image to a black and white image using a given threshold, without allocating
+     * @param gray a HxW int array
+     * @param threshold an integer threshold
+     * @param destination a HxW boolean array receiving the result
+     * @return {@code destination}
+     * @see #toBW(int[][], int)
+     */
+    public static boolean[][] toBW(int[][] gray, int threshold, boolean[][] destination)
+    {
+        assert Utils.isImage(gray) : "Not a valid image";
+        assert Utils.isImage(destination) && destination.length == gray.length && destination[0].length == gray[0].length : "Destination does not match image size";
         
         int height = gray.length;
         int width = gray[0].length;
 
-        boolean[][] bwImage = new boolean[height][width];
-
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                bwImage[y][x] = getBW(gray[y][x], threshold);
+                destination[y][x] = getBW(gray[y][x], threshold);
 
-        return bwImage;
+        return destination;
     }
 
     /**
@@ -199,17 +234,41 @@ public final class ImageMessage
     public static int[][] toRGB(boolean[][] image)
     {
         assert Utils.isImage(image) : "Not a valid image";
+
+        return toRGB(image, new int[image.length][image[0].length]);
+    }
+
+    /**
+     * Converts a black and white image to packed RGB image, without allocating
+     * @param image a HxW boolean array (false stands for black)
+     * @param destination a HxW int array receiving the result
+     * @return {@code destination}
+     * @see #toRGB(boolean[][])
+     */
+    public static int[][] toRGB(boolean[][] image, int[][] destination)
+    {
+        assert Utils.isImage(image) : "Not a valid image";
+        assert isSameSize(image.length, image[0].length, destination) : "Destination does not match image size";
         
         int height = image.length;
         int width = image[0].length;
 
-        int[][] rgbImage = new int[height][width];
-
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                rgbImage[y][x] = getRGB(image[y][x]);
+                destination[y][x] = getRGB(image[y][x]);
 
-        return rgbImage;
+        return destination;
+    }
+
+    /**
+     * @param height the expected height
+     * @param width the expected width
+     * @param destination any int array
+     * @return true if destination is a HxW image, false otherwise
+     */
+    private static boolean isSameSize(int height, int width, int[][] destination)
+    {
+        return Utils.isImage(destination) && destination.length == height && destination[0].length == width;
     }
 
     /*
@@ -225,24 +284,42 @@ public final class ImageMessage
      */
 
     public static boolean[] bwImageToBitArray(boolean[][] bwImage)
+    {
+        assert Utils.isImage(bwImage) : "Not a valid image";
+
+        boolean[] array = new boolean[bwImage.length * bwImage[0].length + 2*Integer.SIZE];
+        bwImageToBitArray(bwImage, array);
+
+        return array;
+    }
+
+    /**
+     * Converts a black-and-white image to a bit array, without allocating
+     * @param bwImage A black and white (boolean) image
+     * @param destination A boolean array of at least height*width + 64 values
+     * @return The number of bits written to {@code destination}
+     * @see ImageMessage#bwImageToBitArray(boolean[][])
+     */
+    public static int bwImageToBitArray(boolean[][] bwImage, boolean[] destination)
     {
         assert Utils.isImage(bwImage) : "Not a valid image";
         
         int height = bwImage.length;
         int width = bwImage[0].length;
+        int length = width*height + 2*Integer.SIZE;
 
-        boolean[] array = new boolean[width*height + 2*Integer.SIZE];
+        assert destination.length >= length : "Destination is too small";
 
         for(int i=0; i<Integer.SIZE; ++i)
-            array[i] = ((height >> i) & 1) == 1;
+            destination[i] = ((height >> i) & 1) == 1;
         for(int i=0; i<Integer.SIZE; ++i)
-            array[i+Integer.SIZE] = ((width >> i) & 1) == 1;
+            destination[i+Integer.SIZE] = ((width >> i) & 1) == 1;
 
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                array[y*width + x + 2*Integer.SIZE] = bwImage[y][x];
+                destination[y*width + x + 2*Integer.SIZE] = bwImage[y][x];
 
-        return array;
+        return length;
     }
 
     /**
@@ -254,21 +331,43 @@ public final class ImageMessage
     public static boolean[][] bitArrayToImage(boolean[] bitArray)
     {
         assert bitArray.length > 2 * Integer.SIZE : "Not a valid image";
-                
-        int height = 0;
-        for(int i=0; i<Integer.SIZE; ++i)
-            height = (height << 1) + (bitArray[Integer.SIZE-1-i] ? 1 : 0);
-        int width = 0;
-        for(int i=0; i<Integer.SIZE; ++i)
-            width = (width << 1) + (bitArray[2*Integer.SIZE-1-i] ? 1 : 0);
-    
-        boolean[][] image = new boolean[height][width];
+
+        return bitArrayToImage(bitArray, new boolean[getField(bitArray, 0)][getField(bitArray, Integer.SIZE)]);
+    }
+
+    /**
+     * Converts a bit array back to a black and white image, without allocating
+     * @param bitArray A boolean array containing the binary representation of the image's height and width (32 bits each), followed by the image's pixel values
+     * @param destination A boolean array of the height and width recorded in {@code bitArray}
+     * @return {@code destination}
+     * @see ImageMessage#bitArrayToImage(boolean[])
+     */
+    public static boolean[][] bitArrayToImage(boolean[] bitArray, boolean[][] destination)
+    {
+        assert bitArray.length > 2 * Integer.SIZE : "Not a valid image";
+
+        int height = getField(bitArray, 0);
+        int width = getField(bitArray, Integer.SIZE);
+
+        assert destination.length == height && (height == 0 || destination[0].length == width) : "Destination does not match image size";
 
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                image[y][x] = bitArray[y*width + x + 2*Integer.SIZE];
+                destination[y][x] = bitArray[y*width + x + 2*Integer.SIZE];
+
+        return destination;
+    }
 
-        return image;
+    /**
+     * Reads a 32-bit value stored least significant bit first
+     */
+    private static int getField(boolean[] bitArray, int offset)
+    {
+        int value = 0;
+        for(int i=0; i<Integer.SIZE; ++i)
+            value = (value << 1) + (bitArray[offset+Integer.SIZE-1-i] ? 1 : 0);
+
+        return value;
     }
 
 }
@@ -0,0 +1,120 @@
+package main;
+
+/**
+ * Bulk kernels moving the LSBs of up to 64 pixels at once between a row of packed colors and a {@code long}.
+ * Bit {@code i} of a packed word corresponds to pixel {@code offset + i}, so a packed bit array stores bit
+ * {@code n} of a message in bit {@code n % 64} of word {@code n / 64}. The loops have no data-dependent branch.
+ * @see Steganography#revealPackedBitArray(int[][])
+ */
+public final class LsbKernels
+{
+    /**
+     * Packs the LSBs of 64 consecutive pixels into a word
+     * @param row A row of packed colors
+     * @param offset The index of the first pixel
+     * @return A word whose bit {@code i} is the LSB of {@code row[offset + i]}
+     */
+    public static long gather(int[] row, int offset)
+    {
+        long word = 0;
+        for(int i=0; i<Long.SIZE; i+=8)
+            word |= (long)(row[offset + i] & 1) << i
+                | (long)(row[offset + i + 1] & 1) << (i + 1)
+                | (long)(row[offset + i + 2] & 1) << (i + 2)
+                | (long)(row[offset + i + 3] & 1) << (i + 3)
+                | (long)(row[offset + i + 4] & 1) << (i + 4)
+                | (long)(row[offset + i + 5] & 1) << (i + 5)
+                | (long)(row[offset + i + 6] & 1) << (i + 6)
+                | (long)(row[offset + i + 7] & 1) << (i + 7);
+
+        return word;
+    }
+
+    /**
+     * Packs the LSBs of at most 64 consecutive pixels into a word
+     * @param row A row of packed colors
+     * @param offset The index of the first pixel
+     * @param count The number of pixels, between 0 and 64
+     * @return A word whose bit {@code i} is the LSB of {@code row[offset + i]}, for {@code i < count}, the other bits being 0
+     */
+    public static long gather(int[] row, int offset, int count)
+    {
+        if(count == Long.SIZE)
+            return gather(row, offset);
+
+        long word = 0;
+        for(int i=0; i<count; ++i)
+            word |= (long)(row[offset + i] & 1) << i;
+
+        return word;
+    }
+
+    /**
+     * Spreads the bits of a word into the LSBs of 64 consecutive pixels
+     * @param word The bits to embed, bit {@code i} going to {@code row[offset + i]}
+     * @param source The row of packed colors providing the other bits of the pixels
+     * @param destination The row receiving the modified pixels, may be {@code source} itself
+     * @param offset The index of the first pixel
+     */
+    public static void scatter(long word, int[] source, int[] destination, int offset)
+    {
+        for(int i=0; i<Long.SIZE; i+=4)
+        {
+            destination[offset + i] = (source[offset + i] & ~1) | (int)(word >>> i) & 1;
+            destination[offset + i + 1] = (source[offset + i + 1] & ~1) | (int)(word >>> (i + 1)) & 1;
+            destination[offset + i + 2] = (source[offset + i + 2] & ~1) | (int)(word >>> (i + 2)) & 1;
+            destination[offset + i + 3] = (source[offset + i + 3] & ~1) | (int)(word >>> (i + 3)) & 1;
+        }
+    }
+
+    /**
+     * Spreads the lowest bits of a word into the LSBs of at most 64 consecutive pixels
+     * @param word The bits to embed, bit {@code i} going to {@code row[offset + i]}
+     * @param source The row of packed colors providing the other bits of the pixels
+     * @param destination The row receiving the modified pixels, may be {@code source} itself
+     * @param offset The index of the first pixel
+     * @param count The number of pixels, between 0 and 64
+     */
+    public static void scatter(long word, int[] source, int[] destination, int offset, int count)
+    {
+        if(count == Long.SIZE)
+        {
+            scatter(word, source, destination, offset);
+            return;
+        }
+
+        for(int i=0; i<count; ++i)
+            destination[offset + i] = (source[offset + i] & ~1) | (int)(word >>> i) & 1;
+    }
+
+    /**
+     * Packs a boolean array, 64 values per word
+     * @param bits A boolean array
+     * @return The packed bit array
+     */
+    public static long[] pack(boolean[] bits)
+    {
+        long[] words = new long[(bits.length + Long.SIZE - 1) / Long.SIZE];
+        for(int i=0; i<bits.length; ++i)
+            words[i >>> 6] |= (bits[i] ? 1L : 0L) << i;
+
+        return words;
+    }
+
+    /**
+     * Unpacks the first values of a packed bit array
+     * @param words A packed bit array
+     * @param length The number of values to unpack
+     * @return A boolean array of {@code length} values
+     */
+    public static boolean[] unpack(long[] words, int length)
+    {
+        assert length <= (long)words.length * Long.SIZE : "Length exceeds the packed array";
+
+        boolean[] bits = new boolean[length];
+        for(int i=0; i<length; ++i)
+            bits[i] = (words[i >>> 6] >>> i & 1) == 1;
+
+        return bits;
+    }
+}
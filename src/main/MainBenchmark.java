@@ -0,0 +1,183 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class MainBenchmark {
+
+    private static final int REPETITIONS = 10;
+
+    public static void main(String[] args) {
+
+        // A synthetic 4000x4000 cover, large enough to leave the caches
+        int[][] cover = new int[4000][4000];
+        for (int y = 0; y < cover.length; ++y)
+            for (int x = 0; x < cover[y].length; ++x)
+                cover[y][x] = (x * 7919 + y * 104729) & 0xFFFFFF;
+
+        benchmarkPackedLsb(cover);
+        benchmarkTraversals(cover);
+        benchmarkHuffman();
+        benchmarkProbe(cover);
+        benchmarkMetrics(cover);
+        benchmarkMatrixEmbedding(cover);
+    }
+
+    /**
+     * Runs a task several times after a warm-up and prints its throughput
+     * @param name name of the task
+     * @param pixels number of pixels processed by one run
+     * @param task the task to measure
+     */
+    public static void measure(String name, long pixels, Runnable task) {
+        for (int i = 0; i < 3; ++i)
+            task.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; ++i)
+            task.run();
+        double seconds = (System.nanoTime() - start) / 1e9 / REPETITIONS;
+
+        System.out.printf("%-40s %8.2f ms %10.1f Mpixel/s%n", name, seconds * 1e3, pixels / seconds / 1e6);
+    }
+
+    public static void benchmarkPackedLsb(int[][] cover) {
+        long pixels = (long) cover.length * cover[0].length;
+        boolean[] bits = Steganography.revealBitArray(cover);
+        long[] words = LsbKernels.pack(bits);
+
+        measure("revealBitArray (per bit)", pixels, () -> Steganography.revealBitArray(cover));
+        measure("revealPackedBitArray (64 bits/word)", pixels, () -> Steganography.revealPackedBitArray(cover));
+        measure("embedBitArray (per bit)", pixels, () -> Steganography.embedBitArray(cover, bits));
+        measure("embedPackedBitArray (64 bits/word)", pixels, () -> Steganography.embedPackedBitArray(cover, words, bits.length));
+
+        measure("revealSpiralBitArray (per bit)", pixels, () -> Steganography.revealSpiralBitArray(cover));
+        measure("revealSpiralPackedBitArray", pixels, () -> Steganography.revealSpiralPackedBitArray(cover));
+        measure("embedSpiralBitArray (per bit)", pixels, () -> Steganography.embedSpiralBitArray(cover, bits, new int[cover.length][cover[0].length]));
+        measure("embedSpiralPackedBitArray", pixels, () -> Steganography.embedSpiralPackedBitArray(cover, words, bits.length));
+    }
+
+    /**
+     * Compares the traversals on the same cover. The time per pixel reflects how well each order uses the caches:
+     * the spiral walks down the columns of the borders, whereas the Hilbert blocks keep consecutive pixels in
+     * a few rows
+     * @param cover the image to traverse
+     */
+    public static void benchmarkTraversals(int[][] cover) {
+        long pixels = (long) cover.length * cover[0].length;
+        boolean[] bits = Steganography.revealBitArray(cover);
+
+        for (Traversal traversal : new Traversal[] { Traversal.LINEAR, Traversal.SPIRAL, Traversal.HILBERT }) {
+            String name = traversal.getClass().getSimpleName();
+            measure("embedBitArray (" + name + ")", pixels, () -> Steganography.embedBitArray(cover, bits, traversal));
+            measure("revealBitArray (" + name + ")", pixels, () -> Steganography.revealBitArray(cover, bits.length, traversal));
+        }
+    }
+
+    /**
+     * Compares the size of a natural-language text in the text codecs, and measures their decoding speed,
+     * counted in decoded UTF-8 bytes
+     */
+    public static void benchmarkHuffman() {
+        String text;
+        try {
+            text = new String(Files.readAllBytes(Paths.get("images/AdeleBlochBauer/message.txt")), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println(e);
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; ++i)
+            builder.append(text);
+        String large = builder.toString();
+
+        boolean[] utf8 = TextMessage.stringToUtf8BitArray(large);
+        boolean[] huffman = HuffmanCodec.encode(large);
+        System.out.printf("UTF-16 %d bits, UTF-8 %d bits, Huffman %d bits%n", TextMessage.stringToBitArray(large).length,
+                utf8.length, huffman.length);
+        measure("utf8BitArrayToString (bytes)", utf8.length / 8, () -> TextMessage.utf8BitArrayToString(utf8));
+        measure("HuffmanCodec.decode (bytes)", utf8.length / 8, () -> HuffmanCodec.decode(huffman));
+        long[] packed = LsbKernels.pack(huffman);
+        measure("HuffmanCodec.decode packed (bytes)", utf8.length / 8, () -> HuffmanCodec.decode(packed, huffman.length));
+    }
+
+    /**
+     * Compares probing a PNG file for a payload header with decoding it as a whole
+     * @param cover the image to write as a PNG file without payload
+     */
+    public static void benchmarkProbe(int[][] cover) {
+        long pixels = (long) cover.length * cover[0].length;
+        try {
+            File file = File.createTempFile("benchmark", ".png");
+            file.deleteOnExit();
+            Helper.writePng(file.getPath(), cover, 1, PngWriter.Filter.SUB);
+
+            measure("PayloadProbe.probe (PNG file)", pixels, () -> {
+                try {
+                    PayloadProbe.probe(file.getPath());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            measure("Helper.read (PNG file)", pixels, () -> Helper.read(file.getPath()));
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Compares measuring the distortion during the embedding with comparing cover and output in a second pass
+     * @param cover the image in which to embed
+     */
+    public static void benchmarkMetrics(int[][] cover) {
+        long pixels = (long) cover.length * cover[0].length;
+        boolean[] bits = Steganography.revealBitArray(cover);
+        for (int i = 0; i < bits.length; i += 3)
+            bits[i] = !bits[i];
+        int[][] destination = new int[cover.length][cover[0].length];
+
+        measure("embedBitArray + comparison pass", pixels, () -> {
+            Steganography.embedBitArray(cover, bits, destination);
+            EmbedMetrics metrics = new EmbedMetrics();
+            for (int y = 0; y < cover.length; ++y)
+                for (int x = 0; x < cover[y].length; ++x)
+                    metrics.add(cover[y][x], destination[y][x]);
+        });
+        measure("embedBitArray (measured)", pixels, () -> Steganography.embedBitArray(cover, bits, destination, new EmbedMetrics()));
+    }
+
+    /**
+     * Compares the changes per payload bit and the throughput of matrix embedding with plain LSB embedding,
+     * for the same payload along the linear and spiral traversals
+     * @param cover the image in which to embed
+     */
+    public static void benchmarkMatrixEmbedding(int[][] cover) {
+        long pixels = (long) cover.length * cover[0].length;
+        int k = 3;
+        boolean[] bits = new boolean[(int) MatrixEmbedding.getCapacity(cover.length, cover[0].length, k)];
+        for (int i = 0; i < bits.length; ++i)
+            bits[i] = (i * 2654435761L & 0x100) != 0;
+
+        for (Traversal traversal : new Traversal[] { Traversal.LINEAR, Traversal.SPIRAL }) {
+            String name = traversal.getClass().getSimpleName();
+            int[][] plain = Steganography.embedBitArray(cover, bits, traversal);
+            EmbedMetrics metrics = new EmbedMetrics();
+            MatrixEmbedding.embedBitArray(cover, bits, k, traversal, metrics);
+            long changed = 0;
+            for (int y = 0; y < cover.length; ++y)
+                for (int x = 0; x < cover[y].length; ++x)
+                    if (plain[y][x] != cover[y][x])
+                        ++changed;
+            System.out.printf("%-40s %.3f vs %.3f changes per bit%n", "matrix k=" + k + " vs plain LSB (" + name + ")",
+                    (double) metrics.getChangedPixelCount() / bits.length, (double) changed / bits.length);
+
+            measure("embedBitArray (" + name + ", plain)", pixels, () -> Steganography.embedBitArray(cover, bits, traversal));
+            measure("MatrixEmbedding.embed (" + name + ", k=" + k + ")", pixels, () -> MatrixEmbedding.embedBitArray(cover, bits, k, traversal));
+            measure("MatrixEmbedding.reveal (" + name + ", k=" + k + ")", pixels, () -> MatrixEmbedding.revealBitArray(cover, bits.length, k, traversal));
+        }
+    }
+}
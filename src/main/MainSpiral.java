@@ -1,5 +1,7 @@
 package main;
 
+import java.util.Arrays;
+
 public class MainSpiral {
 
     public static void main(String[] args)
@@ -30,8 +32,16 @@ public class MainSpiral {
 
     public static void testRevealImageInSpiral(int[][] coverWithEmbedding) {
         Helper.show(coverWithEmbedding, "Cover with Spiral-encoded hidden Message");
-        boolean[][] message = Steganography.revealSpiralImage(coverWithEmbedding);
-        Helper.show(ImageMessage.toRGB(message), "Exposed Spiral-encoded Message");
+
+        // Rows are shown as soon as they are revealed
+        int[] size = Steganography.revealSpiralImageSize(coverWithEmbedding);
+        if(size == null) {
+            System.out.println("No Spiral-encoded image found in the cover");
+            return;
+        }
+        Helper.showProgressive(size[0], size[1], "Exposed Spiral-encoded Message", sink ->
+                Steganography.revealSpiralImage(coverWithEmbedding, 64, (image, first, last) ->
+                        sink.setRows(first, ImageMessage.toRGB(Arrays.copyOfRange(image, first, last)))));
     }
 
 
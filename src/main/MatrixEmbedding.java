@@ -0,0 +1,166 @@
+package main;
+
+/**
+ * Matrix embedding with the (1, 2^k-1, k) Hamming codes: each group of {@code n = 2^k-1} consecutive pixels of a
+ * traversal carries {@code k} bits of the payload, while at most one of their LSBs is changed.
+ * <p>
+ * The bits carried by a group are its syndrome, the XOR of the 1-based positions in the group of the pixels whose
+ * LSB is set, read least significant bit first. To embed {@code k} bits, the LSB of the pixel at the position given
+ * by the XOR of the syndrome and the bits is flipped, unless that XOR is 0. A payload bit then costs
+ * {@code (1 - 2^-k) / k} changes on average instead of 1/2 with {@link Steganography#embedInLSB(int, boolean)},
+ * at the price of {@code n / k} pixels per bit instead of 1. With {@code k = 1}, groups are single pixels and this
+ * is plain LSB embedding.
+ * @see Traversal
+ */
+public final class MatrixEmbedding
+{
+    /** Largest supported number of bits per group */
+    public static final int MAX_BITS = 16;
+
+    /**
+     * @param k The number of bits per group
+     * @return The number of pixels of a group, {@code 2^k-1}
+     */
+    public static int getGroupSize(int k)
+    {
+        assert k > 0 && k <= MAX_BITS : "Not a valid number of bits per group";
+
+        return (1 << k) - 1;
+    }
+
+    /**
+     * Returns the number of payload bits an image can hold
+     * @param height The height of the image
+     * @param width The width of the image
+     * @param k The number of bits per group
+     * @return The capacity of the image, in payload bits
+     */
+    public static long getCapacity(int height, int width, int k)
+    {
+        return (long)height * width / getGroupSize(k) * k;
+    }
+
+    /**
+     * Embeds a boolean array into the LSB layer of a color image, {@code k} bits per group of {@code 2^k-1} pixels
+     * @param cover The image in which to embed the bit array
+     * @param message The boolean array to be embedded
+     * @param k The number of bits per group
+     * @param traversal The order of the pixels, whose consecutive runs form the groups
+     * @return A <b>copy</b> of {@code cover} with {@code message} embedded in its LSB layer
+     * @see MatrixEmbedding#revealBitArray(int[][], int, int, Traversal)
+     */
+    public static int[][] embedBitArray(int[][] cover, boolean[] message, int k, Traversal traversal)
+    {
+        return embedBitArray(cover, message, k, traversal, null);
+    }
+
+    /**
+     * Embeds a boolean array into the LSB layer of a color image, {@code k} bits per group of {@code 2^k-1} pixels,
+     * measuring the distortion on the way
+     * @param cover The image in which to embed the bit array
+     * @param message The boolean array to be embedded
+     * @param k The number of bits per group
+     * @param traversal The order of the pixels, whose consecutive runs form the groups
+     * @param metrics The metrics receiving the distortion, may be {@code null}
+     * @return A <b>copy</b> of {@code cover} with {@code message} embedded in its LSB layer
+     */
+    public static int[][] embedBitArray(int[][] cover, boolean[] message, int k, Traversal traversal, EmbedMetrics metrics)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert message.length <= getCapacity(cover.length, cover[0].length, k) : "Message is too big for cover";
+
+        int n = getGroupSize(k);
+        int groups = (message.length + k - 1) / k;
+        int[][] embedded = new int[cover.length][];
+        for(int y=0; y<cover.length; ++y)
+            embedded[y] = cover[y].clone();
+        if(metrics != null)
+            metrics.addPixels((long)cover.length * cover[0].length);
+        if(groups == 0)
+            return embedded;
+
+        // Coordinates of the pixels of the current group; position in the group, its syndrome so far, and its index
+        int[] ys = new int[n];
+        int[] xs = new int[n];
+        int[] state = {0, 0, 0};
+
+        traversal.traverse(cover.length, cover[0].length, (y, x) ->
+        {
+            int position = state[0];
+            ys[position] = y;
+            xs[position] = x;
+            state[1] ^= (position + 1) & -(embedded[y][x] & 1);
+            if(++state[0] < n)
+                return true;
+
+            int group = state[2]++;
+            int flip = state[1] ^ getBits(message, group * k, k);
+            if(flip != 0)
+            {
+                int before = embedded[ys[flip - 1]][xs[flip - 1]];
+                embedded[ys[flip - 1]][xs[flip - 1]] = before ^ 1;
+                if(metrics != null)
+                    metrics.add(before, before ^ 1);
+            }
+            state[0] = 0;
+            state[1] = 0;
+
+            return state[2] < groups;
+        });
+
+        return embedded;
+    }
+
+    /**
+     * Reveals a boolean array which was embedded with {@link #embedBitArray(int[][], boolean[], int, Traversal)},
+     * computing the syndrome of each group
+     * @param cover A color image containing a bit array embedded in its LSB layer
+     * @param length The number of bits to reveal
+     * @param k The number of bits per group
+     * @param traversal The order of the pixels, whose consecutive runs form the groups
+     * @return The bit array extracted from the LSB layer of {@code cover}
+     */
+    public static boolean[] revealBitArray(int[][] cover, int length, int k, Traversal traversal)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert length >= 0 && length <= getCapacity(cover.length, cover[0].length, k) : "Length exceeds the capacity";
+
+        int n = getGroupSize(k);
+        boolean[] message = new boolean[length];
+        if(length == 0)
+            return message;
+
+        // Position in the current group, its syndrome so far, and the index of its first bit
+        int[] state = {0, 0, 0};
+        traversal.traverse(cover.length, cover[0].length, (y, x) ->
+        {
+            state[1] ^= (state[0] + 1) & -(cover[y][x] & 1);
+            if(++state[0] < n)
+                return true;
+
+            int offset = state[2];
+            for(int j=0; j<k && offset + j < length; ++j)
+                message[offset + j] = (state[1] >> j & 1) == 1;
+            state[0] = 0;
+            state[1] = 0;
+            state[2] += k;
+
+            return state[2] < length;
+        });
+
+        return message;
+    }
+
+    /**
+     * Reads {@code k} bits of the message as a value whose least significant bit is the first bit, bits past the end being 0
+     */
+    private static int getBits(boolean[] message, int offset, int k)
+    {
+        int value = 0;
+        for(int j=0; j<k && offset + j < message.length; ++j)
+            if(message[offset + j])
+                value |= 1 << j;
+
+        return value;
+    }
+}
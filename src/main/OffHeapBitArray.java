@@ -0,0 +1,127 @@
+package main;
+
+import java.nio.LongBuffer;
+
+/**
+ * Bit array stored outside of the Java heap, packed 64 bits per long and indexed with longs so that
+ * it may hold more than 2^31 bits. Like {@link OffHeapRaster}, it is backed by a memory-mapped temporary file.
+ * @see OffHeapFile
+ */
+public final class OffHeapBitArray implements AutoCloseable
+{
+    private static final int CHUNK_SHIFT = 27;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final long length;
+    private final OffHeapFile file;
+    private LongBuffer[] chunks;
+
+    /**
+     * Allocates a bit array filled with {@code false}
+     * @param length The number of bits
+     * @throws java.io.UncheckedIOException if the backing file cannot be created
+     */
+    public OffHeapBitArray(long length)
+    {
+        assert length >= 0 : "Negative length";
+
+        this.length = length;
+
+        long words = (length + Long.SIZE - 1) / Long.SIZE;
+        file = new OffHeapFile();
+        chunks = new LongBuffer[(int)((words + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        try
+        {
+            for(int i=0; i<chunks.length; ++i)
+            {
+                long start = (long)i << CHUNK_SHIFT;
+                int size = (int)Math.min(1L << CHUNK_SHIFT, words - start);
+                chunks[i] = file.map(start * Long.BYTES, (long)size * Long.BYTES).asLongBuffer();
+            }
+        }
+        catch(RuntimeException | Error e)
+        {
+            // The file is only deleted once closed
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a boolean array to the off-heap storage
+     * @param bits A boolean array
+     * @return A new off-heap bit array with the same values as {@code bits}
+     */
+    public static OffHeapBitArray fromBitArray(boolean[] bits)
+    {
+        OffHeapBitArray array = new OffHeapBitArray(bits.length);
+        for(int i=0; i<bits.length; ++i)
+            array.set(i, bits[i]);
+
+        return array;
+    }
+
+    /**
+     * Copies a range of the off-heap bit array back to the heap
+     * @param offset The index of the first bit to copy
+     * @param count The number of bits to copy
+     * @return A boolean array of {@code count} values
+     */
+    public boolean[] toBitArray(long offset, int count)
+    {
+        assert offset >= 0 && count >= 0 && offset + count <= length : "Range exceeds the array";
+
+        boolean[] bits = new boolean[count];
+        for(int i=0; i<count; ++i)
+            bits[i] = get(offset + i);
+
+        return bits;
+    }
+
+    /**
+     * @return The number of bits
+     */
+    public long length()
+    {
+        return length;
+    }
+
+    /**
+     * @param index The index of a bit
+     * @return The value of the bit
+     */
+    public boolean get(long index)
+    {
+        return (word(index) >>> (index & (Long.SIZE - 1)) & 1) == 1;
+    }
+
+    /**
+     * @param index The index of a bit
+     * @param value The new value of the bit
+     */
+    public void set(long index, boolean value)
+    {
+        long word = index / Long.SIZE;
+        long mask = 1L << (index & (Long.SIZE - 1));
+        LongBuffer chunk = chunks[(int)(word >>> CHUNK_SHIFT)];
+        int position = (int)(word & CHUNK_MASK);
+
+        chunk.put(position, value ? chunk.get(position) | mask : chunk.get(position) & ~mask);
+    }
+
+    /**
+     * Drops the off-heap storage, which must not be accessed afterwards, and deletes its backing file
+     */
+    @Override
+    public void close()
+    {
+        chunks = null;
+        file.close();
+    }
+
+    private long word(long index)
+    {
+        long word = index / Long.SIZE;
+        return chunks[(int)(word >>> CHUNK_SHIFT)].get((int)(word & CHUNK_MASK));
+    }
+}
@@ -0,0 +1,78 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Temporary file whose regions are mapped into memory to back off-heap arrays.
+ * <p>
+ * Mapped regions are neither part of the heap nor counted against {@code -XX:MaxDirectMemorySize}, and their pages
+ * are backed by the file, so the operating system can write them back instead of keeping them in memory. The file
+ * is created sparse, which makes its regions read as zeros until written, and deleted when closed. The mappings
+ * themselves are only released once the buffers are collected, which the JDK offers no way to hasten; the disk
+ * space of the deleted file is given back at that point.
+ * @see OffHeapRaster
+ * @see OffHeapBitArray
+ */
+final class OffHeapFile implements AutoCloseable
+{
+    private final FileChannel channel;
+
+    /**
+     * Creates an empty temporary file in the default temporary directory
+     * @throws UncheckedIOException if the file cannot be created
+     */
+    OffHeapFile()
+    {
+        try
+        {
+            Path path = Files.createTempFile("offheap", ".bin");
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps a region of the file, growing the file if needed
+     * @param position The offset of the region in the file, in bytes
+     * @param size The size of the region, in bytes, at most 2^31-1
+     * @return A buffer of the region, in native byte order
+     * @throws UncheckedIOException if the region cannot be mapped
+     */
+    ByteBuffer map(long position, long size)
+    {
+        try
+        {
+            return channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.nativeOrder());
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes and deletes the file, whose regions must not be accessed afterwards
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
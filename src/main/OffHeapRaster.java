@@ -0,0 +1,161 @@
+package main;
+
+import java.nio.IntBuffer;
+
+/**
+ * Image of packed RGB colors stored outside of the Java heap, indexed with longs so that it may hold
+ * more than 2^31 pixels. Pixels are stored row after row in regions of at most 2^27 pixels each of a memory-mapped
+ * temporary file, which the garbage collector never scans nor moves, and whose size is not bounded by the heap
+ * nor by {@code -XX:MaxDirectMemorySize}. Closing the image deletes the file; the mappings go away once collected.
+ * @see Steganography#embedBitArray(OffHeapRaster, OffHeapBitArray)
+ * @see OffHeapFile
+ */
+public final class OffHeapRaster implements AutoCloseable
+{
+    private static final int CHUNK_SHIFT = 27;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final long height;
+    private final long width;
+    private final OffHeapFile file;
+    private IntBuffer[] chunks;
+
+    /**
+     * Allocates a black image
+     * @param height The number of rows
+     * @param width The number of pixels per row
+     * @throws java.io.UncheckedIOException if the backing file cannot be created
+     */
+    public OffHeapRaster(long height, long width)
+    {
+        assert height > 0 && width > 0 : "Not a valid image size";
+        assert height <= Long.MAX_VALUE / width : "Image is too large";
+
+        this.height = height;
+        this.width = width;
+
+        long size = height * width;
+        file = new OffHeapFile();
+        chunks = new IntBuffer[(int)((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        try
+        {
+            for(int i=0; i<chunks.length; ++i)
+            {
+                long start = (long)i << CHUNK_SHIFT;
+                int length = (int)Math.min(1L << CHUNK_SHIFT, size - start);
+                chunks[i] = file.map(start * Integer.BYTES, (long)length * Integer.BYTES).asIntBuffer();
+            }
+        }
+        catch(RuntimeException | Error e)
+        {
+            // The file is only deleted once closed
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies an image to the off-heap storage
+     * @param image a HxW int array
+     * @return A new off-heap image with the same pixels as {@code image}
+     */
+    public static OffHeapRaster fromArray(int[][] image)
+    {
+        assert Utils.isImage(image) : "Not a valid image";
+
+        OffHeapRaster raster = new OffHeapRaster(image.length, image[0].length);
+        for(int y=0; y<image.length; ++y)
+            for(int x=0; x<image[y].length; ++x)
+                raster.set(y, x, image[y][x]);
+
+        return raster;
+    }
+
+    /**
+     * Copies the off-heap image back to the heap, which requires it to have less than 2^31 rows and columns
+     * @return a HxW int array
+     */
+    public int[][] toArray()
+    {
+        assert height <= Integer.MAX_VALUE && width <= Integer.MAX_VALUE : "Image is too large for an array";
+
+        int[][] image = new int[(int)height][(int)width];
+        for(int y=0; y<height; ++y)
+            for(int x=0; x<width; ++x)
+                image[y][x] = get(y, x);
+
+        return image;
+    }
+
+    /**
+     * @return The number of rows
+     */
+    public long getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return The number of pixels per row
+     */
+    public long getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The total number of pixels, height times width
+     */
+    public long getSize()
+    {
+        return height * width;
+    }
+
+    /**
+     * @param index The index of a pixel, in row-major order
+     * @return The packed RGB color of the pixel
+     */
+    public int get(long index)
+    {
+        return chunks[(int)(index >>> CHUNK_SHIFT)].get((int)(index & CHUNK_MASK));
+    }
+
+    /**
+     * @param index The index of a pixel, in row-major order
+     * @param rgb The new packed RGB color of the pixel
+     */
+    public void set(long index, int rgb)
+    {
+        chunks[(int)(index >>> CHUNK_SHIFT)].put((int)(index & CHUNK_MASK), rgb);
+    }
+
+    /**
+     * @param y The row of a pixel
+     * @param x The column of a pixel
+     * @return The packed RGB color of the pixel
+     */
+    public int get(long y, long x)
+    {
+        return get(y * width + x);
+    }
+
+    /**
+     * @param y The row of a pixel
+     * @param x The column of a pixel
+     * @param rgb The new packed RGB color of the pixel
+     */
+    public void set(long y, long x, int rgb)
+    {
+        set(y * width + x, rgb);
+    }
+
+    /**
+     * Drops the off-heap storage, which must not be accessed afterwards, and deletes its backing file
+     */
+    @Override
+    public void close()
+    {
+        chunks = null;
+        file.close();
+    }
+}
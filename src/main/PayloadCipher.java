@@ -0,0 +1,539 @@
+package main;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Authenticated encryption of framed payloads, fused into the embedding: the payload is encrypted one segment at a
+ * time as its bits are written to the pixels, and decrypted one segment at a time as they are read back, so that
+ * memory use does not depend on the size of the payload.
+ * <p>
+ * The payload of a header flagged with {@link PayloadHeader#ENCRYPTED} starts with a 128-bit salt, a 96-bit nonce
+ * and the 32-bit length of the plaintext in bits. The key is derived from a passphrase and the salt with
+ * PBKDF2-HMAC-SHA256. The plaintext, packed 8 bits per byte least significant bit first, is then cut into segments
+ * of {@link #SEGMENT_SIZE} bytes, each one encrypted with AES-GCM and followed by its 128-bit tag. The nonce of a
+ * segment is the nonce XOR its index, and its additional data is the plaintext length and whether it is the last
+ * segment, so that segments can neither be reordered nor dropped. Bytes are embedded least significant bit first.
+ * <p>
+ * A single AES-GCM message is not an option here: the JDK only releases the plaintext of a message once its
+ * whole ciphertext has been buffered and checked.
+ */
+public final class PayloadCipher
+{
+    /** Number of plaintext bytes of a segment */
+    public static final int SEGMENT_SIZE = 4096;
+
+    /** Number of bits of the salt, nonce and length preceding the segments */
+    public static final int PREFIX_SIZE = 256;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEY_DERIVATION = "PBKDF2WithHmacSHA256";
+    private static final int ITERATIONS = 100_000;
+    private static final int KEY_BITS = 256;
+
+    private static final int SALT_BYTES = 16;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BYTES = 16;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Source of the plaintext bytes, read segment after segment
+     */
+    private interface ByteSource
+    {
+        /**
+         * Writes the next {@code length} bytes of the plaintext to {@code destination}
+         */
+        void read(byte[] destination, int length);
+    }
+
+    /**
+     * Receiver of the plaintext bytes, segment after segment
+     */
+    private interface ByteSink
+    {
+        /**
+         * Called once the plaintext length is known, before any segment
+         */
+        void start(int bits);
+
+        /**
+         * Receives the first {@code size} bytes of {@code bytes}, which are authenticated
+         */
+        void accept(byte[] bytes, int size, boolean last);
+    }
+
+    /**
+     * Returns the number of bits an encrypted payload takes after its header
+     * @param bits The number of bits of the plaintext
+     * @return The number of bits of the prefix and of the encrypted segments
+     */
+    public static long getEncryptedSize(long bits)
+    {
+        long bytes = (bits + Byte.SIZE - 1) / Byte.SIZE;
+        long segments = Math.max(1, (bytes + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+
+        return PREFIX_SIZE + Byte.SIZE * (bytes + segments * TAG_BYTES);
+    }
+
+    /**
+     * Returns the largest plaintext whose encrypted payload fits in a number of bits, the inverse of
+     * {@link #getEncryptedSize(long)}
+     * @param bits The number of bits available after the header
+     * @return The largest number of bits of the plaintext, a multiple of 8, which is 0 if not even an empty
+     * plaintext fits
+     */
+    public static long getPlaintextCapacity(long bits)
+    {
+        if(bits < PREFIX_SIZE + Byte.SIZE * TAG_BYTES)
+            return 0;
+
+        long bytes = (bits - PREFIX_SIZE) / Byte.SIZE;
+        long segments = bytes / (SEGMENT_SIZE + TAG_BYTES);
+        long rest = bytes % (SEGMENT_SIZE + TAG_BYTES);
+
+        return Byte.SIZE * (segments * SEGMENT_SIZE + Math.max(0, rest - TAG_BYTES));
+    }
+
+    /**
+     * Encrypts a boolean array and embeds it preceded by a header, following a traversal
+     * @param cover The image in which to embed the payload
+     * @param payload The boolean array to be encrypted and embedded
+     * @param passphrase The passphrase from which the key is derived
+     * @param traversal The order of the pixels carrying the encrypted payload
+     * @return A <b>copy</b> of {@code cover} with the header and the encrypted payload embedded in its LSB layer
+     * @see PayloadCipher#revealBitArray(int[][], char[])
+     */
+    public static int[][] embedBitArray(int[][] cover, boolean[] payload, char[] passphrase, Traversal traversal)
+    {
+        int[] index = {0};
+        ByteSource source = (destination, length) ->
+        {
+            Arrays.fill(destination, 0, length, (byte)0);
+            for(int i=0; i<length * Byte.SIZE && index[0] < payload.length; ++i)
+                if(payload[index[0]++])
+                    destination[i >>> 3] |= 1 << (i & 7);
+        };
+
+        return embed(cover, source, payload.length, PayloadHeader.UTF16, passphrase, traversal);
+    }
+
+    /**
+     * Reveals and decrypts a boolean array which was embedded with {@link #embedBitArray(int[][], boolean[], char[], Traversal)}
+     * @param cover A color image containing an encrypted payload embedded in its LSB layer
+     * @param passphrase The passphrase the payload was encrypted with
+     * @return The payload, or {@code null} if {@code cover} does not contain an encrypted payload, if the passphrase
+     * is wrong or if the payload was altered
+     */
+    public static boolean[] revealBitArray(int[][] cover, char[] passphrase)
+    {
+        boolean[][] payload = {null};
+        int[] index = {0};
+        ByteSink sink = new ByteSink()
+        {
+            @Override
+            public void start(int bits)
+            {
+                payload[0] = new boolean[bits];
+            }
+
+            @Override
+            public void accept(byte[] bytes, int size, boolean last)
+            {
+                for(int i=0; i<size * Byte.SIZE && index[0] < payload[0].length; ++i)
+                    payload[0][index[0]++] = (bytes[i >>> 3] >> (i & 7) & 1) == 1;
+            }
+        };
+
+        return reveal(cover, passphrase, sink) == null ? null : payload[0];
+    }
+
+    /**
+     * Encrypts the UTF-8 representation of a String and embeds it preceded by a header, following a traversal.
+     * The String is encoded segment after segment, without building its whole representation
+     * @param cover The image in which to embed the String
+     * @param message The String to be encrypted and embedded
+     * @param passphrase The passphrase from which the key is derived
+     * @param traversal The order of the pixels carrying the encrypted String
+     * @return A <b>copy</b> of {@code cover} with the header and the encrypted String embedded in its LSB layer
+     * @see PayloadCipher#revealText(int[][], char[])
+     */
+    public static int[][] embedText(int[][] cover, String message, char[] passphrase, Traversal traversal)
+    {
+        long bits = (long)Byte.SIZE * TextMessage.utf8Length(message);
+        assert bits <= Integer.MAX_VALUE : "Message is too long";
+
+        // Encoded bytes not yet read, a chunk of chars at a time
+        int[] position = {0};
+        byte[][] chunk = {new byte[0]};
+        int[] offset = {0};
+        ByteSource source = (destination, length) ->
+        {
+            for(int i=0; i<length; ++i)
+            {
+                if(offset[0] == chunk[0].length)
+                {
+                    int end = Math.min(message.length(), position[0] + SEGMENT_SIZE / 4);
+                    if(end < message.length() && Character.isHighSurrogate(message.charAt(end - 1)))
+                        --end;
+                    chunk[0] = TextMessage.stringToUtf8(message.substring(position[0], end));
+                    position[0] = end;
+                    offset[0] = 0;
+                }
+                destination[i] = chunk[0][offset[0]++];
+            }
+        };
+
+        return embed(cover, source, (int)bits, PayloadHeader.UTF8, passphrase, traversal);
+    }
+
+    /**
+     * Reveals and decrypts a String which was embedded with {@link #embedText(int[][], String, char[], Traversal)},
+     * decoding it segment after segment
+     * @param cover A color image containing an encrypted String embedded in its LSB layer
+     * @param passphrase The passphrase the String was encrypted with
+     * @return The String, or {@code null} if {@code cover} does not contain an encrypted String, if the passphrase
+     * is wrong or if the String was altered
+     */
+    public static String revealText(int[][] cover, char[] passphrase)
+    {
+        PayloadHeader header = Steganography.revealHeader(cover);
+        if(header == null)
+            return null;
+        if(header.getCodec() != PayloadHeader.UTF8)
+        {
+            boolean[] payload = revealBitArray(cover, passphrase);
+            return payload == null ? null : Steganography.decodeText(payload, header.getCodec());
+        }
+
+        StringBuilder builder = new StringBuilder();
+        byte[] pending = new byte[SEGMENT_SIZE + Integer.BYTES];
+        int[] size = {0};
+        ByteSink sink = new ByteSink()
+        {
+            @Override
+            public void start(int bits)
+            {
+            }
+
+            @Override
+            public void accept(byte[] bytes, int length, boolean last)
+            {
+                System.arraycopy(bytes, 0, pending, size[0], length);
+                size[0] += length;
+
+                // A sequence cut by the end of the segment is decoded with the next one
+                int end = last ? size[0] : completeLength(pending, size[0]);
+                builder.append(TextMessage.utf8ToString(pending, end));
+                System.arraycopy(pending, end, pending, 0, size[0] - end);
+                size[0] -= end;
+            }
+        };
+
+        return reveal(cover, passphrase, sink) == null ? null : builder.toString();
+    }
+
+    private static int[][] embed(int[][] cover, ByteSource source, int bits, int codec, char[] passphrase, Traversal traversal)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+
+        long size = getEncryptedSize(bits);
+        assert size <= Integer.MAX_VALUE : "Message is too long";
+        PayloadHeader header = new PayloadHeader(traversal.getLayout(), codec, PayloadHeader.ENCRYPTED, (int)size);
+        assert header.getFramedSize() <= (long)cover.length * cover[0].length : "Message is too big for cover";
+
+        int[][] embedded = Steganography.embedBitArray(cover, header.toBitArray());
+        Encryptor encryptor = new Encryptor(source, bits, passphrase);
+        int width = embedded[0].length;
+        long[] index = {0};
+
+        traversal.traverse(embedded.length, width, (y, x) ->
+        {
+            if((long)y * width + x < PayloadHeader.SIZE)
+                return true;
+
+            embedded[y][x] = Steganography.embedInLSB(embedded[y][x], encryptor.nextBit());
+            return ++index[0] < size;
+        });
+
+        return embedded;
+    }
+
+    /**
+     * Streams the encrypted payload of a cover through a decryptor
+     * @return The header, or {@code null} if there is no encrypted payload or if it cannot be decrypted
+     */
+    private static PayloadHeader reveal(int[][] cover, char[] passphrase, ByteSink sink)
+    {
+        PayloadHeader header = Steganography.revealHeader(cover);
+        if(header == null || (header.getFlags() & PayloadHeader.ENCRYPTED) == 0)
+            return null;
+        Traversal traversal = Traversal.forLayout(header.getLayout());
+        if(traversal == null)
+            return null;
+
+        Decryptor decryptor = new Decryptor(passphrase, header.getLength(), sink);
+        int width = cover[0].length;
+
+        traversal.traverse(cover.length, width, (y, x) ->
+            (long)y * width + x < PayloadHeader.SIZE || decryptor.add(Steganography.getLSB(cover[y][x])));
+
+        return decryptor.isComplete() ? header : null;
+    }
+
+    /**
+     * Hands the bits of the prefix and of the encrypted segments over, encrypting a segment whenever the previous
+     * one is exhausted
+     */
+    private static final class Encryptor
+    {
+        private final ByteSource source;
+        private final int bytes;
+        private final Cipher cipher = newCipher();
+        private final SecretKey key;
+        private final byte[] nonce = new byte[NONCE_BYTES];
+        private final byte[] aad = new byte[Integer.BYTES + 1];
+        private final byte[] plaintext = new byte[SEGMENT_SIZE];
+        private final byte[] block = new byte[SEGMENT_SIZE + TAG_BYTES];
+        private int segment;
+        private int read;
+        private int available;
+        private int position;
+
+        Encryptor(ByteSource source, int bits, char[] passphrase)
+        {
+            this.source = source;
+            this.bytes = (int)(((long)bits + Byte.SIZE - 1) / Byte.SIZE);
+
+            // The first block is the prefix
+            byte[] salt = new byte[SALT_BYTES];
+            RANDOM.nextBytes(salt);
+            RANDOM.nextBytes(nonce);
+            key = deriveKey(passphrase, salt);
+            putInt(aad, 0, bits);
+
+            System.arraycopy(salt, 0, block, 0, SALT_BYTES);
+            System.arraycopy(nonce, 0, block, SALT_BYTES, NONCE_BYTES);
+            putInt(block, SALT_BYTES + NONCE_BYTES, bits);
+            available = PREFIX_SIZE;
+        }
+
+        boolean nextBit()
+        {
+            if(position == available)
+                encryptSegment();
+
+            boolean bit = (block[position >>> 3] >> (position & 7) & 1) == 1;
+            ++position;
+
+            return bit;
+        }
+
+        private void encryptSegment()
+        {
+            int length = Math.min(SEGMENT_SIZE, bytes - read);
+            source.read(plaintext, length);
+            read += length;
+
+            try
+            {
+                cipher.init(Cipher.ENCRYPT_MODE, key, segmentParameters(nonce, segment++));
+                aad[Integer.BYTES] = (byte)(read == bytes ? 1 : 0);
+                cipher.updateAAD(aad);
+                available = Byte.SIZE * cipher.doFinal(plaintext, 0, length, block, 0);
+            }
+            catch(GeneralSecurityException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            position = 0;
+        }
+    }
+
+    /**
+     * Receives the bits of the prefix and of the encrypted segments, decrypting each segment once it is complete
+     */
+    private static final class Decryptor
+    {
+        private final char[] passphrase;
+        private final long size;
+        private final ByteSink sink;
+        private final Cipher cipher = newCipher();
+        private SecretKey key;
+        private final byte[] nonce = new byte[NONCE_BYTES];
+        private final byte[] aad = new byte[Integer.BYTES + 1];
+        private final byte[] block = new byte[SEGMENT_SIZE + TAG_BYTES];
+        private final byte[] plaintext = new byte[SEGMENT_SIZE];
+        private int bytes = -1;
+        private int segments;
+        private int segment;
+        private int decrypted;
+        private int expected = PREFIX_SIZE;
+        private int position;
+        private boolean failed;
+
+        Decryptor(char[] passphrase, long size, ByteSink sink)
+        {
+            this.passphrase = passphrase;
+            this.size = size;
+            this.sink = sink;
+        }
+
+        /**
+         * @return {@code true} if more bits are expected, {@code false} once the payload is complete or invalid
+         */
+        boolean add(boolean bit)
+        {
+            int index = position >>> 3;
+            if((position & 7) == 0)
+                block[index] = 0;
+            if(bit)
+                block[index] |= 1 << (position & 7);
+            if(++position < expected)
+                return true;
+
+            if(bytes < 0)
+                readPrefix();
+            else
+                decryptSegment();
+            position = 0;
+
+            return !failed && segment < segments;
+        }
+
+        boolean isComplete()
+        {
+            return !failed && bytes >= 0 && segment == segments;
+        }
+
+        private void readPrefix()
+        {
+            byte[] salt = Arrays.copyOf(block, SALT_BYTES);
+            System.arraycopy(block, SALT_BYTES, nonce, 0, NONCE_BYTES);
+            int bits = getInt(block, SALT_BYTES + NONCE_BYTES);
+            if(bits < 0 || getEncryptedSize(bits) != size)
+            {
+                failed = true;
+                return;
+            }
+
+            bytes = (int)(((long)bits + Byte.SIZE - 1) / Byte.SIZE);
+            segments = Math.max(1, (bytes + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            key = deriveKey(passphrase, salt);
+            putInt(aad, 0, bits);
+            sink.start(bits);
+            expected = Byte.SIZE * (Math.min(SEGMENT_SIZE, bytes) + TAG_BYTES);
+        }
+
+        private void decryptSegment()
+        {
+            int length = Math.min(SEGMENT_SIZE, bytes - decrypted);
+            try
+            {
+                cipher.init(Cipher.DECRYPT_MODE, key, segmentParameters(nonce, segment++));
+                aad[Integer.BYTES] = (byte)(decrypted + length == bytes ? 1 : 0);
+                cipher.updateAAD(aad);
+                cipher.doFinal(block, 0, length + TAG_BYTES, plaintext, 0);
+            }
+            catch(AEADBadTagException e)
+            {
+                // Wrong passphrase, or altered pixels
+                failed = true;
+                return;
+            }
+            catch(GeneralSecurityException e)
+            {
+                throw new IllegalStateException(e);
+            }
+
+            decrypted += length;
+            sink.accept(plaintext, length, decrypted == bytes);
+            expected = Byte.SIZE * (Math.min(SEGMENT_SIZE, bytes - decrypted) + TAG_BYTES);
+        }
+    }
+
+    /**
+     * @return The length of the longest prefix of {@code bytes[0..size)} which does not end with a cut UTF-8 sequence
+     */
+    private static int completeLength(byte[] bytes, int size)
+    {
+        for(int i=size-1; i>=Math.max(0, size - 3); --i)
+        {
+            int b = bytes[i] & 0xFF;
+            if((b & 0xC0) == 0x80)
+                continue;
+
+            int length = b < 0x80 ? 1 : (b & 0xE0) == 0xC0 ? 2 : (b & 0xF0) == 0xE0 ? 3 : (b & 0xF8) == 0xF0 ? 4 : 1;
+            return i + length > size ? i : size;
+        }
+
+        return size;
+    }
+
+    private static SecretKey deriveKey(char[] passphrase, byte[] salt)
+    {
+        PBEKeySpec spec = new PBEKeySpec(passphrase, salt, ITERATIONS, KEY_BITS);
+        try
+        {
+            byte[] key = SecretKeyFactory.getInstance(KEY_DERIVATION).generateSecret(spec).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        }
+        catch(GeneralSecurityException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        finally
+        {
+            spec.clearPassword();
+        }
+    }
+
+    private static Cipher newCipher()
+    {
+        try
+        {
+            return Cipher.getInstance(TRANSFORMATION);
+        }
+        catch(GeneralSecurityException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static GCMParameterSpec segmentParameters(byte[] nonce, int segment)
+    {
+        byte[] segmentNonce = nonce.clone();
+        for(int i=0; i<Integer.BYTES; ++i)
+            segmentNonce[NONCE_BYTES - 1 - i] ^= (byte)(segment >>> (Byte.SIZE * i));
+
+        return new GCMParameterSpec(Byte.SIZE * TAG_BYTES, segmentNonce);
+    }
+
+    /**
+     * Writes an int, least significant byte first
+     */
+    private static void putInt(byte[] bytes, int offset, int value)
+    {
+        for(int i=0; i<Integer.BYTES; ++i)
+            bytes[offset + i] = (byte)(value >>> (Byte.SIZE * i));
+    }
+
+    private static int getInt(byte[] bytes, int offset)
+    {
+        int value = 0;
+        for(int i=Integer.BYTES-1; i>=0; --i)
+            value = value << Byte.SIZE | bytes[offset + i] & 0xFF;
+
+        return value;
+    }
+}
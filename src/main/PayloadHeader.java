@@ -0,0 +1,250 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Header embedded in front of a framed payload, telling a reader how the payload was embedded and where it ends.
+ * <p>
+ * Its binary representation is 64 bits long, each field being stored least significant bit first:
+ * a 16-bit magic number, the 4-bit layout, the 4-bit codec, 8 bits of flags and the 32-bit payload length in bits.
+ * The header itself is always embedded linearly in the first pixels of the cover, and the payload follows the
+ * {@link Traversal} given by the layout, skipping the pixels of the header. With the {@link #CRC32C} flag, a checksum
+ * trailer follows the payload along the traversal.
+ * @see Steganography#embedFramedText(int[][], String)
+ */
+public final class PayloadHeader
+{
+    /** Number of bits of the binary representation of a header */
+    public static final int SIZE = 64;
+
+    /** Magic number identifying a framed payload */
+    public static final int MAGIC = 0x57E6;
+
+    /** Payload embedded row after row, right after the header */
+    public static final int LINEAR = 0;
+    /** Payload embedded in a spiral fashion */
+    public static final int SPIRAL = 1;
+    /** Payload embedded along a Hilbert curve, block after block */
+    public static final int HILBERT = 2;
+
+    /** Payload stored as is, text being encoded as 16-bit chars */
+    public static final int UTF16 = 0;
+    /** Text encoded in UTF-8, 8 bits per ASCII char */
+    public static final int UTF8 = 1;
+    /** Text compressed with a canonical Huffman code, see {@link HuffmanCodec} */
+    public static final int HUFFMAN = 2;
+
+    /** Flag set when the payload is one shard of a larger payload, starting with its own shard header */
+    public static final int SHARD = 1;
+    /** Flag set when the payload starts in the first frame of a sequence and continues in the following frames */
+    public static final int SEQUENCE = 2;
+    /** Flag set when the payload is followed by a {@link #TRAILER_SIZE}-bit CRC32C of its bits */
+    public static final int CRC32C = 4;
+    /** Flag set when the payload is encrypted with a key derived from a passphrase, see {@link PayloadCipher} */
+    public static final int ENCRYPTED = 8;
+
+    /** Number of bits of the checksum trailer of a payload flagged with {@link #CRC32C} */
+    public static final int TRAILER_SIZE = 32;
+
+    private static final int MAGIC_BITS = 16;
+    private static final int LAYOUT_BITS = 4;
+    private static final int CODEC_BITS = 4;
+    private static final int FLAGS_BITS = 8;
+    private static final int LENGTH_BITS = 32;
+
+    private final int layout;
+    private final int codec;
+    private final int flags;
+    private final int length;
+
+    /**
+     * @param layout The way the payload is laid out in the cover, e.g. {@link #LINEAR}
+     * @param codec The encoding of the payload, e.g. {@link #UTF16}
+     * @param flags Optional features of the payload, 0 if none
+     * @param length The number of bits of the payload following the header
+     */
+    public PayloadHeader(int layout, int codec, int flags, int length)
+    {
+        assert layout >= 0 && layout < (1 << LAYOUT_BITS) : "Not a valid layout";
+        assert codec >= 0 && codec < (1 << CODEC_BITS) : "Not a valid codec";
+        assert flags >= 0 && flags < (1 << FLAGS_BITS) : "Not valid flags";
+        assert length >= 0 : "Negative length";
+
+        this.layout = layout;
+        this.codec = codec;
+        this.flags = flags;
+        this.length = length;
+    }
+
+    /**
+     * @return The way the payload is laid out in the cover
+     */
+    public int getLayout()
+    {
+        return layout;
+    }
+
+    /**
+     * @return The encoding of the payload
+     */
+    public int getCodec()
+    {
+        return codec;
+    }
+
+    /**
+     * @return The optional features of the payload
+     */
+    public int getFlags()
+    {
+        return flags;
+    }
+
+    /**
+     * @return The number of bits of the payload following the header
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return The number of bits taken by the header, the payload and its trailer if any
+     */
+    public long getFramedSize()
+    {
+        return SIZE + (long)length + ((flags & CRC32C) != 0 ? TRAILER_SIZE : 0);
+    }
+
+    /**
+     * Writes the binary representation of the header
+     * @param destination A boolean array receiving the header
+     * @param offset The index of {@code destination} at which the header starts
+     */
+    public void toBitArray(boolean[] destination, int offset)
+    {
+        assert offset >= 0 && offset + SIZE <= destination.length : "Destination is too small";
+
+        offset = putField(destination, offset, MAGIC, MAGIC_BITS);
+        offset = putField(destination, offset, layout, LAYOUT_BITS);
+        offset = putField(destination, offset, codec, CODEC_BITS);
+        offset = putField(destination, offset, flags, FLAGS_BITS);
+        putField(destination, offset, length, LENGTH_BITS);
+    }
+
+    /**
+     * Converts the header to its binary representation
+     * @return A boolean array of {@link #SIZE} values
+     */
+    public boolean[] toBitArray()
+    {
+        boolean[] bits = new boolean[SIZE];
+        toBitArray(bits, 0);
+
+        return bits;
+    }
+
+    /**
+     * Reads a header from its binary representation
+     * @param bits A boolean array containing a header
+     * @param offset The index of {@code bits} at which the header starts
+     * @return The header, or {@code null} if the magic number does not match
+     */
+    public static PayloadHeader fromBitArray(boolean[] bits, int offset)
+    {
+        assert offset >= 0 && offset + SIZE <= bits.length : "Not enough bits for a header";
+
+        if(getField(bits, offset, MAGIC_BITS) != MAGIC)
+            return null;
+        offset += MAGIC_BITS;
+
+        int layout = getField(bits, offset, LAYOUT_BITS);
+        offset += LAYOUT_BITS;
+        int codec = getField(bits, offset, CODEC_BITS);
+        offset += CODEC_BITS;
+        int flags = getField(bits, offset, FLAGS_BITS);
+        offset += FLAGS_BITS;
+        int length = getField(bits, offset, LENGTH_BITS);
+
+        return length < 0 ? null : new PayloadHeader(layout, codec, flags, length);
+    }
+
+    /**
+     * CRC32C of a stream of bits, packed 8 per byte least significant bit first, the last byte being padded with 0.
+     * Bits are buffered, so that the checksum is updated a block of bytes at a time
+     */
+    static final class Checksum
+    {
+        private final java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+        private final byte[] buffer = new byte[4096];
+        private int bits;
+
+        void add(boolean bit)
+        {
+            if(bit)
+                buffer[bits >>> 3] |= 1 << (bits & 7);
+            if(++bits == Byte.SIZE * buffer.length)
+                flush();
+        }
+
+        /**
+         * @return The checksum of the bits added so far, after which no bit may be added
+         */
+        int getValue()
+        {
+            flush();
+            return (int)crc.getValue();
+        }
+
+        private void flush()
+        {
+            int bytes = (bits + Byte.SIZE - 1) / Byte.SIZE;
+            crc.update(buffer, 0, bytes);
+            Arrays.fill(buffer, 0, bytes, (byte)0);
+            bits = 0;
+        }
+    }
+
+    /**
+     * Computes the checksum of the first bits of a boolean array
+     * @return The CRC32C of {@code bits[0..length)}, as stored in a trailer
+     */
+    static int checksum(boolean[] bits, int length)
+    {
+        Checksum checksum = new Checksum();
+        for(int i=0; i<length; ++i)
+            checksum.add(bits[i]);
+
+        return checksum.getValue();
+    }
+
+    /**
+     * Writes the {@code size} lowest bits of a value, least significant bit first
+     * @return The index following the field
+     */
+    static int putField(boolean[] bits, int offset, int value, int size)
+    {
+        for(int i=0; i<size; ++i)
+            bits[offset + i] = ((value >> i) & 1) == 1;
+
+        return offset + size;
+    }
+
+    /**
+     * Reads a {@code size}-bit value stored least significant bit first
+     */
+    static int getField(boolean[] bits, int offset, int size)
+    {
+        int value = 0;
+        for(int i=size-1; i>=0; --i)
+            value = (value << 1) + (bits[offset + i] ? 1 : 0);
+
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "layout " + layout + ", codec " + codec + ", flags " + flags + ", " + length + " bits";
+    }
+}
@@ -0,0 +1,150 @@
+package main;
+
+import java.io.IOException;
+
+/**
+ * Tells cheaply whether an image may carry a payload, so that corpora can be triaged before any full reveal.
+ * <p>
+ * Only the first 64 LSBs of the linear and of the spiral orders are read: a framed payload is recognized by the
+ * magic number of its {@link PayloadHeader}, and an image embedded with
+ * {@link Steganography#embedSpiralImage(int[][], boolean[][])} by a height and a width which fit in the cover.
+ * On a PNG file, only the first rows holding these bits are decoded. Random LSBs pass either test with a
+ * probability below 2^-16.
+ */
+public final class PayloadProbe
+{
+    /**
+     * What the first LSBs of an image announce
+     */
+    public enum Kind
+    {
+        /** No recognizable header */
+        NONE,
+        /** A framed payload, see {@link Steganography#revealHeader(int[][])} */
+        FRAMED,
+        /** An image embedded in a spiral fashion, see {@link Steganography#revealSpiralImage(int[][])} */
+        SPIRAL_IMAGE
+    }
+
+    /** Number of bits of the dimensions header of an image embedded in a spiral fashion */
+    public static final int SPIRAL_HEADER_SIZE = 2 * Integer.SIZE;
+
+    /**
+     * Probes the first LSBs of an image
+     * @param cover A color image
+     * @return The kind of payload announced by the first LSBs of {@code cover}
+     */
+    public static Kind probe(int[][] cover)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+
+        int linearBits = (int)Math.min(PayloadHeader.SIZE, (long)cover.length * cover[0].length);
+        if(isFramed(Steganography.revealBitArray(cover, 0, linearBits), cover.length, cover[0].length))
+            return Kind.FRAMED;
+
+        int[][] positions = spiralHeaderPositions(cover.length, cover[0].length);
+        if(positions == null)
+            return Kind.NONE;
+
+        boolean[] bits = new boolean[SPIRAL_HEADER_SIZE];
+        for(int i=0; i<bits.length; ++i)
+            bits[i] = Steganography.getLSB(cover[positions[i][0]][positions[i][1]]);
+
+        return isSpiralImage(bits, cover.length, cover[0].length) ? Kind.SPIRAL_IMAGE : Kind.NONE;
+    }
+
+    /**
+     * Probes the first LSBs of an image file. PNG files are decoded only up to the last row holding the probed bits,
+     * other formats are fully decoded
+     * @param path The path of an image file
+     * @return The kind of payload announced by the first LSBs of the image
+     * @throws IOException if the file cannot be read or decoded
+     */
+    public static Kind probe(String path) throws IOException
+    {
+        try(PngReader reader = PngReader.open(path))
+        {
+            int height = reader.getHeight();
+            int width = reader.getWidth();
+            long capacity = (long)height * width;
+
+            int[][] positions = spiralHeaderPositions(height, width);
+            int linearRows = (int)((Math.min(PayloadHeader.SIZE, capacity) + width - 1) / width);
+            int spiralRows = 0;
+            if(positions != null)
+                for(int[] position : positions)
+                    spiralRows = Math.max(spiralRows, position[0] + 1);
+
+            // Only the rows holding the probed bits are kept
+            int[][] rows = new int[Math.max(linearRows, spiralRows)][width];
+            int read = 0;
+
+            while(read < linearRows && reader.readRow(rows[read]))
+                ++read;
+            if(read < linearRows)
+                return Kind.NONE;
+
+            boolean[] linear = new boolean[(int)Math.min(PayloadHeader.SIZE, capacity)];
+            for(int i=0; i<linear.length; ++i)
+                linear[i] = Steganography.getLSB(rows[i / width][i % width]);
+            if(isFramed(linear, height, width))
+                return Kind.FRAMED;
+            if(positions == null)
+                return Kind.NONE;
+
+            while(read < spiralRows && reader.readRow(rows[read]))
+                ++read;
+            if(read < spiralRows)
+                return Kind.NONE;
+
+            boolean[] bits = new boolean[SPIRAL_HEADER_SIZE];
+            for(int i=0; i<bits.length; ++i)
+                bits[i] = Steganography.getLSB(rows[positions[i][0]][positions[i][1]]);
+
+            return isSpiralImage(bits, height, width) ? Kind.SPIRAL_IMAGE : Kind.NONE;
+        }
+        catch(PngReader.UnsupportedFormatException e)
+        {
+            return probe(Helper.readChecked(path));
+        }
+    }
+
+    private static boolean isFramed(boolean[] bits, int height, int width)
+    {
+        if(bits.length < PayloadHeader.SIZE)
+            return false;
+
+        PayloadHeader header = PayloadHeader.fromBitArray(bits, 0);
+
+        return header != null && Traversal.forLayout(header.getLayout()) != null
+            && header.getFramedSize() <= (long)height * width;
+    }
+
+    private static boolean isSpiralImage(boolean[] bits, int height, int width)
+    {
+        long imageHeight = PayloadHeader.getField(bits, 0, Integer.SIZE);
+        long imageWidth = PayloadHeader.getField(bits, Integer.SIZE, Integer.SIZE);
+
+        return imageHeight > 0 && imageWidth > 0
+            && SPIRAL_HEADER_SIZE + imageHeight * imageWidth <= (long)height * width;
+    }
+
+    /**
+     * @return The coordinates of the first pixels of the spiral, or {@code null} if the image is too small
+     */
+    private static int[][] spiralHeaderPositions(int height, int width)
+    {
+        if((long)height * width < SPIRAL_HEADER_SIZE)
+            return null;
+
+        int[][] positions = new int[SPIRAL_HEADER_SIZE][];
+        int[] count = {0};
+        Traversal.SPIRAL.traverse(height, width, (y, x) ->
+        {
+            positions[count[0]++] = new int[] {y, x};
+            return count[0] < SPIRAL_HEADER_SIZE;
+        });
+
+        return positions;
+    }
+}
@@ -0,0 +1,67 @@
+package main;
+
+/**
+ * Summary of the pixels modified by an in-place update of a hidden image:
+ * how many pixels changed and the range of rows that contains them.
+ * @see Steganography#updateBitArray(int[][], boolean[])
+ * @see Steganography#updateSpiralBitArray(int[][], boolean[])
+ */
+public final class PixelChanges
+{
+    private final int count;
+    private final int firstRow;
+    private final int lastRow;
+
+    /**
+     * @param count The number of modified pixels
+     * @param firstRow The index of the first modified row, or -1 if no pixel changed
+     * @param lastRow The index of the last modified row, or -1 if no pixel changed
+     */
+    public PixelChanges(int count, int firstRow, int lastRow)
+    {
+        assert count >= 0 : "Negative change count";
+        assert (count == 0) == (firstRow < 0) && firstRow <= lastRow : "Invalid row range";
+
+        this.count = count;
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+    }
+
+    /**
+     * @return The number of modified pixels
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return The index of the first modified row, or -1 if no pixel changed
+     */
+    public int getFirstRow()
+    {
+        return firstRow;
+    }
+
+    /**
+     * @return The index of the last modified row, or -1 if no pixel changed
+     */
+    public int getLastRow()
+    {
+        return lastRow;
+    }
+
+    /**
+     * @return {@code true} if no pixel was modified, {@code false} otherwise
+     */
+    public boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return count + " pixel(s) changed" + (isEmpty() ? "" : " in rows " + firstRow + "-" + lastRow);
+    }
+}
@@ -0,0 +1,277 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes PNG files incrementally, one row at a time.
+ * Image data is only inflated and unfiltered as rows are requested, so a caller needing the first
+ * rows of an image does not pay for the whole file. Supports non-interlaced RGB and RGBA images with
+ * 8 bits per channel, and palette images.
+ * @see PngReveal
+ */
+public final class PngReader implements Closeable {
+
+    /**
+     * Thrown when a file is not a PNG file, or when a valid PNG file uses a layout this reader does not decode;
+     * such files may still be decoded as a whole by {@link javax.imageio.ImageIO}.
+     */
+    @SuppressWarnings("serial")
+    public static final class UnsupportedFormatException extends IOException {
+        UnsupportedFormatException(String message) {
+            super(message);
+        }
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_PALETTE = 3;
+    private static final int COLOR_RGBA = 6;
+
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+    private final byte[] input = new byte[64 * 1024];
+
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final int colorType;
+    private final int bytesPerPixel;
+    private int[] palette;
+
+    private byte[] previous;
+    private byte[] current;
+    private int rowsRead;
+    private int chunkRemaining;
+
+    /**
+     * Reads the header of a PNG file, without decoding any image data.
+     * @param stream PNG data, closed along with this reader
+     * @throws IOException if the stream is not a PNG file, or uses an unsupported layout
+     */
+    public PngReader(InputStream stream) throws IOException {
+        in = new DataInputStream(stream);
+        try {
+            byte[] signature = new byte[SIGNATURE.length];
+            in.readFully(signature);
+            if (!Arrays.equals(signature, SIGNATURE))
+                throw new UnsupportedFormatException("Not a PNG file");
+
+            if (in.readInt() != 13 || !"IHDR".equals(readType()))
+                throw new IOException("Missing PNG header");
+            width = in.readInt();
+            height = in.readInt();
+            bitDepth = in.readUnsignedByte();
+            colorType = in.readUnsignedByte();
+            int compression = in.readUnsignedByte();
+            int filter = in.readUnsignedByte();
+            int interlace = in.readUnsignedByte();
+            in.readInt(); // CRC
+
+            if (width <= 0 || height <= 0 || compression != 0 || filter != 0)
+                throw new IOException("Invalid PNG header");
+            if (interlace != 0)
+                throw new UnsupportedFormatException("Interlaced PNG");
+            if (colorType == COLOR_PALETTE ? bitDepth > 8 : (colorType != COLOR_RGB && colorType != COLOR_RGBA) || bitDepth != 8)
+                throw new UnsupportedFormatException("Color type " + colorType + " with bit depth " + bitDepth);
+
+            int channels = colorType == COLOR_RGB ? 3 : colorType == COLOR_RGBA ? 4 : 1;
+            bytesPerPixel = Math.max(1, channels * bitDepth / 8);
+            int stride = (int) (((long) width * channels * bitDepth + 7) / 8);
+            previous = new byte[stride];
+            current = new byte[stride];
+
+            // Skip ancillary chunks up to the image data, keeping the palette
+            for (;;) {
+                int length = in.readInt();
+                String type = readType();
+                if ("IDAT".equals(type)) {
+                    chunkRemaining = length;
+                    break;
+                }
+                if ("PLTE".equals(type)) {
+                    palette = new int[256];
+                    for (int i = 0; i < length / 3; ++i)
+                        palette[i] = in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+                    in.skipBytes(length % 3);
+                } else if ("IEND".equals(type)) {
+                    throw new IOException("No image data");
+                } else {
+                    skipFully(length);
+                }
+                in.readInt(); // CRC
+            }
+            if (colorType == COLOR_PALETTE && palette == null)
+                throw new IOException("Missing palette");
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens specified PNG file.
+     * @param path Input file path
+     * @return A reader positioned before the first row
+     * @throws IOException if the file cannot be read, is not a PNG file, or uses an unsupported layout
+     */
+    public static PngReader open(String path) throws IOException {
+        return new PngReader(new BufferedInputStream(new FileInputStream(path), 64 * 1024));
+    }
+
+    /**
+     * @return Width of the image, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the image, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Number of rows decoded so far
+     */
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Decodes the next row of the image.
+     * @param row Array of at least W values, receiving the packed RGB colors of the row
+     * @return {@code true} if a row was decoded, {@code false} if all rows were already read
+     * @throws IOException if the image data is corrupted or truncated
+     */
+    public boolean readRow(int[] row) throws IOException {
+        if (rowsRead == height)
+            return false;
+
+        int filter = inflateFully(current, 1)[0];
+        inflateFully(current, current.length);
+        unfilter(filter);
+
+        switch (colorType) {
+            case COLOR_RGB:
+                for (int x = 0, i = 0; x < width; ++x, i += 3)
+                    row[x] = (current[i] & 0xFF) << 16 | (current[i + 1] & 0xFF) << 8 | (current[i + 2] & 0xFF);
+                break;
+            case COLOR_RGBA:
+                for (int x = 0, i = 0; x < width; ++x, i += 4)
+                    row[x] = (current[i] & 0xFF) << 16 | (current[i + 1] & 0xFF) << 8 | (current[i + 2] & 0xFF);
+                break;
+            default:
+                int perByte = 8 / bitDepth;
+                int mask = (1 << bitDepth) - 1;
+                for (int x = 0; x < width; ++x) {
+                    int shift = 8 - bitDepth * (x % perByte + 1);
+                    row[x] = palette[(current[x / perByte] >> shift) & mask];
+                }
+        }
+
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+        ++rowsRead;
+        return true;
+    }
+
+    /**
+     * Stops decoding and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    // Reverse the PNG filter of the current row, using the previous (already unfiltered) row
+    private void unfilter(int filter) throws IOException {
+        byte[] row = current;
+        for (int i = 0; i < row.length; ++i) {
+            int a = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+            switch (filter) {
+                case 0:
+                    break;
+                case 1:
+                    row[i] += a;
+                    break;
+                case 2:
+                    row[i] += b;
+                    break;
+                case 3:
+                    row[i] += (a + b) >> 1;
+                    break;
+                case 4:
+                    row[i] += PngWriter.paeth(a, b, c);
+                    break;
+                default:
+                    throw new IOException("Invalid filter type " + filter);
+            }
+        }
+    }
+
+    // Inflate exactly length bytes into buffer, reading IDAT chunks as needed
+    private byte[] inflateFully(byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        try {
+            while (offset < length) {
+                int count = inflater.inflate(buffer, offset, length - offset);
+                offset += count;
+                if (count > 0)
+                    continue;
+                if (inflater.finished() || inflater.needsDictionary())
+                    throw new EOFException("Truncated image data");
+                if (inflater.needsInput())
+                    inflater.setInput(input, 0, readData());
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return buffer;
+    }
+
+    // Read the next bytes of image data, moving on to the following IDAT chunk if needed
+    private int readData() throws IOException {
+        while (chunkRemaining == 0) {
+            in.readInt(); // CRC
+            int length = in.readInt();
+            if (!"IDAT".equals(readType()))
+                throw new EOFException("Truncated image data");
+            chunkRemaining = length;
+        }
+        int count = Math.min(chunkRemaining, input.length);
+        in.readFully(input, 0, count);
+        chunkRemaining -= count;
+        return count;
+    }
+
+    private String readType() throws IOException {
+        byte[] type = new byte[4];
+        in.readFully(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private void skipFully(int length) throws IOException {
+        while (length > 0) {
+            int count = in.skipBytes(length);
+            if (count <= 0)
+                throw new EOFException();
+            length -= count;
+        }
+    }
+}
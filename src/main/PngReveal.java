@@ -0,0 +1,228 @@
+package main;
+
+import java.io.IOException;
+
+/**
+ * Reveals framed payloads straight from PNG files, decoding only the rows which contain the header and the payload.
+ * Since a framed payload starts at the first pixel of the linear layout, the time to reveal it depends on the size
+ * of the payload, not on the size of the file.
+ * @see Steganography#embedFramedText(int[][], String)
+ */
+public final class PngReveal
+{
+    /**
+     * Sequence of the LSBs of a PNG file's pixels, in a linear fashion, decoding rows on demand
+     */
+    private static final class LsbStream
+    {
+        private final PngReader reader;
+        private final int[] row;
+        private int x;
+
+        LsbStream(PngReader reader)
+        {
+            this.reader = reader;
+            this.row = new int[reader.getWidth()];
+            this.x = row.length;
+        }
+
+        boolean nextBit() throws IOException
+        {
+            if(x == row.length)
+            {
+                if(!reader.readRow(row))
+                    throw new IOException("Payload exceeds the image");
+                x = 0;
+            }
+
+            return Steganography.getLSB(row[x++]);
+        }
+
+        void read(boolean[] destination) throws IOException
+        {
+            for(int i=0; i<destination.length; ++i)
+                destination[i] = nextBit();
+        }
+    }
+
+    /**
+     * Reveals the header embedded in the first pixels of a PNG file
+     * @param path The path of a PNG file
+     * @return The header, or {@code null} if there is no valid header or if the payload it announces does not fit in the image
+     * @throws IOException if the file cannot be read or decoded
+     * @see Steganography#revealHeader(int[][])
+     */
+    public static PayloadHeader revealHeader(String path) throws IOException
+    {
+        try(PngReader reader = PngReader.open(path))
+        {
+            return revealHeader(reader, new LsbStream(reader));
+        }
+    }
+
+    /**
+     * Reveals the payload of a linear framed bit array from a PNG file, stopping the decoding once it is complete
+     * @param path The path of a PNG file
+     * @return The payload without its header, or {@code null} if the file does not contain a valid linear framed payload
+     * or if the payload does not match its checksum
+     * @throws IOException if the file cannot be read or decoded
+     */
+    public static boolean[] revealFramedBitArray(String path) throws IOException
+    {
+        try(PngReader reader = PngReader.open(path))
+        {
+            LsbStream stream = new LsbStream(reader);
+            PayloadHeader header = revealHeader(reader, stream);
+            if(header == null || header.getLayout() != PayloadHeader.LINEAR)
+                return null;
+
+            return readPayload(stream, header);
+        }
+    }
+
+    /**
+     * Checks that a PNG file carries a framed payload matching its checksum, stopping the decoding once the trailer
+     * is read. The payload bits go through the checksum without being stored
+     * @param path The path of a PNG file
+     * @return {@code true} if the file contains a valid framed payload flagged with {@link PayloadHeader#CRC32C}
+     * whose checksum matches, {@code false} otherwise
+     * @throws IOException if the file cannot be read or decoded
+     * @see Steganography#verify(int[][])
+     */
+    public static boolean verify(String path) throws IOException
+    {
+        try(PngReader reader = PngReader.open(path))
+        {
+            LsbStream stream = new LsbStream(reader);
+            PayloadHeader header = revealHeader(reader, stream);
+            if(header == null || (header.getFlags() & PayloadHeader.CRC32C) == 0)
+                return false;
+
+            // Other layouts may reach the last rows, the image is decoded as a whole
+            if(header.getLayout() != PayloadHeader.LINEAR)
+                return Steganography.verify(Helper.readChecked(path));
+
+            PayloadHeader.Checksum checksum = new PayloadHeader.Checksum();
+            for(int i=0; i<header.getLength(); ++i)
+                checksum.add(stream.nextBit());
+
+            return readTrailer(stream) == checksum.getValue();
+        }
+        catch(PngReader.UnsupportedFormatException e)
+        {
+            return Steganography.verify(Helper.readChecked(path));
+        }
+    }
+
+    /**
+     * Reveals a String which was embedded with a header in a PNG file, stopping the decoding once it is complete.
+     * PNG layouts which cannot be decoded incrementally are fully decoded instead
+     * @param path The path of a PNG file
+     * @return The String, or {@code null} if the file does not contain a valid framed text
+     * @throws IOException if the file cannot be read or decoded
+     * @see Steganography#revealFramedText(int[][])
+     */
+    public static String revealFramedText(String path) throws IOException
+    {
+        try(PngReader reader = PngReader.open(path))
+        {
+            LsbStream stream = new LsbStream(reader);
+            PayloadHeader header = revealHeader(reader, stream);
+            if(header == null || (header.getFlags() & PayloadHeader.ENCRYPTED) != 0)
+                return null;
+
+            // Other layouts may reach the last rows, the image is decoded as a whole
+            if(header.getLayout() != PayloadHeader.LINEAR)
+                return Steganography.revealFramedText(Helper.readChecked(path));
+
+            int codec = header.getCodec();
+            if(codec != PayloadHeader.UTF16 && codec != PayloadHeader.UTF8)
+            {
+                boolean[] payload = readPayload(stream, header);
+                return payload == null ? null : Steganography.decodeText(payload, codec);
+            }
+
+            // Chars and bytes are decoded as they are read, going through the checksum if there is one
+            PayloadHeader.Checksum checksum = (header.getFlags() & PayloadHeader.CRC32C) != 0 ? new PayloadHeader.Checksum() : null;
+            int length = header.getLength();
+            String message;
+            if(codec == PayloadHeader.UTF8)
+            {
+                byte[] bytes = new byte[length / Byte.SIZE];
+                for(int i=0; i<bytes.length; ++i)
+                    bytes[i] = (byte)readValue(stream, Byte.SIZE, checksum);
+                message = TextMessage.utf8ToString(bytes, bytes.length);
+                length -= bytes.length * Byte.SIZE;
+            }
+            else
+            {
+                char[] chars = new char[length / Character.SIZE];
+                for(int i=0; i<chars.length; ++i)
+                    chars[i] = (char)readValue(stream, Character.SIZE, checksum);
+                message = new String(chars);
+                length -= chars.length * Character.SIZE;
+            }
+
+            if(checksum == null)
+                return message;
+            readValue(stream, length, checksum);
+
+            return readTrailer(stream) == checksum.getValue() ? message : null;
+        }
+        catch(PngReader.UnsupportedFormatException e)
+        {
+            return Steganography.revealFramedText(Helper.readChecked(path));
+        }
+    }
+
+    private static PayloadHeader revealHeader(PngReader reader, LsbStream stream) throws IOException
+    {
+        long capacity = (long)reader.getWidth() * reader.getHeight();
+        if(capacity < PayloadHeader.SIZE)
+            return null;
+
+        boolean[] bits = new boolean[PayloadHeader.SIZE];
+        stream.read(bits);
+
+        PayloadHeader header = PayloadHeader.fromBitArray(bits, 0);
+        if(header == null || header.getFramedSize() > capacity)
+            return null;
+
+        return header;
+    }
+
+    // Read the payload following a linear header, checking its trailer if it has one
+    private static boolean[] readPayload(LsbStream stream, PayloadHeader header) throws IOException
+    {
+        boolean[] payload = new boolean[header.getLength()];
+        stream.read(payload);
+
+        if((header.getFlags() & PayloadHeader.CRC32C) != 0 && readTrailer(stream) != PayloadHeader.checksum(payload, payload.length))
+            return null;
+
+        return payload;
+    }
+
+    // Read a value of at most 31 bits stored least significant bit first, adding the bits to the checksum if any
+    private static int readValue(LsbStream stream, int bits, PayloadHeader.Checksum checksum) throws IOException
+    {
+        int value = 0;
+        for(int j=0; j<bits; ++j)
+        {
+            boolean bit = stream.nextBit();
+            if(checksum != null)
+                checksum.add(bit);
+            value |= (bit ? 1 : 0) << j;
+        }
+
+        return value;
+    }
+
+    private static int readTrailer(LsbStream stream) throws IOException
+    {
+        boolean[] trailer = new boolean[PayloadHeader.TRAILER_SIZE];
+        stream.read(trailer);
+
+        return PayloadHeader.getField(trailer, 0, PayloadHeader.TRAILER_SIZE);
+    }
+}
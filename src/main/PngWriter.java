@@ -0,0 +1,392 @@
+package main;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes images as 8-bit RGB PNG files with a configurable zlib level and row filter.
+ * <p>
+ * Large images are split into blocks of rows which are filtered and deflated in parallel,
+ * each block being primed with the last 32 KiB of the previous one as dictionary. The raw
+ * deflate streams are then stitched, pigz-style, into a single zlib stream: every block but
+ * the last ends on a byte boundary with a sync flush, and the Adler-32 checksums of the blocks
+ * are combined into the one of the whole image data.
+ * @see Helper#writePng(String, int[][], int, PngWriter.Filter)
+ */
+public final class PngWriter {
+
+    /**
+     * PNG row filter, applied before compression.
+     */
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH,
+        /** Picks for each row the filter minimizing the sum of absolute filtered values */
+        ADAPTIVE
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int WINDOW_SIZE = 32 * 1024;
+    private static final int MIN_BLOCK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+    private static final int ADLER_BASE = 65521;
+
+    private final int level;
+    private final Filter filter;
+
+    // Compressed data of a block of rows, along with the checksum of the uncompressed data
+    private static final class Block {
+        final byte[] data;
+        final int adler;
+        final long length;
+
+        Block(byte[] data, int adler, long length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+
+    /**
+     * @param level zlib compression level, from 0 (no compression) to 9 (best compression)
+     * @param filter row filter applied before compression
+     */
+    public PngWriter(int level, Filter filter) {
+        assert level >= 0 && level <= 9 : "Not a valid compression level";
+        this.level = level;
+        this.filter = filter;
+    }
+
+    /**
+     * Writes specified image to a PNG file.
+     * @param path Output file path
+     * @param array HxW array of packed RGB colors
+     * @return {@code true} if write operation was successful, {@code false} otherwise
+     */
+    public boolean write(String path, int[][] array) {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(path), 1 << 16)) {
+            write(array, out);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes specified image to a stream as a PNG file.
+     * @param array HxW array of packed RGB colors
+     * @param out Output stream, left open
+     * @throws IOException if writing to the stream fails
+     */
+    public void write(int[][] array, OutputStream out) throws IOException {
+        assert Utils.isImage(array) : "Not a valid image";
+
+        int height = array.length;
+        int width = array[0].length;
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = 2; // color type: RGB
+        writeChunk(data, "IHDR", header, 0, header.length);
+
+        // Split rows into blocks large enough to compress well on their own
+        long rowSize = 1 + (long) BYTES_PER_PIXEL * width;
+        int rowsPerBlock = (int) Math.max(1, Math.min(height, MIN_BLOCK_SIZE / rowSize));
+        int blockCount = (height + rowsPerBlock - 1) / rowsPerBlock;
+
+        List<CompletableFuture<Block>> blocks = new ArrayList<>(blockCount);
+        for (int block = 0; block < blockCount; ++block) {
+            int first = block * rowsPerBlock;
+            int last = Math.min(height, first + rowsPerBlock);
+            boolean isLast = last == height;
+            if (blockCount == 1)
+                blocks.add(CompletableFuture.completedFuture(deflateRows(array, first, last, isLast)));
+            else
+                blocks.add(CompletableFuture.supplyAsync(() -> deflateRows(array, first, last, isLast)));
+        }
+
+        // zlib header, then the concatenated raw deflate blocks in order
+        ChunkBuffer idat = new ChunkBuffer(data);
+        idat.write(0x78);
+        idat.write(zlibFlags());
+
+        int adler = 1;
+        for (CompletableFuture<Block> future : blocks) {
+            Block block;
+            try {
+                block = future.join();
+            } catch (CompletionException e) {
+                throw new IOException(e.getCause());
+            }
+            idat.write(block.data, 0, block.data.length);
+            adler = combineAdler(adler, block.adler, block.length);
+        }
+
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, adler);
+        idat.write(trailer, 0, trailer.length);
+        idat.flush();
+
+        writeChunk(data, "IEND", new byte[0], 0, 0);
+        data.flush();
+    }
+
+    // Filter and compress rows [first, last) into a raw deflate stream,
+    // ending with a sync flush unless it is the last block of the image
+    private Block deflateRows(int[][] array, int first, int last, boolean isLast) {
+        int width = array[0].length;
+        int stride = BYTES_PER_PIXEL * width;
+
+        byte[] previous = new byte[stride];
+        byte[] current = new byte[stride];
+        byte[] filtered = new byte[1 + stride];
+        if (first > 0)
+            toBytes(array[first - 1], previous);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            // Prime the compressor with the end of the previous block, as a sequential encoder would
+            if (first > 0) {
+                byte[] dictionary = new byte[(int) Math.min(WINDOW_SIZE, (long) first * (1 + stride))];
+                int position = dictionary.length;
+                for (int row = first - 1; row >= 0 && position > 0; --row) {
+                    byte[] before = new byte[stride];
+                    if (row > 0)
+                        toBytes(array[row - 1], before);
+                    toBytes(array[row], current);
+                    filterRow(current, before, filtered);
+                    int count = Math.min(position, filtered.length);
+                    System.arraycopy(filtered, filtered.length - count, dictionary, position - count, count);
+                    position -= count;
+                }
+                deflater.setDictionary(dictionary);
+            }
+
+            Adler32 checksum = new Adler32();
+            ByteArrayBuilder output = new ByteArrayBuilder((last - first) * filtered.length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+
+            for (int row = first; row < last; ++row) {
+                toBytes(array[row], current);
+                filterRow(current, previous, filtered);
+                checksum.update(filtered, 0, filtered.length);
+
+                deflater.setInput(filtered);
+                while (!deflater.needsInput())
+                    output.write(buffer, 0, deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH));
+
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            if (isLast) {
+                deflater.finish();
+                while (!deflater.finished())
+                    output.write(buffer, 0, deflater.deflate(buffer));
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+
+            return new Block(output.toByteArray(), (int) checksum.getValue(), (long) (last - first) * filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Apply the configured filter to a row, writing the filter type followed by the filtered bytes
+    private void filterRow(byte[] row, byte[] previous, byte[] filtered) {
+        if (filter != Filter.ADAPTIVE) {
+            applyFilter(filter, row, previous, filtered);
+            return;
+        }
+
+        Filter best = Filter.NONE;
+        long bestScore = Long.MAX_VALUE;
+        for (Filter candidate : new Filter[]{Filter.NONE, Filter.SUB, Filter.UP, Filter.AVERAGE, Filter.PAETH}) {
+            applyFilter(candidate, row, previous, filtered);
+            long score = 0;
+            for (int i = 1; i < filtered.length; ++i)
+                score += Math.abs((int) filtered[i]);
+            if (score < bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        if (best != Filter.PAETH)
+            applyFilter(best, row, previous, filtered);
+    }
+
+    private static void applyFilter(Filter type, byte[] row, byte[] previous, byte[] filtered) {
+        filtered[0] = (byte) type.ordinal();
+        for (int i = 0; i < row.length; ++i) {
+            int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int predictor;
+            switch (type) {
+                case SUB:
+                    predictor = a;
+                    break;
+                case UP:
+                    predictor = b;
+                    break;
+                case AVERAGE:
+                    predictor = (a + b) >> 1;
+                    break;
+                case PAETH:
+                    predictor = paeth(a, b, c);
+                    break;
+                default:
+                    predictor = 0;
+            }
+            filtered[i + 1] = (byte) (row[i] - predictor);
+        }
+    }
+
+    /**
+     * Paeth predictor, as defined by the PNG specification.
+     * @param a left byte
+     * @param b upper byte
+     * @param c upper left byte
+     * @return the one of {@code a}, {@code b} and {@code c} closest to {@code a + b - c}
+     */
+    static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc)
+            return a;
+        return pb <= pc ? b : c;
+    }
+
+    // Convert a row of packed RGB colors into bytes
+    private static void toBytes(int[] row, byte[] bytes) {
+        for (int x = 0; x < row.length; ++x) {
+            int rgb = row[x];
+            bytes[3 * x] = (byte) (rgb >> 16);
+            bytes[3 * x + 1] = (byte) (rgb >> 8);
+            bytes[3 * x + 2] = (byte) rgb;
+        }
+    }
+
+    // Second byte of the zlib header, advertising the compression level
+    private int zlibFlags() {
+        int flags = (level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3) << 6;
+        return flags + 31 - (0x78 * 256 + flags) % 31;
+    }
+
+    // Checksum of the concatenation of two sequences, as zlib's adler32_combine
+    private static int combineAdler(int first, int second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE)
+            sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE)
+            sum1 -= ADLER_BASE;
+        if (sum2 >= 2L * ADLER_BASE)
+            sum2 -= 2L * ADLER_BASE;
+        if (sum2 >= ADLER_BASE)
+            sum2 -= ADLER_BASE;
+        return (int) (sum1 | (sum2 << 16));
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, offset, length);
+
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // Growable byte array, avoiding the synchronization of ByteArrayOutputStream
+    private static final class ByteArrayBuilder {
+        private byte[] bytes;
+        private int size;
+
+        ByteArrayBuilder(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        void write(byte[] data, int offset, int length) {
+            if (size + length > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            System.arraycopy(data, offset, bytes, size, length);
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    // Splits the zlib stream into IDAT chunks of bounded size
+    private static final class ChunkBuffer {
+        private final DataOutputStream out;
+        private final byte[] chunk = new byte[MAX_CHUNK_SIZE];
+        private int size;
+
+        ChunkBuffer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(int value) throws IOException {
+            if (size == chunk.length)
+                flush();
+            chunk[size++] = (byte) value;
+        }
+
+        void write(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (size == chunk.length)
+                    flush();
+                int count = Math.min(length, chunk.length - size);
+                System.arraycopy(data, offset, chunk, size, count);
+                size += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        void flush() throws IOException {
+            if (size > 0)
+                writeChunk(out, "IDAT", chunk, 0, size);
+            size = 0;
+        }
+    }
+}
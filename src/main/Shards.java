@@ -0,0 +1,221 @@
+package main;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Splits a payload too large for a single cover into ordered shards, embedded into several covers concurrently.
+ * <p>
+ * Each shard is a framed payload flagged with {@link PayloadHeader#SHARD}, starting with a 96-bit shard header:
+ * the 32-bit payload id, the 16-bit sequence number and the 16-bit shard count, followed by the 32-bit total
+ * payload length, each field being stored least significant bit first. Shard sizes are proportional to the capacity
+ * of their covers, so that the work is evenly spread across threads.
+ */
+public final class Shards
+{
+    /** Number of bits of a shard header */
+    public static final int HEADER_SIZE = 96;
+
+    private static final int MAX_SHARDS = 1 << 16;
+
+    /**
+     * A shard revealed from a cover
+     */
+    private static final class Shard
+    {
+        final int id;
+        final int sequence;
+        final int count;
+        final int totalLength;
+        final boolean[] bits;
+
+        Shard(int id, int sequence, int count, int totalLength, boolean[] bits)
+        {
+            this.id = id;
+            this.sequence = sequence;
+            this.count = count;
+            this.totalLength = totalLength;
+            this.bits = bits;
+        }
+    }
+
+    /**
+     * Returns the number of payload bits a cover can hold as a shard
+     * @param height The height of the cover
+     * @param width The width of the cover
+     * @return The capacity of the cover, in payload bits, which is 0 if the cover cannot even hold the headers
+     */
+    public static long getCapacity(int height, int width)
+    {
+        return Math.max(0, (long)height * width - PayloadHeader.SIZE - HEADER_SIZE);
+    }
+
+    /**
+     * Embeds a boolean array split into shards, one per cover, in parallel
+     * @param covers The images in which to embed the shards
+     * @param payload The boolean array to be embedded
+     * @return The <b>copies</b> of {@code covers} with their shard embedded, in the same order
+     * @see Shards#revealBitArray(List)
+     */
+    public static List<int[][]> embedBitArray(List<int[][]> covers, boolean[] payload)
+    {
+        return embedBitArray(covers, payload, ThreadLocalRandom.current().nextInt());
+    }
+
+    /**
+     * Embeds a boolean array split into shards, one per cover, in parallel
+     * @param covers The images in which to embed the shards
+     * @param payload The boolean array to be embedded
+     * @param id An identifier telling the shards of this payload apart from the ones of other payloads
+     * @return The <b>copies</b> of {@code covers} with their shard embedded, in the same order
+     */
+    public static List<int[][]> embedBitArray(List<int[][]> covers, boolean[] payload, int id)
+    {
+        return embedBitArray(covers, payload, id, null);
+    }
+
+    /**
+     * Embeds a boolean array split into shards, one per cover, in parallel, measuring the distortion of each cover
+     * @param covers The images in which to embed the shards
+     * @param payload The boolean array to be embedded
+     * @param id An identifier telling the shards of this payload apart from the ones of other payloads
+     * @param metrics An array with one slot per cover, receiving the distortion of each cover, or {@code null} not to measure it
+     * @return The <b>copies</b> of {@code covers} with their shard embedded, in the same order
+     */
+    public static List<int[][]> embedBitArray(List<int[][]> covers, boolean[] payload, int id, EmbedMetrics[] metrics)
+    {
+        int count = covers.size();
+        assert count > 0 && count <= MAX_SHARDS : "Not a valid number of covers";
+        assert metrics == null || metrics.length == count : "Not one metrics slot per cover";
+
+        // Shard boundaries, proportional to the capacity of the covers
+        long[] capacities = new long[count];
+        long totalCapacity = 0;
+        for(int i=0; i<count; ++i)
+        {
+            assert Utils.isImage(covers.get(i)) : "Not a valid image";
+            capacities[i] = getCapacity(covers.get(i).length, covers.get(i)[0].length);
+            totalCapacity += capacities[i];
+        }
+        assert totalCapacity >= payload.length : "Message is too big for covers";
+
+        int[] starts = new int[count + 1];
+        long cumulated = 0;
+        for(int i=0; i<count; ++i)
+        {
+            cumulated += capacities[i];
+            starts[i + 1] = i == count - 1 ? payload.length : (int)Math.min(payload.length, (double)payload.length * cumulated / totalCapacity);
+        }
+
+        return IntStream.range(0, count).parallel()
+            .mapToObj(i -> embedShard(covers.get(i), payload, starts[i], starts[i + 1], id, i, count, metrics))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Reveals a boolean array which was split into shards, revealing the covers in parallel
+     * @param hidden The images containing the shards, in any order
+     * @return The reassembled boolean array, or {@code null} if a shard is missing, or if the images contain no shard or shards of different payloads
+     * @see Shards#embedBitArray(List, boolean[])
+     */
+    public static boolean[] revealBitArray(List<int[][]> hidden)
+    {
+        List<Shard> shards = hidden.parallelStream()
+            .map(Shards::revealShard)
+            .collect(Collectors.toList());
+
+        if(shards.isEmpty() || shards.contains(null))
+            return null;
+
+        Shard first = shards.get(0);
+        Shard[] ordered = new Shard[first.count];
+        long total = 0;
+        for(Shard shard : shards)
+        {
+            if(shard.id != first.id || shard.count != first.count || shard.totalLength != first.totalLength
+                || shard.sequence >= ordered.length || ordered[shard.sequence] != null)
+                return null;
+            ordered[shard.sequence] = shard;
+            total += shard.bits.length;
+        }
+
+        // The length comes from the pixels, so it is checked against the shards before allocating
+        if(total != first.totalLength)
+            return null;
+
+        boolean[] payload = new boolean[first.totalLength];
+        int offset = 0;
+        for(Shard shard : ordered)
+        {
+            if(shard == null)
+                return null;
+            System.arraycopy(shard.bits, 0, payload, offset, shard.bits.length);
+            offset += shard.bits.length;
+        }
+
+        return payload;
+    }
+
+    /**
+     * Embeds a String split into shards, one per cover, in parallel
+     * @param covers The images in which to embed the shards
+     * @param message The String to be embedded
+     * @return The <b>copies</b> of {@code covers} with their shard embedded, in the same order
+     * @see TextMessage#stringToBitArray(String)
+     */
+    public static List<int[][]> embedText(List<int[][]> covers, String message)
+    {
+        return embedBitArray(covers, TextMessage.stringToBitArray(message));
+    }
+
+    /**
+     * Reveals a String which was split into shards
+     * @param hidden The images containing the shards, in any order
+     * @return The String, or {@code null} if the shards cannot be reassembled
+     * @see TextMessage#bitArrayToString(boolean[])
+     */
+    public static String revealText(List<int[][]> hidden)
+    {
+        boolean[] payload = revealBitArray(hidden);
+
+        return payload == null ? null : TextMessage.bitArrayToString(payload);
+    }
+
+    private static int[][] embedShard(int[][] cover, boolean[] payload, int start, int end, int id, int sequence, int count, EmbedMetrics[] metrics)
+    {
+        boolean[] shard = new boolean[HEADER_SIZE + end - start];
+        PayloadHeader.putField(shard, 0, id, 32);
+        PayloadHeader.putField(shard, 32, sequence, 16);
+        PayloadHeader.putField(shard, 48, count, 16);
+        PayloadHeader.putField(shard, 64, payload.length, 32);
+        System.arraycopy(payload, start, shard, HEADER_SIZE, end - start);
+
+        PayloadHeader header = new PayloadHeader(PayloadHeader.LINEAR, PayloadHeader.UTF16, PayloadHeader.SHARD, shard.length);
+
+        if(metrics == null)
+            return Steganography.embedBitArray(cover, Steganography.frame(header, shard));
+
+        // Each cover is measured by its own task, into its own slot
+        metrics[sequence] = new EmbedMetrics();
+        return Steganography.embedBitArray(cover, Steganography.frame(header, shard), new int[cover.length][cover[0].length], metrics[sequence]);
+    }
+
+    private static Shard revealShard(int[][] hidden)
+    {
+        PayloadHeader header = Steganography.revealHeader(hidden);
+        if(header == null || (header.getFlags() & PayloadHeader.SHARD) == 0 || header.getLength() < HEADER_SIZE)
+            return null;
+
+        boolean[] shard = Steganography.revealBitArray(hidden, PayloadHeader.SIZE, header.getLength());
+        int count = PayloadHeader.getField(shard, 48, 16);
+        int totalLength = PayloadHeader.getField(shard, 64, 32);
+        if(totalLength < shard.length - HEADER_SIZE)
+            return null;
+
+        return new Shard(PayloadHeader.getField(shard, 0, 32), PayloadHeader.getField(shard, 32, 16), count == 0 ? MAX_SHARDS : count,
+            totalLength, Arrays.copyOfRange(shard, HEADER_SIZE, shard.length));
+    }
+}
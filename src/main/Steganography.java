@@ -1,7 +1,12 @@
 package main;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
 public class Steganography
 {
+    // Number of rows of the bands embedded in parallel by the measured linear embedding
+    private static final int METRICS_BAND_ROWS = 64;
 
     /*
      * ********************************************
@@ -45,20 +50,34 @@ public class Steganography
     public static int[][] embedBWImage(int[][] cover, boolean[][] message)
     {
         assert Utils.isImage(cover) : "Not a valid image";
+
+        return embedBWImage(cover, message, new int[cover.length][cover[0].length]);
+    }
+
+    /**
+     * Embeds a black and white image into a color image's LSB layer using linear embedding, without allocating
+     * @param cover The image in which to embed {@code message}
+     * @param message The image to embed into {@code cover}
+     * @param destination An image of the same size as {@code cover} receiving the result, may be {@code cover} itself to embed in place
+     * @return {@code destination}
+     * @see Steganography#embedBWImage(int[][], boolean[][])
+     */
+    public static int[][] embedBWImage(int[][] cover, boolean[][] message, int[][] destination)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert isSameSize(cover, destination) : "Destination does not match cover size";
         
         int height = cover.length;
         int width = cover[0].length;
 
-        int[][] embedded = new int[height][width];
-
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                embedded[y][x] =
+                destination[y][x] =
                     (x < message[0].length && y < message.length ?
                         embedInLSB(cover[y][x], message[y][x]) :
                         cover[y][x]);
 
-        return embedded;
+        return destination;
     }
 
     /**
@@ -70,13 +89,26 @@ public class Steganography
     {
         assert Utils.isImage(cover) : "Not a valid image";
         
-        boolean[][] message = new boolean[cover.length][cover[0].length];
+        return revealBWImage(cover, new boolean[cover.length][cover[0].length]);
+    }
+
+    /**
+     * Reveals a black and white image which was embedded in the LSB layer of another, without allocating
+     * @param cover A color image containing an image embedded in its LSB layer
+     * @param destination An image of the same size as {@code cover} receiving the result
+     * @return {@code destination}
+     * @see Steganography#revealBWImage(int[][])
+     */
+    public static boolean[][] revealBWImage(int[][] cover, boolean[][] destination)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert destination.length == cover.length && destination[0].length == cover[0].length : "Destination does not match cover size";
 
-        for(int y=0; y<message.length; ++y)
-            for(int x=0; x<message[y].length; ++x)
-                message[y][x] = getLSB(cover[y][x]);
+        for(int y=0; y<destination.length; ++y)
+            for(int x=0; x<destination[y].length; ++x)
+                destination[y][x] = getLSB(cover[y][x]);
 
-        return message;
+        return destination;
     }
 
     /*
@@ -95,20 +127,96 @@ public class Steganography
     public static int[][] embedBitArray(int[][] cover, boolean[] message)
     {
         assert Utils.isImage(cover) : "Not a valid image";
+
+        return embedBitArray(cover, message, message.length, new int[cover.length][cover[0].length]);
+    }
+
+    /**
+     * Embeds a boolean array into the LSB layer of a color image, in a linear fashion, without allocating
+     * @param cover The image in which to embed the bit array
+     * @param message The boolean array to be embedded
+     * @param destination An image of the same size as {@code cover} receiving the result, may be {@code cover} itself to embed in place
+     * @return {@code destination}
+     * @see Steganography#embedBitArray(int[][], boolean[])
+     */
+    public static int[][] embedBitArray(int[][] cover, boolean[] message, int[][] destination)
+    {
+        return embedBitArray(cover, message, message.length, destination);
+    }
+
+    /**
+     * Embeds the first {@code length} values of a boolean array into the LSB layer of a color image, in a linear fashion, without allocating
+     * @param cover The image in which to embed the bit array
+     * @param message The boolean array to be embedded, possibly larger than the payload (e.g. a pooled buffer)
+     * @param length The number of bits of {@code message} to embed
+     * @param destination An image of the same size as {@code cover} receiving the result, may be {@code cover} itself to embed in place
+     * @return {@code destination}
+     * @see BufferPool
+     */
+    public static int[][] embedBitArray(int[][] cover, boolean[] message, int length, int[][] destination)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert isSameSize(cover, destination) : "Destination does not match cover size";
+        assert length <= message.length : "Length exceeds the message";
         
         int height = cover.length;
         int width = cover[0].length;
 
-        int[][] embedded = new int[height][width];
-
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                embedded[y][x] =
-                    (x + y * width < message.length ?
+                destination[y][x] =
+                    (x + y * width < length ?
                         embedInLSB(cover[y][x], message[x + y * width]) :
                         cover[y][x]);
 
-        return embedded;
+        return destination;
+    }
+
+    /**
+     * Embeds a boolean array into the LSB layer of a color image, in a linear fashion, measuring the distortion
+     * on the way. Bands of rows are embedded in parallel, each into its own metrics, which are merged at the end
+     * @param cover The image in which to embed the bit array
+     * @param message The boolean array to be embedded
+     * @param destination An image of the same size as {@code cover} receiving the result, may be {@code cover} itself to embed in place
+     * @param metrics The metrics receiving the distortion of {@code destination} relative to {@code cover}
+     * @return {@code destination}
+     * @see Steganography#embedBitArray(int[][], boolean[], int[][])
+     */
+    public static int[][] embedBitArray(int[][] cover, boolean[] message, int[][] destination, EmbedMetrics metrics)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert Utils.isCoverLargeEnough(cover, message) : "Message is too big for cover";
+        assert isSameSize(cover, destination) : "Destination does not match cover size";
+
+        int height = cover.length;
+        int width = cover[0].length;
+        int bands = (height + METRICS_BAND_ROWS - 1) / METRICS_BAND_ROWS;
+        EmbedMetrics[] parts = new EmbedMetrics[bands];
+
+        IntStream.range(0, bands).parallel().forEach(band ->
+        {
+            EmbedMetrics part = new EmbedMetrics();
+            int last = Math.min(height, (band + 1) * METRICS_BAND_ROWS);
+
+            for(int y=band*METRICS_BAND_ROWS; y<last; ++y)
+                for(int x=0; x<width; ++x)
+                {
+                    long index = (long)y * width + x;
+                    int pixel = cover[y][x];
+                    if(index < message.length)
+                        pixel = embedInLSB(pixel, message[(int)index]);
+                    part.add(cover[y][x], pixel);
+                    destination[y][x] = pixel;
+                }
+
+            part.addPixels((long)(last - band * METRICS_BAND_ROWS) * width);
+            parts[band] = part;
+        });
+
+        for(EmbedMetrics part : parts)
+            metrics.merge(part);
+
+        return destination;
     }
 
     /**
@@ -120,16 +228,30 @@ public class Steganography
     {
         assert Utils.isImage(cover) : "Not a valid image";
         
+        return revealBitArray(cover, new boolean[cover.length * cover[0].length]);
+    }
+
+    /**
+     * Reveals a boolean array which was embedded in the LSB layer of an image, without allocating
+     * @param cover A color image containing an bit array embedded in its LSB layer
+     * @param destination A boolean array of at least height*width values, of which only the first height*width are written
+     * @return {@code destination}
+     * @see Steganography#revealBitArray(int[][])
+     */
+    public static boolean[] revealBitArray(int[][] cover, boolean[] destination)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        
         int height = cover.length;
         int width = cover[0].length;
 
-        boolean[] message = new boolean[height*width];
+        assert destination.length >= height*width : "Destination is too small";
 
         for(int y=0; y<height; ++y)
             for(int x=0; x<width; ++x)
-                message[y*width + x] = getLSB(cover[y][x]);
+                destination[y*width + x] = getLSB(cover[y][x]);
 
-        return message;
+        return destination;
     }
 
     /**
@@ -145,6 +267,19 @@ public class Steganography
         return embedBitArray(cover, TextMessage.stringToBitArray(message));
     }
 
+    /**
+     * Embeds a String into the LSB layer of a color image, in a linear fashion, writing the result into an existing image
+     * @param cover The image in which to embed the bit array
+     * @param message The String to be embedded
+     * @param destination A HxW int array receiving the result, may be {@code cover} itself
+     * @return {@code destination}
+     * @see Steganography#embedText(int[][], String)
+     */
+    public static int[][] embedText(int[][] cover, String message, int[][] destination)
+    {
+        return embedBitArray(cover, TextMessage.stringToBitArray(message), destination);
+    }
+
     /**
      * Reveals a String which was embedded in the LSB layer of an image
      * @param cover A color image containing a String embedded in its LSB layer
@@ -156,6 +291,53 @@ public class Steganography
         return TextMessage.bitArrayToString(revealBitArray(cover));
     }
 
+    /**
+     * Embeds a String into the LSB layer of a color image, in a linear fashion, using buffers borrowed from a pool
+     * @param cover The image in which to embed the bit array
+     * @param message The String to be embedded
+     * @param pool The pool providing the bit buffer and the resulting image
+     * @return A pooled <b>copy</b> of {@code cover} with {@code message} embedded, to be given back with {@link BufferPool#releaseRaster(int[][])}
+     * @see Steganography#embedText(int[][], String)
+     */
+    public static int[][] embedText(int[][] cover, String message, BufferPool pool)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+
+        boolean[] bits = pool.acquireBits(Character.SIZE * message.length());
+        try
+        {
+            int length = TextMessage.stringToBitArray(message, bits);
+            return embedBitArray(cover, bits, length, pool.acquireRaster(cover.length, cover[0].length));
+        }
+        finally
+        {
+            pool.releaseBits(bits);
+        }
+    }
+
+    /**
+     * Reveals a String which was embedded in the LSB layer of an image, using a bit buffer borrowed from a pool
+     * @param cover A color image containing a String embedded in its LSB layer
+     * @param pool The pool providing the bit buffer
+     * @return The String extracted from the LSB layer of {@code cover}
+     * @see Steganography#revealText(int[][])
+     */
+    public static String revealText(int[][] cover, BufferPool pool)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+
+        int length = cover.length * cover[0].length;
+        boolean[] bits = pool.acquireBits(length);
+        try
+        {
+            return TextMessage.bitArrayToString(revealBitArray(cover, bits), length);
+        }
+        finally
+        {
+            pool.releaseBits(bits);
+        }
+    }
+
     /*
      * ********************************************
      * Part 3: embed/reveal bit
@@ -176,6 +358,19 @@ public class Steganography
         return embedSpiralBitArray(cover, ImageMessage.bwImageToBitArray(bwImage));
     }
 
+    /**
+     * Embeds a black and white image into a color image's LSB layer using spiral embedding, writing the result into an existing image
+     * @param cover The image in which to embed {@code message}
+     * @param bwImage The image to embed into {@code cover}
+     * @param destination A HxW int array receiving the result, may be {@code cover} itself
+     * @return {@code destination}
+     * @see Steganography#embedSpiralImage(int[][], boolean[][])
+     */
+    public static int[][] embedSpiralImage(int[][] cover, boolean[][] bwImage, int[][] destination)
+    {
+        return embedSpiralBitArray(cover, ImageMessage.bwImageToBitArray(bwImage), destination);
+    }
+
     /**
      * Reveals an image which was embedded in the LSB layer of an image in a spiral fashion
      * @param cover A color image containing an bit array embedded in its LSB layer
@@ -189,43 +384,104 @@ public class Steganography
     }
 
     /**
-     * Embeds a bit array into a color image's LSB layer using linear embedding
-     * @param cover The image in which to embed {@code message}
+     * Reveals an image which was embedded in the LSB layer of an image in a spiral fashion, writing it into an existing image.
+     * Only the pixels of the spiral holding the image are read, without an intermediate bit array
+     * @param cover A color image containing an bit array embedded in its LSB layer
+     * @param destination A boolean array of the size of the embedded image, as given by {@link #revealSpiralImageSize(int[][])}
+     * @return {@code destination}
+     * @see Steganography#revealSpiralImage(int[][])
+     */
+    public static boolean[][] revealSpiralImage(int[][] cover, boolean[][] destination)
+    {
+        int[] size = revealSpiralImageSize(cover);
+
+        assert size != null && destination.length == size[0] && destination[0].length == size[1] : "Destination does not match image size";
+
+        return revealSpiralImage(cover, destination, destination.length, null);
+    }
+
+    /**
+     * Embeds a bit array into a color image's LSB layer using spiral embedding.
+     * The result is a copy-on-write view of {@code cover}: only the rows containing a modified pixel are duplicated,
+     * the other rows are <b>shared</b> with {@code cover}. Neither {@code cover} nor the result should be modified in place
+     * afterwards; use {@link #embedSpiralBitArray(int[][], boolean[], int[][])} to get an independent copy
+     * @param cover The image in which to embed {@code message}, left untouched
      * @param message The boolean array to embed into {@code cover}
-     * @return A <b>copy</b> of {@code cover} with {@code message}'s values embedded in a spiral fashion in the LSB layer
+     * @return A copy-on-write <b>copy</b> of {@code cover} with {@code message}'s values embedded in a spiral fashion in the LSB layer
+     * @see Steganography#embedSpiralBitArrayInPlace(int[][], boolean[])
      */
     public static int[][] embedSpiralBitArray(int[][] cover, boolean[] message)
     {
         assert Utils.isCoverLargeEnough(cover, message) : "Message is too big for cover";
         assert Utils.isImage(cover) : "Not a valid image";
 
-        int height = cover.length;
-        int width = cover[0].length;
-
         int[][] embedded = cover.clone();
+        embedSpiral(cover, embedded, message, null);
 
-        int index = 0;
+        return embedded;
+    }
 
-        for(int i=0; index < message.length; ++i)
-        {
-            for(int x=i; x<width-i; ++x)
-                if(index < message.length)
-                    embedded[i][x] = embedInLSB(cover[i][x], message[index++]);
-    
-            for(int y=i+1; y<height-i; ++y)
-                if(index < message.length)
-                    embedded[y][width-i - 1] = embedInLSB(cover[y][width-i - 1], message[index++]);
-    
-            for(int x=width-i-2; x>=i; --x)
-                if(index < message.length)
-                    embedded[height-i-1][x] = embedInLSB(cover[height-i-1][x], message[index++]);
-            
-            for(int y=height-i-2; y>=i+1; --y)
-                if(index < message.length)
-                    embedded[y][i] = embedInLSB(cover[y][i], message[index++]);
-        }
+    /**
+     * Embeds a bit array into a color image's LSB layer using spiral embedding, modifying the image
+     * @param cover The image in which to embed {@code message}, <b>modified in place</b>
+     * @param message The boolean array to embed into {@code cover}
+     * @return {@code cover}
+     * @see Steganography#embedSpiralBitArray(int[][], boolean[])
+     */
+    public static int[][] embedSpiralBitArrayInPlace(int[][] cover, boolean[] message)
+    {
+        assert Utils.isCoverLargeEnough(cover, message) : "Message is too big for cover";
 
-        return embedded;
+        embedSpiral(cover, cover, message, null);
+
+        return cover;
+    }
+
+    /**
+     * Embeds a bit array into a color image's LSB layer using spiral embedding, without allocating
+     * @param cover The image in which to embed {@code message}
+     * @param message The boolean array to embed into {@code cover}
+     * @param destination An image of the same size as {@code cover} receiving the result, may be {@code cover} itself to embed in place
+     * @return {@code destination}
+     * @see Steganography#embedSpiralBitArray(int[][], boolean[])
+     */
+    public static int[][] embedSpiralBitArray(int[][] cover, boolean[] message, int[][] destination)
+    {
+        assert Utils.isCoverLargeEnough(cover, message) : "Message is too big for cover";
+        assert isSameSize(cover, destination) : "Destination does not match cover size";
+
+        if(destination != cover)
+            for(int y=0; y<cover.length; ++y)
+                System.arraycopy(cover[y], 0, destination[y], 0, cover[y].length);
+
+        embedSpiral(destination, destination, message, null);
+
+        return destination;
+    }
+
+    /**
+     * Embeds a bit array into a color image's LSB layer using spiral embedding, measuring the distortion on the way
+     * @param cover The image in which to embed {@code message}
+     * @param message The boolean array to embed into {@code cover}
+     * @param destination An image of the same size as {@code cover} receiving the result, may be {@code cover} itself to embed in place
+     * @param metrics The metrics receiving the distortion of {@code destination} relative to {@code cover}
+     * @return {@code destination}
+     * @see Steganography#embedSpiralBitArray(int[][], boolean[], int[][])
+     */
+    public static int[][] embedSpiralBitArray(int[][] cover, boolean[] message, int[][] destination, EmbedMetrics metrics)
+    {
+        assert Utils.isCoverLargeEnough(cover, message) : "Message is too big for cover";
+        assert isSameSize(cover, destination) : "Destination does not match cover size";
+
+        if(destination != cover)
+            for(int y=0; y<cover.length; ++y)
+                System.arraycopy(cover[y], 0, destination[y], 0, cover[y].length);
+
+        // Pixels off the spiral path of the message are unchanged, so only the ones along it are measured
+        embedSpiral(destination, destination, message, metrics);
+        metrics.addPixels((long)cover.length * cover[0].length);
+
+        return destination;
     }
 
     /**
@@ -237,33 +493,995 @@ public class Steganography
     {
         assert Utils.isImage(hidden) : "Not a valid image";
         
+        return revealSpiralBitArray(hidden, new boolean[hidden.length * hidden[0].length]);
+    }
+
+    /**
+     * Reveals a boolean array which was embedded in the LSB layer of an image in a spiral fashion, without allocating
+     * @param hidden A color image containing an bit array embedded in its LSB layer
+     * @param destination A boolean array of at least height*width values, of which only the first height*width are written
+     * @return {@code destination}
+     * @see Steganography#revealSpiralBitArray(int[][])
+     */
+    public static boolean[] revealSpiralBitArray(int[][] hidden, boolean[] destination)
+    {
+        assert Utils.isImage(hidden) : "Not a valid image";
+        
         int height = hidden.length;
         int width = hidden[0].length;
+        int length = height*width;
+
+        assert destination.length >= length : "Destination is too small";
 
-        boolean[] array = new boolean[height*width];
         int index = 0;
 
-        for(int i=0; index < array.length; ++i)
+        for(int i=0; index < length; ++i)
         {
             for(int x=i; x<width-i; ++x)
-                if(index < array.length)
-                    array[index++] = getLSB(hidden[i][x]);
+                if(index < length)
+                    destination[index++] = getLSB(hidden[i][x]);
 
             for(int y=i+1; y<height-i; ++y)
-                if(index < array.length)
-                    array[index++] = getLSB(hidden[y][width-i-1]);
+                if(index < length)
+                    destination[index++] = getLSB(hidden[y][width-i-1]);
 
             for(int x=width-i-2; x>=i; --x)
-                if(index < array.length)
-                    array[index++] = getLSB(hidden[height-i-1][x]);
+                if(index < length)
+                    destination[index++] = getLSB(hidden[height-i-1][x]);
 
             for(int y=height-i-2; y>=i+1; --y)
-                if(index < array.length)
-                    array[index++] = getLSB(hidden[y][i]);
+                if(index < length)
+                    destination[index++] = getLSB(hidden[y][i]);
         }
 
-        return array;
+        return destination;
     }
 
-}
+    /*
+     * ********************************************
+     * Part 4: in-place update of an already
+     * embedded bit array
+     ********************************************
+     */
+
+    /**
+     * Replaces the bit array embedded linearly in {@code hidden} by {@code message}, modifying only the pixels whose LSB differs.
+     * Only the first {@code message.length} pixels are visited, so the cost depends on the payload size, not on the image size
+     * @param hidden An image containing a bit array embedded in a linear fashion, <b>modified in place</b>
+     * @param message The new boolean array to embed
+     * @return The number of modified pixels and the range of rows containing them
+     * @see Steganography#embedBitArray(int[][], boolean[])
+     */
+    public static PixelChanges updateBitArray(int[][] hidden, boolean[] message)
+    {
+        assert Utils.isCoverLargeEnough(hidden, message) : "Message is too big for cover";
+
+        int width = hidden[0].length;
+
+        int count = 0;
+        int firstRow = -1;
+        int lastRow = -1;
+
+        for(int index=0; index<message.length; ++index)
+        {
+            int y = index / width;
+            int x = index % width;
+
+            if(updatePixel(hidden, y, x, message[index]))
+            {
+                ++count;
+                if(firstRow < 0)
+                    firstRow = y;
+                lastRow = y;
+            }
+        }
+
+        return new PixelChanges(count, firstRow, lastRow);
+    }
+
+    /**
+     * Replaces the bit array embedded in a spiral fashion in {@code hidden} by {@code message}, modifying only the pixels whose LSB differs.
+     * Only the first {@code message.length} pixels of the spiral are visited
+     * @param hidden An image containing a bit array embedded in a spiral fashion, <b>modified in place</b>
+     * @param message The new boolean array to embed
+     * @return The number of modified pixels and the range of rows containing them
+     * @see Steganography#embedSpiralBitArray(int[][], boolean[])
+     */
+    public static PixelChanges updateSpiralBitArray(int[][] hidden, boolean[] message)
+    {
+        assert Utils.isCoverLargeEnough(hidden, message) : "Message is too big for cover";
 
+        return embedSpiral(hidden, hidden, message, null);
+    }
+
+    /**
+     * Embeds a bit array in a spiral fashion, only writing the pixels whose LSB differs.
+     * If {@code embedded} is a distinct array of rows shared with {@code source}, each row is duplicated before its first modification
+     * @param source The image whose LSB layer is compared to {@code message}
+     * @param embedded The image receiving the modified pixels, either {@code source} itself or a shallow copy of it
+     * @param message The boolean array to embed
+     * @param metrics The metrics receiving the distortion of the modified pixels, may be {@code null}
+     * @return The number of modified pixels and the range of rows containing them
+     */
+    private static PixelChanges embedSpiral(int[][] source, int[][] embedded, boolean[] message, EmbedMetrics metrics)
+    {
+        int height = source.length;
+        int width = source[0].length;
+
+        // rows[0] = count, rows[1] = first row, rows[2] = last row
+        int[] rows = {0, -1, -1};
+        int index = 0;
+
+        for(int i=0; index < message.length; ++i)
+        {
+            for(int x=i; x<width-i && index < message.length; ++x)
+                embedSpiralPixel(source, embedded, i, x, message[index++], rows, metrics);
+
+            for(int y=i+1; y<height-i && index < message.length; ++y)
+                embedSpiralPixel(source, embedded, y, width-i-1, message[index++], rows, metrics);
+
+            for(int x=width-i-2; x>=i && index < message.length; --x)
+                embedSpiralPixel(source, embedded, height-i-1, x, message[index++], rows, metrics);
+
+            for(int y=height-i-2; y>=i+1 && index < message.length; --y)
+                embedSpiralPixel(source, embedded, y, i, message[index++], rows, metrics);
+        }
+
+        return new PixelChanges(rows[0], rows[1], rows[2]);
+    }
+
+    /**
+     * Embeds a bit in a pixel's LSB if it differs from the current one
+     * @return {@code true} if the pixel was modified, {@code false} otherwise
+     */
+    private static boolean updatePixel(int[][] hidden, int y, int x, boolean bit)
+    {
+        if(getLSB(hidden[y][x]) == bit)
+            return false;
+
+        hidden[y][x] = embedInLSB(hidden[y][x], bit);
+        return true;
+    }
+
+    /**
+     * Same as {@link #updatePixel}, duplicating the row first if it is still shared with the source,
+     * and keeping track of the count and row range of the changes, which are not monotonous along the spiral
+     */
+    private static void embedSpiralPixel(int[][] source, int[][] embedded, int y, int x, boolean bit, int[] rows, EmbedMetrics metrics)
+    {
+        if(getLSB(source[y][x]) == bit)
+            return;
+
+        if(embedded != source && embedded[y] == source[y])
+            embedded[y] = source[y].clone();
+        int before = source[y][x];
+        embedded[y][x] = embedInLSB(before, bit);
+        if(metrics != null)
+            metrics.add(before, embedded[y][x]);
+
+        ++rows[0];
+        rows[1] = rows[1] < 0 ? y : Math.min(rows[1], y);
+        rows[2] = Math.max(rows[2], y);
+    }
+
+    /*
+     * ********************************************
+     * Part 5: framed payloads, preceded
+     * by a header giving their length
+     ********************************************
+     */
+
+    /**
+     * Reveals a range of a boolean array which was embedded in the LSB layer of an image, in a linear fashion.
+     * Only the pixels of the range are visited
+     * @param cover A color image containing an bit array embedded in its LSB layer
+     * @param offset The index of the first pixel to reveal
+     * @param length The number of bits to reveal
+     * @return The bit array extracted from the LSB layer of the {@code length} pixels of {@code cover} starting at {@code offset}
+     */
+    public static boolean[] revealBitArray(int[][] cover, int offset, int length)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert offset >= 0 && length >= 0 && (long)offset + length <= (long)cover.length * cover[0].length : "Range exceeds the cover";
+
+        int width = cover[0].length;
+        boolean[] message = new boolean[length];
+
+        for(int i=0; i<length; ++i)
+            message[i] = getLSB(cover[(offset + i) / width][(offset + i) % width]);
+
+        return message;
+    }
+
+    /**
+     * Embeds a String preceded by a header giving its length into the LSB layer of a color image, in a linear fashion
+     * @param cover The image in which to embed the header and the String
+     * @param message The String to be embedded
+     * @return A <b>copy</b> of {@code cover} with the header and {@code message}'s binary representation embedded in a linear fashion in the LSB layer
+     * @see Steganography#revealFramedText(int[][])
+     * @see PayloadHeader
+     */
+    public static int[][] embedFramedText(int[][] cover, String message)
+    {
+        return embedFramedText(cover, message, Traversal.LINEAR);
+    }
+
+    /**
+     * Embeds a String preceded by a header into the LSB layer of a color image, following a given traversal
+     * @param cover The image in which to embed the header and the String
+     * @param message The String to be embedded
+     * @param traversal The order of the pixels carrying the String, recorded in the header
+     * @return A <b>copy</b> of {@code cover} with the header and {@code message}'s binary representation embedded in the LSB layer
+     * @see Steganography#embedFramedBitArray(int[][], boolean[], Traversal)
+     */
+    public static int[][] embedFramedText(int[][] cover, String message, Traversal traversal)
+    {
+        return embedFramedText(cover, message, traversal, PayloadHeader.UTF16);
+    }
+
+    /**
+     * Embeds a String preceded by a header into the LSB layer of a color image, following a given traversal and
+     * encoding the String with a given codec, recorded in the header
+     * @param cover The image in which to embed the header and the String
+     * @param message The String to be embedded
+     * @param traversal The order of the pixels carrying the String, recorded in the header
+     * @param codec The text encoding, e.g. {@link PayloadHeader#UTF8} which takes 8 bits per ASCII char instead of 16,
+     * or {@link PayloadHeader#HUFFMAN} which compresses natural language further
+     * @return A <b>copy</b> of {@code cover} with the header and {@code message}'s binary representation embedded in the LSB layer
+     * @see Steganography#revealFramedText(int[][])
+     */
+    public static int[][] embedFramedText(int[][] cover, String message, Traversal traversal, int codec)
+    {
+        return embedFramedText(cover, message, traversal, codec, 0);
+    }
+
+    /**
+     * Embeds a String preceded by a header into the LSB layer of a color image, following a given traversal and
+     * encoding the String with a given codec, with optional features
+     * @param cover The image in which to embed the header and the String
+     * @param message The String to be embedded
+     * @param traversal The order of the pixels carrying the String, recorded in the header
+     * @param codec The text encoding, recorded in the header
+     * @param flags The optional features, e.g. {@link PayloadHeader#CRC32C} to append a checksum, or 0
+     * @return A <b>copy</b> of {@code cover} with the header and {@code message}'s binary representation embedded in the LSB layer
+     * @see Steganography#verify(int[][])
+     */
+    public static int[][] embedFramedText(int[][] cover, String message, Traversal traversal, int codec, int flags)
+    {
+        boolean[] text = encodeText(message, codec);
+
+        return embedFramed(cover, new PayloadHeader(traversal.getLayout(), codec, flags, text.length), text);
+    }
+
+    /**
+     * Reveals a String which was embedded with a header in the LSB layer of an image.
+     * Only the pixels of the header and of the String are visited
+     * @param cover A color image containing a framed String embedded in its LSB layer
+     * @return The String extracted from the LSB layer of {@code cover}, or {@code null} if {@code cover} does not contain a valid framed text
+     * @see Steganography#embedFramedText(int[][], String)
+     */
+    public static String revealFramedText(int[][] cover)
+    {
+        PayloadHeader header = revealHeader(cover);
+        if(header == null || (header.getFlags() & PayloadHeader.ENCRYPTED) != 0)
+            return null;
+
+        boolean[] payload = revealFramedBitArray(cover, header);
+
+        return payload == null ? null : decodeText(payload, header.getCodec());
+    }
+
+    /**
+     * Reveals the header embedded in the first pixels of an image
+     * @param cover A color image containing a framed payload embedded in its LSB layer
+     * @return The header, or {@code null} if there is no valid header or if the payload it announces does not fit in {@code cover}
+     */
+    public static PayloadHeader revealHeader(int[][] cover)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+
+        long capacity = (long)cover.length * cover[0].length;
+        if(capacity < PayloadHeader.SIZE)
+            return null;
+
+        PayloadHeader header = PayloadHeader.fromBitArray(revealBitArray(cover, 0, PayloadHeader.SIZE), 0);
+        if(header == null || header.getFramedSize() > capacity)
+            return null;
+
+        return header;
+    }
+
+    /**
+     * Concatenates the binary representation of a header and a payload
+     * @param header The header, whose length should match the payload
+     * @param payload The payload
+     * @return The boolean array containing the header followed by the payload
+     */
+    static boolean[] frame(PayloadHeader header, boolean[] payload)
+    {
+        boolean[] framed = new boolean[PayloadHeader.SIZE + payload.length];
+        header.toBitArray(framed, 0);
+        System.arraycopy(payload, 0, framed, PayloadHeader.SIZE, payload.length);
+
+        return framed;
+    }
+
+    /**
+     * Converts a String to its binary representation in a given codec
+     * @param message The String to be converted
+     * @param codec A text codec of {@link PayloadHeader}
+     * @return The binary representation of {@code message}
+     */
+    static boolean[] encodeText(String message, int codec)
+    {
+        switch(codec)
+        {
+            case PayloadHeader.UTF16:
+                return TextMessage.stringToBitArray(message);
+            case PayloadHeader.UTF8:
+                return TextMessage.stringToUtf8BitArray(message);
+            case PayloadHeader.HUFFMAN:
+                return HuffmanCodec.encode(message);
+            default:
+                throw new IllegalArgumentException("Not a text codec: " + codec);
+        }
+    }
+
+    /**
+     * Converts the binary representation of a String in a given codec back to the String
+     * @param payload The binary representation of a String
+     * @param codec The codec recorded in the header of the payload
+     * @return The String, or {@code null} if the codec is unknown
+     */
+    static String decodeText(boolean[] payload, int codec)
+    {
+        switch(codec)
+        {
+            case PayloadHeader.UTF16:
+                return TextMessage.bitArrayToString(payload);
+            case PayloadHeader.UTF8:
+                return TextMessage.utf8BitArrayToString(payload);
+            case PayloadHeader.HUFFMAN:
+                return HuffmanCodec.decode(payload);
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * ********************************************
+     * Part 6: off-heap images larger
+     * than 2^31 pixels
+     ********************************************
+     */
+
+    /**
+     * Embeds a bit array into the LSB layer of an off-heap image, in a linear fashion.
+     * Images of that size cannot afford a copy, so the cover is modified in place
+     * @param cover The image in which to embed the bit array, <b>modified in place</b>
+     * @param message The bit array to be embedded
+     * @return {@code cover}
+     * @see Steganography#embedBitArray(int[][], boolean[])
+     */
+    public static OffHeapRaster embedBitArray(OffHeapRaster cover, OffHeapBitArray message)
+    {
+        assert cover.getSize() >= message.length() : "Message is too big for cover";
+
+        for(long index=0; index<message.length(); ++index)
+            cover.set(index, embedInLSB(cover.get(index), message.get(index)));
+
+        return cover;
+    }
+
+    /**
+     * Reveals a bit array which was embedded in the LSB layer of an off-heap image, in a linear fashion
+     * @param cover A color image containing an bit array embedded in its LSB layer
+     * @param destination A bit array of at most height*width bits receiving the first LSBs of {@code cover}
+     * @return {@code destination}
+     * @see Steganography#revealBitArray(int[][])
+     */
+    public static OffHeapBitArray revealBitArray(OffHeapRaster cover, OffHeapBitArray destination)
+    {
+        assert cover.getSize() >= destination.length() : "Destination is larger than cover";
+
+        for(long index=0; index<destination.length(); ++index)
+            destination.set(index, getLSB(cover.get(index)));
+
+        return destination;
+    }
+
+    /**
+     * Embeds a bit array into the LSB layer of an off-heap image, in a spiral fashion, modifying the image in place
+     * @param cover The image in which to embed the bit array, <b>modified in place</b>
+     * @param message The bit array to be embedded
+     * @return {@code cover}
+     * @see Steganography#embedSpiralBitArray(int[][], boolean[])
+     */
+    public static OffHeapRaster embedSpiralBitArray(OffHeapRaster cover, OffHeapBitArray message)
+    {
+        assert cover.getSize() >= message.length() : "Message is too big for cover";
+
+        long height = cover.getHeight();
+        long width = cover.getWidth();
+        long length = message.length();
+        long index = 0;
+
+        for(long i=0; index < length; ++i)
+        {
+            for(long x=i; x<width-i && index < length; ++x)
+                cover.set(i, x, embedInLSB(cover.get(i, x), message.get(index++)));
+
+            for(long y=i+1; y<height-i && index < length; ++y)
+                cover.set(y, width-i-1, embedInLSB(cover.get(y, width-i-1), message.get(index++)));
+
+            for(long x=width-i-2; x>=i && index < length; --x)
+                cover.set(height-i-1, x, embedInLSB(cover.get(height-i-1, x), message.get(index++)));
+
+            for(long y=height-i-2; y>=i+1 && index < length; --y)
+                cover.set(y, i, embedInLSB(cover.get(y, i), message.get(index++)));
+        }
+
+        return cover;
+    }
+
+    /**
+     * Reveals a bit array which was embedded in the LSB layer of an off-heap image, in a spiral fashion
+     * @param hidden A color image containing an bit array embedded in its LSB layer
+     * @param destination A bit array of at most height*width bits receiving the first LSBs of the spiral
+     * @return {@code destination}
+     * @see Steganography#revealSpiralBitArray(int[][])
+     */
+    public static OffHeapBitArray revealSpiralBitArray(OffHeapRaster hidden, OffHeapBitArray destination)
+    {
+        assert hidden.getSize() >= destination.length() : "Destination is larger than cover";
+
+        long height = hidden.getHeight();
+        long width = hidden.getWidth();
+        long length = destination.length();
+        long index = 0;
+
+        for(long i=0; index < length; ++i)
+        {
+            for(long x=i; x<width-i && index < length; ++x)
+                destination.set(index++, getLSB(hidden.get(i, x)));
+
+            for(long y=i+1; y<height-i && index < length; ++y)
+                destination.set(index++, getLSB(hidden.get(y, width-i-1)));
+
+            for(long x=width-i-2; x>=i && index < length; --x)
+                destination.set(index++, getLSB(hidden.get(height-i-1, x)));
+
+            for(long y=height-i-2; y>=i+1 && index < length; --y)
+                destination.set(index++, getLSB(hidden.get(y, i)));
+        }
+
+        return destination;
+    }
+
+    /*
+     * ********************************************
+     * Part 7: packed bit arrays, 64 bits
+     * per long
+     ********************************************
+     */
+
+    /**
+     * Reveals the LSB layer of an image in a linear fashion, as a packed bit array
+     * @param cover A color image containing an bit array embedded in its LSB layer
+     * @return The packed bit array of the height*width LSBs of {@code cover}
+     * @see LsbKernels
+     * @see Steganography#revealBitArray(int[][])
+     */
+    public static long[] revealPackedBitArray(int[][] cover)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+
+        int width = cover[0].length;
+        long[] words = new long[(int)(((long)cover.length * width + Long.SIZE - 1) / Long.SIZE)];
+        long bit = 0;
+
+        for(int[] row : cover)
+            for(int x=0; x<width; )
+            {
+                int shift = (int)(bit & (Long.SIZE - 1));
+                int count = Math.min(Long.SIZE - shift, width - x);
+                words[(int)(bit >>> 6)] |= LsbKernels.gather(row, x, count) << shift;
+                x += count;
+                bit += count;
+            }
+
+        return words;
+    }
+
+    /**
+     * Embeds a packed bit array into the LSB layer of a color image, in a linear fashion
+     * @param cover The image in which to embed the bit array
+     * @param message The packed bit array to be embedded
+     * @param length The number of bits of {@code message} to embed
+     * @return A <b>copy</b> of {@code cover} with the bits embedded in a linear fashion in the LSB layer
+     * @see Steganography#embedBitArray(int[][], boolean[])
+     */
+    public static int[][] embedPackedBitArray(int[][] cover, long[] message, int length)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert length <= (long)message.length * Long.SIZE : "Length exceeds the message";
+        assert length <= (long)cover.length * cover[0].length : "Message is too big for cover";
+
+        int width = cover[0].length;
+        int[][] embedded = new int[cover.length][];
+        long bit = 0;
+
+        for(int y=0; y<cover.length; ++y)
+        {
+            embedded[y] = bit + width <= length ? new int[width] : cover[y].clone();
+            for(int x=0; x<width && bit<length; )
+            {
+                int shift = (int)(bit & (Long.SIZE - 1));
+                int count = (int)Math.min(Math.min(Long.SIZE - shift, width - x), length - bit);
+                LsbKernels.scatter(message[(int)(bit >>> 6)] >>> shift, cover[y], embedded[y], x, count);
+                x += count;
+                bit += count;
+            }
+        }
+
+        return embedded;
+    }
+
+    /**
+     * Reveals the LSB layer of an image in a spiral fashion, as a packed bit array
+     * @param hidden A color image containing an bit array embedded in its LSB layer
+     * @return The packed bit array of the height*width LSBs of {@code hidden}, in spiral order
+     * @see Steganography#revealSpiralBitArray(int[][])
+     */
+    public static long[] revealSpiralPackedBitArray(int[][] hidden)
+    {
+        assert Utils.isImage(hidden) : "Not a valid image";
+
+        int height = hidden.length;
+        int width = hidden[0].length;
+        int length = height * width;
+        long[] words = new long[(length + Long.SIZE - 1) / Long.SIZE];
+        int index = 0;
+
+        // Rows of the spiral are gathered word by word, columns pixel by pixel
+        for(int i=0; index < length; ++i)
+        {
+            for(int x=i; x<width-i && index < length; )
+            {
+                int count = Math.min(Math.min(Long.SIZE - (index & (Long.SIZE - 1)), width-i - x), length - index);
+                words[index >>> 6] |= LsbKernels.gather(hidden[i], x, count) << (index & (Long.SIZE - 1));
+                x += count;
+                index += count;
+            }
+
+            for(int y=i+1; y<height-i && index < length; ++y, ++index)
+                words[index >>> 6] |= (long)(hidden[y][width-i-1] & 1) << index;
+
+            for(int x=width-i-2; x>=i && index < length; --x, ++index)
+                words[index >>> 6] |= (long)(hidden[height-i-1][x] & 1) << index;
+
+            for(int y=height-i-2; y>=i+1 && index < length; --y, ++index)
+                words[index >>> 6] |= (long)(hidden[y][i] & 1) << index;
+        }
+
+        return words;
+    }
+
+    /**
+     * Embeds a packed bit array into the LSB layer of a color image, in a spiral fashion
+     * @param cover The image in which to embed the bit array
+     * @param message The packed bit array to be embedded
+     * @param length The number of bits of {@code message} to embed
+     * @return A <b>copy</b> of {@code cover} with the bits embedded in a spiral fashion in the LSB layer
+     * @see Steganography#embedSpiralBitArray(int[][], boolean[])
+     */
+    public static int[][] embedSpiralPackedBitArray(int[][] cover, long[] message, int length)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert length <= (long)message.length * Long.SIZE : "Length exceeds the message";
+        assert length <= (long)cover.length * cover[0].length : "Message is too big for cover";
+
+        int height = cover.length;
+        int width = cover[0].length;
+        int[][] embedded = new int[height][];
+        for(int y=0; y<height; ++y)
+            embedded[y] = cover[y].clone();
+
+        // Embedding in the copy itself halves the memory traffic of the column segments
+        int index = 0;
+
+        for(int i=0; index < length; ++i)
+        {
+            for(int x=i; x<width-i && index < length; )
+            {
+                int count = Math.min(Math.min(Long.SIZE - (index & (Long.SIZE - 1)), width-i - x), length - index);
+                LsbKernels.scatter(message[index >>> 6] >>> index, embedded[i], embedded[i], x, count);
+                x += count;
+                index += count;
+            }
+
+            for(int y=i+1; y<height-i && index < length; ++y, ++index)
+                embedded[y][width-i-1] = (embedded[y][width-i-1] & ~1) | (int)(message[index >>> 6] >>> index) & 1;
+
+            for(int x=width-i-2; x>=i && index < length; --x, ++index)
+                embedded[height-i-1][x] = (embedded[height-i-1][x] & ~1) | (int)(message[index >>> 6] >>> index) & 1;
+
+            for(int y=height-i-2; y>=i+1 && index < length; --y, ++index)
+                embedded[y][i] = (embedded[y][i] & ~1) | (int)(message[index >>> 6] >>> index) & 1;
+        }
+
+        return embedded;
+    }
+
+    /*
+     * ********************************************
+     * Part 8: embed/reveal along any
+     * traversal
+     ********************************************
+     */
+
+    /**
+     * Embeds a boolean array into the LSB layer of a color image, following a given traversal
+     * @param cover The image in which to embed the bit array
+     * @param message The boolean array to be embedded
+     * @param traversal The order of the pixels carrying the bits
+     * @return A <b>copy</b> of {@code cover} with {@code message}'s values embedded in the LSB layer
+     */
+    public static int[][] embedBitArray(int[][] cover, boolean[] message, Traversal traversal)
+    {
+        assert Utils.isCoverLargeEnough(cover, message) : "Message is too big for cover";
+
+        int[][] embedded = copy(cover);
+        embed(embedded, message, 0, traversal);
+
+        return embedded;
+    }
+
+    /**
+     * Reveals a boolean array which was embedded in the LSB layer of an image, following a given traversal
+     * @param cover A color image containing an bit array embedded in its LSB layer
+     * @param length The number of bits to reveal
+     * @param traversal The order of the pixels carrying the bits
+     * @return The bit array extracted from the LSB layer of the first {@code length} pixels of the traversal
+     */
+    public static boolean[] revealBitArray(int[][] cover, int length, Traversal traversal)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert length <= (long)cover.length * cover[0].length : "Length exceeds the cover";
+
+        return reveal(cover, length, 0, traversal);
+    }
+
+    /**
+     * Embeds a boolean array preceded by a header into the LSB layer of a color image.
+     * The header is embedded linearly in the first pixels, the payload follows the traversal, skipping these pixels
+     * @param cover The image in which to embed the header and the bit array
+     * @param payload The boolean array to be embedded
+     * @param traversal The order of the pixels carrying the payload, recorded in the header
+     * @return A <b>copy</b> of {@code cover} with the header and {@code payload} embedded in the LSB layer
+     * @see Steganography#revealFramedBitArray(int[][])
+     */
+    public static int[][] embedFramedBitArray(int[][] cover, boolean[] payload, Traversal traversal)
+    {
+        return embedFramedBitArray(cover, payload, traversal, 0);
+    }
+
+    /**
+     * Embeds a boolean array preceded by a header into the LSB layer of a color image, with optional features
+     * @param cover The image in which to embed the header and the bit array
+     * @param payload The boolean array to be embedded
+     * @param traversal The order of the pixels carrying the payload, recorded in the header
+     * @param flags The optional features, e.g. {@link PayloadHeader#CRC32C} to append a checksum, or 0
+     * @return A <b>copy</b> of {@code cover} with the header and {@code payload} embedded in the LSB layer
+     * @see Steganography#revealFramedBitArray(int[][])
+     */
+    public static int[][] embedFramedBitArray(int[][] cover, boolean[] payload, Traversal traversal, int flags)
+    {
+        return embedFramed(cover, new PayloadHeader(traversal.getLayout(), PayloadHeader.UTF16, flags, payload.length), payload);
+    }
+
+    /**
+     * Reveals a boolean array which was embedded with a header, following the traversal recorded in the header.
+     * Only the pixels of the header and of the payload are visited
+     * @param cover A color image containing a framed payload embedded in its LSB layer
+     * @return The payload without its header, or {@code null} if {@code cover} does not contain a valid framed payload
+     * or if the payload does not match its checksum
+     * @see Steganography#embedFramedBitArray(int[][], boolean[], Traversal)
+     */
+    public static boolean[] revealFramedBitArray(int[][] cover)
+    {
+        PayloadHeader header = revealHeader(cover);
+
+        return header == null ? null : revealFramedBitArray(cover, header);
+    }
+
+    /**
+     * Checks that an image carries a framed payload matching its checksum, streaming the payload bits through the
+     * checksum without storing them
+     * @param cover A color image
+     * @return {@code true} if {@code cover} contains a valid framed payload flagged with {@link PayloadHeader#CRC32C}
+     * whose checksum matches, {@code false} otherwise
+     * @see Steganography#embedFramedBitArray(int[][], boolean[], Traversal, int)
+     */
+    public static boolean verify(int[][] cover)
+    {
+        PayloadHeader header = revealHeader(cover);
+        if(header == null || (header.getFlags() & PayloadHeader.CRC32C) == 0)
+            return false;
+        Traversal traversal = Traversal.forLayout(header.getLayout());
+        if(traversal == null)
+            return false;
+
+        int width = cover[0].length;
+        int length = header.getLength();
+        PayloadHeader.Checksum checksum = new PayloadHeader.Checksum();
+        int[] trailer = {0};
+        long[] index = {0};
+
+        traversal.traverse(cover.length, width, (y, x) ->
+        {
+            if((long)y * width + x < PayloadHeader.SIZE)
+                return true;
+
+            long i = index[0]++;
+            if(i < length)
+                checksum.add(getLSB(cover[y][x]));
+            else
+                trailer[0] |= (getLSB(cover[y][x]) ? 1 : 0) << (i - length);
+
+            return index[0] < length + PayloadHeader.TRAILER_SIZE;
+        });
+
+        return trailer[0] == checksum.getValue();
+    }
+
+    /**
+     * Embeds a header and its payload, the payload following the traversal given by the header's layout.
+     * The checksum of a payload flagged with {@link PayloadHeader#CRC32C} is computed while the payload is embedded
+     */
+    static int[][] embedFramed(int[][] cover, PayloadHeader header, boolean[] payload)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+        assert header.getFramedSize() <= (long)cover.length * cover[0].length : "Message is too big for cover";
+        assert header.getLength() == payload.length : "Header does not match payload";
+
+        int[][] embedded = copy(cover);
+        embedBitArray(embedded, header.toBitArray(), embedded);
+
+        Traversal traversal = Traversal.forLayout(header.getLayout());
+        if((header.getFlags() & PayloadHeader.CRC32C) == 0)
+        {
+            embed(embedded, payload, PayloadHeader.SIZE, traversal);
+            return embedded;
+        }
+
+        int width = embedded[0].length;
+        PayloadHeader.Checksum checksum = new PayloadHeader.Checksum();
+        boolean[] trailer = new boolean[PayloadHeader.TRAILER_SIZE];
+        int[] index = {0};
+
+        traversal.traverse(embedded.length, width, (y, x) ->
+        {
+            if((long)y * width + x < PayloadHeader.SIZE)
+                return true;
+
+            int i = index[0]++;
+            boolean bit;
+            if(i < payload.length)
+                checksum.add(bit = payload[i]);
+            else
+            {
+                if(i == payload.length)
+                    PayloadHeader.putField(trailer, 0, checksum.getValue(), PayloadHeader.TRAILER_SIZE);
+                bit = trailer[i - payload.length];
+            }
+            embedded[y][x] = embedInLSB(embedded[y][x], bit);
+
+            return index[0] < payload.length + PayloadHeader.TRAILER_SIZE;
+        });
+
+        return embedded;
+    }
+
+    /**
+     * Reveals the payload announced by a header, following the traversal given by the header's layout
+     * @return The payload, or {@code null} if the layout is unknown or if the payload does not match its checksum
+     */
+    static boolean[] revealFramedBitArray(int[][] cover, PayloadHeader header)
+    {
+        Traversal traversal = Traversal.forLayout(header.getLayout());
+        if(traversal == null)
+            return null;
+        if((header.getFlags() & PayloadHeader.CRC32C) == 0)
+            return reveal(cover, header.getLength(), PayloadHeader.SIZE, traversal);
+
+        int length = header.getLength();
+        boolean[] bits = reveal(cover, length + PayloadHeader.TRAILER_SIZE, PayloadHeader.SIZE, traversal);
+        if(PayloadHeader.getField(bits, length, PayloadHeader.TRAILER_SIZE) != PayloadHeader.checksum(bits, length))
+            return null;
+
+        return Arrays.copyOf(bits, length);
+    }
+
+    /**
+     * Embeds bits in place along a traversal, skipping the pixels whose linear index is below {@code skip}
+     */
+    static void embed(int[][] image, boolean[] message, int skip, Traversal traversal)
+    {
+        embed(image, message, 0, message.length, skip, traversal);
+    }
+
+    /**
+     * Embeds the bits {@code [from, to)} of a message in place along a traversal, skipping the pixels whose
+     * linear index is below {@code skip}
+     */
+    static void embed(int[][] image, boolean[] message, int from, int to, int skip, Traversal traversal)
+    {
+        int width = image[0].length;
+        int[] index = {from};
+
+        traversal.traverse(image.length, width, (y, x) ->
+        {
+            if(index[0] == to)
+                return false;
+            if((long)y * width + x >= skip)
+                image[y][x] = embedInLSB(image[y][x], message[index[0]++]);
+            return true;
+        });
+    }
+
+    /**
+     * Reveals bits along a traversal, skipping the pixels whose linear index is below {@code skip}
+     */
+    static boolean[] reveal(int[][] image, int length, int skip, Traversal traversal)
+    {
+        return reveal(image, new boolean[length], 0, length, skip, traversal);
+    }
+
+    /**
+     * Reveals bits along a traversal into the values {@code [from, to)} of a destination, skipping the pixels
+     * whose linear index is below {@code skip}
+     * @return {@code destination}
+     */
+    static boolean[] reveal(int[][] image, boolean[] destination, int from, int to, int skip, Traversal traversal)
+    {
+        int width = image[0].length;
+        int[] index = {from};
+
+        traversal.traverse(image.length, width, (y, x) ->
+        {
+            if(index[0] == to)
+                return false;
+            if((long)y * width + x >= skip)
+                destination[index[0]++] = getLSB(image[y][x]);
+            return true;
+        });
+
+        return destination;
+    }
+
+    /**
+     * @return A deep copy of an image
+     */
+    private static int[][] copy(int[][] image)
+    {
+        int[][] copy = new int[image.length][];
+        for(int y=0; y<image.length; ++y)
+            copy[y] = image[y].clone();
+
+        return copy;
+    }
+
+    /*
+     * ********************************************
+     * Part 9: progressive reveal
+     ********************************************
+     */
+
+    /**
+     * Receives the rows of a hidden image as they are revealed
+     */
+    public interface RowListener
+    {
+        /**
+         * Called each time a batch of rows is complete, from the thread revealing the image
+         * @param image The hidden image being revealed, whose rows before {@code lastRow} are complete
+         * @param firstRow The first row of the batch
+         * @param lastRow The row following the batch
+         */
+        void rowsRevealed(boolean[][] image, int firstRow, int lastRow);
+    }
+
+    /**
+     * Reveals the dimensions of an image which was embedded in the LSB layer of an image in a spiral fashion,
+     * reading only the first pixels of the spiral
+     * @param cover A color image containing an image embedded in its LSB layer
+     * @return An array holding the height and the width of the hidden image, or {@code null} if they do not fit in {@code cover}
+     * @see Steganography#revealSpiralImage(int[][], int, RowListener)
+     */
+    public static int[] revealSpiralImageSize(int[][] cover)
+    {
+        assert Utils.isImage(cover) : "Not a valid image";
+
+        long capacity = (long)cover.length * cover[0].length;
+        if(capacity < 2 * Integer.SIZE)
+            return null;
+
+        boolean[] header = reveal(cover, 2 * Integer.SIZE, 0, Traversal.SPIRAL);
+        int height = PayloadHeader.getField(header, 0, Integer.SIZE);
+        int width = PayloadHeader.getField(header, Integer.SIZE, Integer.SIZE);
+        if(height <= 0 || width <= 0 || 2 * Integer.SIZE + (long)height * width > capacity)
+            return null;
+
+        return new int[] {height, width};
+    }
+
+    /**
+     * Reveals an image which was embedded in the LSB layer of an image in a spiral fashion, handing the rows over
+     * to a listener batch after batch, so that they can be shown before the whole image is revealed.
+     * The reveal stops early if the current thread is interrupted
+     * @param cover A color image containing an image embedded in its LSB layer
+     * @param batchRows The number of rows of a batch
+     * @param listener The listener receiving the batches
+     * @return The image extracted from the LSB layer of {@code cover}, or {@code null} if its dimensions do not fit in {@code cover}
+     * @see Steganography#revealSpiralImage(int[][])
+     */
+    public static boolean[][] revealSpiralImage(int[][] cover, int batchRows, RowListener listener)
+    {
+        assert batchRows > 0 : "Not a valid batch size";
+
+        int[] size = revealSpiralImageSize(cover);
+        if(size == null)
+            return null;
+
+        return revealSpiralImage(cover, new boolean[size[0]][size[1]], batchRows, listener);
+    }
+
+    /**
+     * Reads the pixels of a hidden image along the spiral, past its dimensions, straight into {@code image}
+     * @param listener The listener receiving the batches, or {@code null}
+     */
+    private static boolean[][] revealSpiralImage(int[][] cover, boolean[][] image, int batchRows, RowListener listener)
+    {
+        int height = image.length;
+        int width = image[0].length;
+        long end = 2 * Integer.SIZE + (long)height * width;
+        long[] index = {0};
+        int[] first = {0};
+
+        Traversal.SPIRAL.traverse(cover.length, cover[0].length, (y, x) ->
+        {
+            long i = index[0]++ - 2 * Integer.SIZE;
+            if(i < 0)
+                return true;
+
+            int row = (int)(i / width);
+            int column = (int)(i % width);
+            image[row][column] = getLSB(cover[y][x]);
+
+            if(listener != null && column == width - 1 && (row + 1 - first[0] == batchRows || row == height - 1))
+            {
+                listener.rowsRevealed(image, first[0], row + 1);
+                first[0] = row + 1;
+                if(Thread.currentThread().isInterrupted())
+                    return false;
+            }
+
+            return index[0] < end;
+        });
+
+        return image;
+    }
+
+    /**
+     * Checks that a destination image has the same dimensions as a source image
+     */
+    private static boolean isSameSize(int[][] source, int[][] destination)
+    {
+        if(!Utils.isImage(destination) || destination.length != source.length)
+            return false;
+
+        return destination[0].length == source[0].length;
+    }
+
+}
@@ -1,5 +1,7 @@
 package main;
 
+import java.util.function.IntConsumer;
+
 public class TextMessage
 {
     /*
@@ -44,17 +46,33 @@ public class TextMessage
      * @return A boolean array corresponding to the String's binary representation
      */
     public static boolean[] stringToBitArray(String message)
+    {
+        boolean[] bitArray = new boolean[Character.SIZE * message.length()];
+        stringToBitArray(message, bitArray);
+
+        return bitArray;
+    }
+
+    /**
+     * Writes the binary representation of a String into an existing boolean array, without allocating
+     * @param message The String to be converted
+     * @param destination A boolean array of at least 16 times the length of {@code message} values
+     * @return The number of bits written to {@code destination}
+     * @see TextMessage#stringToBitArray(String)
+     */
+    public static int stringToBitArray(String message, boolean[] destination)
     {
         int size = message.length();
-        boolean[] bitArray = new boolean[Character.SIZE * size];
+        assert destination.length >= Character.SIZE * size : "Destination is too small";
 
         for(int i=0; i<size; ++i)
         {
-            boolean[] charBitArray = intToBitArray(message.charAt(i), Character.SIZE);
-            System.arraycopy(charBitArray, 0, bitArray, i * Character.SIZE, Character.SIZE);
+            char c = message.charAt(i);
+            for(int j=0; j<Character.SIZE; ++j)
+                destination[i * Character.SIZE + j] = ((c >> j) & 1) == 1;
         }
 
-        return bitArray;
+        return Character.SIZE * size;
     }
 
     /**
@@ -65,17 +83,271 @@ public class TextMessage
      */
     public static String bitArrayToString(boolean[] bitArray)
     {
-        String message = "";
+        return bitArrayToString(bitArray, bitArray.length);
+    }
 
-        for(int i = 0; i < (bitArray.length / Character.SIZE); ++i)
+    /**
+     * Converts the first {@code length} values of a boolean array to the String of which they are the representation
+     * @param bitArray A boolean array representing a String, possibly larger than the representation (e.g. a pooled buffer)
+     * @param length The number of values of {@code bitArray} to decode
+     * @return The String that the array represented
+     * @see TextMessage#bitArrayToString(boolean[])
+     */
+    public static String bitArrayToString(boolean[] bitArray, int length)
+    {
+        assert length <= bitArray.length : "Length exceeds the array";
+
+        char[] message = new char[length / Character.SIZE];
+
+        for(int i = 0; i < message.length; ++i)
         {
-            boolean[] charBitArray = new boolean[Character.SIZE];
-            System.arraycopy(bitArray, i * Character.SIZE, charBitArray, 0, Character.SIZE);
+            int value = 0;
+            for(int j = Character.SIZE - 1; j >= 0; --j)
+                value = (value << 1) + (bitArray[i * Character.SIZE + j] ? 1 : 0);
 
-            message += (char)bitArrayToInt(charBitArray);
+            message[i] = (char)value;
         }
 
-        return message;
+        return new String(message);
+    }
+
+    /*
+     * ********************************************
+     * Part 2b: UTF-8 text message (text <-> bit array)
+     * ********************************************
+     */
+    /**
+     * Returns the number of bytes of the UTF-8 representation of a String.
+     * Unpaired surrogates count as 3-byte sequences, so that any String can be represented
+     * @param message The String to be measured
+     * @return The number of bytes of {@code message}'s UTF-8 representation
+     */
+    public static int utf8Length(String message)
+    {
+        int size = message.length();
+        int length = 0;
+
+        for(int i=0; i<size; ++i)
+        {
+            char c = message.charAt(i);
+            if(c < 0x80)
+                length += 1;
+            else if(c < 0x800)
+                length += 2;
+            else if(Character.isHighSurrogate(c) && i+1 < size && Character.isLowSurrogate(message.charAt(i+1)))
+            {
+                length += 4;
+                ++i;
+            }
+            else
+                length += 3;
+        }
+
+        return length;
+    }
+
+    /**
+     * Converts a String to its UTF-8 binary representation, i.e. the sequence of the 8-bit binary representations of its UTF-8 bytes.
+     * ASCII chars take 8 bits instead of 16, and supplementary code points are encoded as a whole
+     * @param message The String to be converted
+     * @return A boolean array corresponding to the String's UTF-8 binary representation
+     * @see TextMessage#utf8BitArrayToString(boolean[])
+     */
+    public static boolean[] stringToUtf8BitArray(String message)
+    {
+        boolean[] bitArray = new boolean[Byte.SIZE * utf8Length(message)];
+        stringToUtf8BitArray(message, bitArray);
+
+        return bitArray;
+    }
+
+    /**
+     * Writes the UTF-8 binary representation of a String into an existing boolean array, without allocating
+     * @param message The String to be converted
+     * @param destination A boolean array of at least 8 times the UTF-8 length of {@code message} values
+     * @return The number of bits written to {@code destination}
+     * @see TextMessage#utf8Length(String)
+     */
+    public static int stringToUtf8BitArray(String message, boolean[] destination)
+    {
+        int[] offset = {0};
+        forEachUtf8Byte(message, value -> offset[0] = putByte(destination, offset[0], value));
+
+        return offset[0];
+    }
+
+    /**
+     * Converts a boolean array to the String of which it is the UTF-8 representation
+     * @param bitArray A boolean array representing a String in UTF-8
+     * @return The String that the array represented
+     * @see TextMessage#stringToUtf8BitArray(String)
+     */
+    public static String utf8BitArrayToString(boolean[] bitArray)
+    {
+        return utf8BitArrayToString(bitArray, bitArray.length);
+    }
+
+    /**
+     * Converts the first {@code length} values of a boolean array to the String of which they are the UTF-8 representation.
+     * The bytes are decoded straight into chars, without intermediate String; malformed sequences are replaced by U+FFFD
+     * @param bitArray A boolean array representing a String in UTF-8, possibly larger than the representation
+     * @param length The number of values of {@code bitArray} to decode
+     * @return The String that the array represented
+     */
+    public static String utf8BitArrayToString(boolean[] bitArray, int length)
+    {
+        assert length <= bitArray.length : "Length exceeds the array";
+
+        byte[] bytes = new byte[length / Byte.SIZE];
+        for(int i=0; i<bytes.length; ++i)
+            bytes[i] = (byte)getByte(bitArray, i);
+
+        return utf8ToString(bytes, bytes.length);
+    }
+
+    /**
+     * Converts a String to its UTF-8 bytes, unpaired surrogates included
+     * @see TextMessage#stringToUtf8BitArray(String)
+     */
+    static byte[] stringToUtf8(String message)
+    {
+        byte[] bytes = new byte[utf8Length(message)];
+        int[] offset = {0};
+        forEachUtf8Byte(message, value -> bytes[offset[0]++] = (byte)value);
+
+        return bytes;
+    }
+
+    /**
+     * Walks the UTF-8 bytes of a String without storing them, supplementary code points being encoded as a whole
+     * and unpaired surrogates as 3-byte sequences
+     * @param message The String to be encoded
+     * @param sink The receiver of the bytes, as values between 0 and 255
+     * @see TextMessage#utf8Length(String)
+     */
+    static void forEachUtf8Byte(String message, IntConsumer sink)
+    {
+        int size = message.length();
+
+        for(int i=0; i<size; ++i)
+        {
+            int codePoint = message.charAt(i);
+            if(Character.isHighSurrogate((char)codePoint) && i+1 < size && Character.isLowSurrogate(message.charAt(i+1)))
+                codePoint = Character.toCodePoint((char)codePoint, message.charAt(++i));
+
+            if(codePoint < 0x80)
+                sink.accept(codePoint);
+            else if(codePoint < 0x800)
+            {
+                sink.accept(0xC0 | codePoint >> 6);
+                sink.accept(0x80 | codePoint & 0x3F);
+            }
+            else if(codePoint < 0x10000)
+            {
+                sink.accept(0xE0 | codePoint >> 12);
+                sink.accept(0x80 | codePoint >> 6 & 0x3F);
+                sink.accept(0x80 | codePoint & 0x3F);
+            }
+            else
+            {
+                sink.accept(0xF0 | codePoint >> 18);
+                sink.accept(0x80 | codePoint >> 12 & 0x3F);
+                sink.accept(0x80 | codePoint >> 6 & 0x3F);
+                sink.accept(0x80 | codePoint & 0x3F);
+            }
+        }
+    }
+
+    /**
+     * Decodes the first {@code size} UTF-8 bytes of an array straight into chars, replacing malformed sequences by U+FFFD
+     * @see TextMessage#utf8BitArrayToString(boolean[], int)
+     */
+    static String utf8ToString(byte[] bytes, int size)
+    {
+        // A String has at most one char per UTF-8 byte
+        char[] message = new char[size];
+        int count = 0;
+
+        for(int i=0; i<size; )
+        {
+            int first = bytes[i++] & 0xFF;
+            int following;
+            int codePoint;
+            int minimum;
+
+            if(first < 0x80)
+            {
+                message[count++] = (char)first;
+                continue;
+            }
+            else if((first & 0xE0) == 0xC0)
+            {
+                following = 1;
+                codePoint = first & 0x1F;
+                minimum = 0x80;
+            }
+            else if((first & 0xF0) == 0xE0)
+            {
+                following = 2;
+                codePoint = first & 0x0F;
+                minimum = 0x800;
+            }
+            else if((first & 0xF8) == 0xF0)
+            {
+                following = 3;
+                codePoint = first & 0x07;
+                minimum = 0x10000;
+            }
+            else
+            {
+                message[count++] = '\uFFFD';
+                continue;
+            }
+
+            // A malformed sequence is replaced as a whole, its last byte being decoded again as a new sequence
+            boolean valid = true;
+            for(int j=0; j<following && valid; ++j)
+            {
+                int next = i < size ? bytes[i] & 0xFF : 0;
+                valid = (next & 0xC0) == 0x80;
+                if(valid)
+                {
+                    codePoint = codePoint << 6 | next & 0x3F;
+                    ++i;
+                }
+            }
+
+            if(!valid || codePoint < minimum || codePoint > Character.MAX_CODE_POINT)
+                message[count++] = '\uFFFD';
+            else
+                count += Character.toChars(codePoint, message, count);
+        }
+
+        return new String(message, 0, count);
+    }
+
+    /**
+     * Writes a byte, least significant bit first
+     * @return The index following the byte
+     */
+    private static int putByte(boolean[] bitArray, int offset, int value)
+    {
+        for(int j=0; j<Byte.SIZE; ++j)
+            bitArray[offset + j] = ((value >> j) & 1) == 1;
+
+        return offset + Byte.SIZE;
+    }
+
+    /**
+     * Reads the {@code index}-th byte, stored least significant bit first
+     */
+    private static int getByte(boolean[] bitArray, int index)
+    {
+        int value = 0;
+        for(int j=Byte.SIZE - 1; j>=0; --j)
+            value = (value << 1) + (bitArray[index * Byte.SIZE + j] ? 1 : 0);
+
+        return value;
     }
 
 }
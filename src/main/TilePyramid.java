@@ -0,0 +1,281 @@
+package main;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Geometry of a pyramid of downsampled tiles over an image of any size, independent of any display.
+ * Level <code>L</code> divides the image by <code>2^L</code> and is cut into tiles of {@link #TILE_SIZE}
+ * pixels; the tiles of the last row and column of a level may be smaller. The coarsest level fits in a single tile.
+ * @see TileViewer
+ */
+public final class TilePyramid {
+
+    /** Number of pixels of the side of a tile */
+    public static final int TILE_SIZE = 256;
+
+    // Bits of the row and of the column in a key, the level taking the remaining high bits
+    private static final int COORDINATE_BITS = 29;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    /**
+     * Packed RGB colors of an image, possibly stored off the Java heap.
+     */
+    public interface Source {
+        int get(long y, long x);
+    }
+
+    /**
+     * Tiles by key, evicting the least recently used ones beyond a number of tiles. Not thread-safe.
+     * @param <T> Type of the rendered tiles
+     */
+    public static final class Cache<T> {
+        private final LinkedHashMap<Long, T> tiles = new LinkedHashMap<>(64, 0.75f, true);
+        private int maxTiles = 1;
+
+        /**
+         * @param key Key of a tile
+         * @return The tile, now the most recently used, or <code>null</code> if not cached
+         */
+        public T get(long key) {
+            return tiles.get(key);
+        }
+
+        /**
+         * @param key Key of a tile
+         * @return Whether the tile is cached, without counting as a use
+         */
+        public boolean contains(long key) {
+            return tiles.containsKey(key);
+        }
+
+        /**
+         * Adds a tile, evicting the least recently used ones beyond the bound.
+         * @param key Key of the tile
+         * @param tile Rendered tile
+         */
+        public void put(long key, T tile) {
+            tiles.put(key, tile);
+            trim();
+        }
+
+        /**
+         * Changes the bound, evicting the least recently used tiles beyond it.
+         * @param maxTiles Maximum number of cached tiles, at least 1
+         */
+        public void setMaxTiles(int maxTiles) {
+            assert maxTiles > 0 : "Cache must keep at least one tile";
+            this.maxTiles = maxTiles;
+            trim();
+        }
+
+        /**
+         * @return Number of cached tiles
+         */
+        public int size() {
+            return tiles.size();
+        }
+
+        private void trim() {
+            Iterator<Long> eldest = tiles.keySet().iterator();
+            while (tiles.size() > maxTiles) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private final long height;
+    private final long width;
+    private final int maxLevel;
+
+    /**
+     * Creates the pyramid of an image of specified size.
+     * @param height Number of rows of the image
+     * @param width Number of columns of the image
+     */
+    public TilePyramid(long height, long width) {
+        assert height > 0 && width > 0 : "Not a valid image size";
+        this.height = height;
+        this.width = width;
+
+        int level = 0;
+        while (Math.max(levelSize(height, level), levelSize(width, level)) > TILE_SIZE)
+            ++level;
+        maxLevel = level;
+    }
+
+    /**
+     * @return Number of rows of the image
+     */
+    public long getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Number of columns of the image
+     */
+    public long getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The coarsest level, which fits in a single tile
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * Returns the finest level whose pixels are not smaller than screen pixels.
+     * @param scale Screen pixels per image pixel
+     * @return A level between 0 and {@link #getMaxLevel()}
+     */
+    public int getLevel(double scale) {
+        int level = 0;
+        while (level < maxLevel && scale * (2L << level) <= 1)
+            ++level;
+        return level;
+    }
+
+    /**
+     * @param level A level
+     * @return Number of image pixels covered by the side of a tile of this level
+     */
+    public static long getSpan(int level) {
+        return (long) TILE_SIZE << level;
+    }
+
+    /**
+     * @param level A level
+     * @return Index of the last row of tiles of this level
+     */
+    public long getLastRow(int level) {
+        return (height - 1) / getSpan(level);
+    }
+
+    /**
+     * @param level A level
+     * @return Index of the last column of tiles of this level
+     */
+    public long getLastColumn(int level) {
+        return (width - 1) / getSpan(level);
+    }
+
+    /**
+     * @param level A level
+     * @param row A row of tiles of this level
+     * @return Number of pixels of the tiles of this row, smaller than {@link #TILE_SIZE} on the last row
+     */
+    public int getTileHeight(int level, long row) {
+        return (int) Math.min(TILE_SIZE, levelSize(height, level) - row * TILE_SIZE);
+    }
+
+    /**
+     * @param level A level
+     * @param column A column of tiles of this level
+     * @return Number of pixels of the tiles of this column, smaller than {@link #TILE_SIZE} on the last column
+     */
+    public int getTileWidth(int level, long column) {
+        return (int) Math.min(TILE_SIZE, levelSize(width, level) - column * TILE_SIZE);
+    }
+
+    /**
+     * Returns how many tiles to keep for a view: enough for the view, for the next one after a pan
+     * or a zoom step, and for the coarsest tile of each level.
+     * @param rows Number of rows of tiles in the view
+     * @param columns Number of columns of tiles in the view
+     * @return Maximum number of cached tiles
+     */
+    public int getTileBudget(long rows, long columns) {
+        return (int) Math.min(Integer.MAX_VALUE, 3 * (rows + 1) * (columns + 1) + maxLevel + 1);
+    }
+
+    /**
+     * Renders a tile, averaging 4 samples of the image per tile pixel on downsampled levels.
+     * @param source Pixels of the image
+     * @param key Key of the tile
+     * @return Packed RGB colors of the tile, row after row, or <code>null</code> if the thread was interrupted
+     * @see #key(int, long, long)
+     */
+    public int[] render(Source source, long key) {
+        int level = levelOf(key);
+        long row = rowOf(key);
+        long column = columnOf(key);
+        long factor = 1L << level;
+
+        int tileHeight = getTileHeight(level, row);
+        int tileWidth = getTileWidth(level, column);
+        int[] pixels = new int[tileHeight * tileWidth];
+
+        for (int y = 0; y < tileHeight; ++y) {
+            long top = (row * TILE_SIZE + y) * factor;
+            for (int x = 0; x < tileWidth; ++x) {
+                long left = (column * TILE_SIZE + x) * factor;
+                if (level == 0) {
+                    pixels[y * tileWidth + x] = source.get(top, left);
+                    continue;
+                }
+
+                // Samples at the centers of the quarters of the block
+                long y0 = Math.min(top + factor / 4, height - 1);
+                long y1 = Math.min(top + 3 * factor / 4, height - 1);
+                long x0 = Math.min(left + factor / 4, width - 1);
+                long x1 = Math.min(left + 3 * factor / 4, width - 1);
+                pixels[y * tileWidth + x] = average(source.get(y0, x0), source.get(y0, x1), source.get(y1, x0), source.get(y1, x1));
+            }
+            if (Thread.currentThread().isInterrupted())
+                return null;
+        }
+        return pixels;
+    }
+
+    /**
+     * Packs the position of a tile into a key.
+     * @param level Level of the tile, at most 31
+     * @param row Row of the tile, less than 2^29
+     * @param column Column of the tile, less than 2^29
+     * @return The key of the tile
+     */
+    public static long key(int level, long row, long column) {
+        assert level >= 0 && level < Integer.SIZE : "Not a valid level";
+        assert row >= 0 && row <= COORDINATE_MASK && column >= 0 && column <= COORDINATE_MASK : "Not a valid tile";
+        return (long) level << (2 * COORDINATE_BITS) | row << COORDINATE_BITS | column;
+    }
+
+    /**
+     * @param key Key of a tile
+     * @return Level of the tile
+     */
+    public static int levelOf(long key) {
+        return (int) (key >>> (2 * COORDINATE_BITS));
+    }
+
+    /**
+     * @param key Key of a tile
+     * @return Row of the tile
+     */
+    public static long rowOf(long key) {
+        return (key >>> COORDINATE_BITS) & COORDINATE_MASK;
+    }
+
+    /**
+     * @param key Key of a tile
+     * @return Column of the tile
+     */
+    public static long columnOf(long key) {
+        return key & COORDINATE_MASK;
+    }
+
+    private static long levelSize(long size, int level) {
+        return (size + (1L << level) - 1) >> level;
+    }
+
+    // Rounded mean of each channel
+    private static int average(int a, int b, int c, int d) {
+        int red = ((a >> 16 & 0xff) + (b >> 16 & 0xff) + (c >> 16 & 0xff) + (d >> 16 & 0xff) + 2) >> 2;
+        int green = ((a >> 8 & 0xff) + (b >> 8 & 0xff) + (c >> 8 & 0xff) + (d >> 8 & 0xff) + 2) >> 2;
+        int blue = ((a & 0xff) + (b & 0xff) + (c & 0xff) + (d & 0xff) + 2) >> 2;
+        return red << 16 | green << 8 | blue;
+    }
+}
@@ -0,0 +1,226 @@
+package main;
+
+import javax.swing.*;
+
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Panel showing an image of any size through a {@link TilePyramid} of downsampled tiles.
+ * Tiles are rendered lazily on a background thread when they become visible and kept in an LRU cache
+ * sized after the viewport. Until a tile is ready, the closest coarser cached tile is stretched in its place.
+ * Dragging pans the image and the mouse wheel zooms around the cursor.
+ * @see Helper#showTiled(int[][], String)
+ */
+@SuppressWarnings("serial")
+final class TileViewer extends JPanel {
+
+    // Maximal magnification, in screen pixels per image pixel
+    private static final double MAX_SCALE = 32;
+
+    private static final Color BACKGROUND = Color.DARK_GRAY;
+
+    private final TilePyramid.Source source;
+    private final TilePyramid pyramid;
+    private final long height;
+    private final long width;
+    private final int maxLevel;
+
+    // Tiles by key, only accessed from the event dispatch thread
+    private final TilePyramid.Cache<BufferedImage> tiles = new TilePyramid.Cache<>();
+    private final Set<Long> pending = new HashSet<>();
+
+    // Tiles of the last painted view; requests for other tiles are dropped before being rendered
+    private volatile Set<Long> visible = Collections.emptySet();
+
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Tile renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Image coordinates of the top left corner of the panel, and screen pixels per image pixel (0 until fitted)
+    private double originX;
+    private double originY;
+    private double scale;
+
+    /**
+     * Creates a viewer of specified image.
+     * @param source Pixels of the image
+     * @param height Number of rows of the image
+     * @param width Number of columns of the image
+     */
+    TileViewer(TilePyramid.Source source, long height, long width) {
+        this.source = source;
+        this.pyramid = new TilePyramid(height, width);
+        this.height = height;
+        this.width = width;
+        this.maxLevel = pyramid.getMaxLevel();
+
+        setBackground(BACKGROUND);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point last;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                last = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (last == null || scale == 0)
+                    return;
+                originX -= (e.getX() - last.x) / scale;
+                originY -= (e.getY() - last.y) / scale;
+                last = e.getPoint();
+                repaint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (scale == 0)
+                    return;
+                double zoomed = Math.max(Math.min(scale * Math.pow(1.25, -e.getPreciseWheelRotation()), MAX_SCALE), fitScale() / 4);
+
+                // The image pixel under the cursor stays in place
+                originX += e.getX() / scale - e.getX() / zoomed;
+                originY += e.getY() / scale - e.getY() / zoomed;
+                scale = zoomed;
+                repaint();
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (getWidth() <= 0 || getHeight() <= 0)
+            return;
+
+        // Fit and center the whole image the first time
+        if (scale == 0) {
+            scale = fitScale();
+            originX = (width - getWidth() / scale) / 2;
+            originY = (height - getHeight() / scale) / 2;
+        }
+
+        int level = pyramid.getLevel(scale);
+        long span = TilePyramid.getSpan(level);
+        long firstColumn = Math.max(0, (long) Math.floor(originX / span));
+        long firstRow = Math.max(0, (long) Math.floor(originY / span));
+        long lastColumn = Math.min(pyramid.getLastColumn(level), (long) Math.floor((originX + getWidth() / scale) / span));
+        long lastRow = Math.min(pyramid.getLastRow(level), (long) Math.floor((originY + getHeight() / scale) / span));
+
+        Set<Long> wanted = new HashSet<>();
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, scale >= 1
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        for (long row = firstRow; row <= lastRow; ++row) {
+            for (long column = firstColumn; column <= lastColumn; ++column) {
+                long key = TilePyramid.key(level, row, column);
+                wanted.add(key);
+                if (!drawTile(g2, level, row, column, level, row, column))
+                    drawFallback(g2, level, row, column);
+            }
+        }
+
+        // The coarsest tile is always at hand to stand in for the others
+        wanted.add(TilePyramid.key(maxLevel, 0, 0));
+        visible = Collections.unmodifiableSet(wanted);
+        for (Long key : wanted)
+            if (!tiles.contains(key))
+                request(key);
+        tiles.setMaxTiles(pyramid.getTileBudget(lastRow - firstRow + 1, lastColumn - firstColumn + 1));
+    }
+
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        renderer.shutdownNow();
+    }
+
+    // Draw the part of a cached tile covering another tile, possibly of a finer level, return false if not cached
+    private boolean drawTile(Graphics2D g, int level, long row, long column, int tileLevel, long tileRow, long tileColumn) {
+        BufferedImage tile = tiles.get(TilePyramid.key(tileLevel, tileRow, tileColumn));
+        if (tile == null)
+            return false;
+
+        // Area covered, in image pixels, and the same area in the pixels of the cached tile
+        long span = TilePyramid.getSpan(level);
+        long x0 = column * span;
+        long y0 = row * span;
+        long x1 = Math.min(x0 + span, width);
+        long y1 = Math.min(y0 + span, height);
+        long tileX = tileColumn * TilePyramid.getSpan(tileLevel);
+        long tileY = tileRow * TilePyramid.getSpan(tileLevel);
+        double factor = 1 << tileLevel;
+
+        g.drawImage(tile, screenX(x0), screenY(y0), screenX(x1), screenY(y1),
+                (int) Math.floor((x0 - tileX) / factor), (int) Math.floor((y0 - tileY) / factor),
+                (int) Math.ceil((x1 - tileX) / factor), (int) Math.ceil((y1 - tileY) / factor), null);
+        return true;
+    }
+
+    // Stretch the closest coarser cached tile over a tile which is not rendered yet
+    private void drawFallback(Graphics2D g, int level, long row, long column) {
+        for (int coarser = level + 1; coarser <= maxLevel; ++coarser) {
+            int shift = coarser - level;
+            if (drawTile(g, level, row, column, coarser, row >> shift, column >> shift))
+                return;
+        }
+    }
+
+    // Render a tile in the background, unless it is already on its way
+    private void request(long key) {
+        if (!pending.add(key))
+            return;
+        renderer.execute(() -> {
+            BufferedImage tile = visible.contains(key) ? render(key) : null;
+            SwingUtilities.invokeLater(() -> {
+                pending.remove(key);
+                if (tile != null) {
+                    tiles.put(key, tile);
+                    repaint();
+                }
+            });
+        });
+    }
+
+    // Render a tile into an image
+    private BufferedImage render(long key) {
+        int[] pixels = pyramid.render(source, key);
+        if (pixels == null)
+            return null;
+
+        int tileHeight = pyramid.getTileHeight(TilePyramid.levelOf(key), TilePyramid.rowOf(key));
+        int tileWidth = pyramid.getTileWidth(TilePyramid.levelOf(key), TilePyramid.columnOf(key));
+        BufferedImage tile = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+        tile.setRGB(0, 0, tileWidth, tileHeight, pixels, 0, tileWidth);
+        return tile;
+    }
+
+    private double fitScale() {
+        return Math.min(Math.min((double) getWidth() / width, (double) getHeight() / height), 1);
+    }
+
+    private int screenX(long x) {
+        return (int) Math.floor((x - originX) * scale);
+    }
+
+    private int screenY(long y) {
+        return (int) Math.floor((y - originY) * scale);
+    }
+}
@@ -0,0 +1,214 @@
+package main;
+
+/**
+ * Order in which the pixels of a cover carry the bits of a payload.
+ * <p>
+ * The embed and reveal methods taking a traversal are written once against this interface; each traversal is
+ * identified by the layout recorded in the {@link PayloadHeader} of framed payloads, so that revealing picks it
+ * automatically.
+ * @see Steganography#embedFramedBitArray(int[][], boolean[], Traversal)
+ */
+public interface Traversal
+{
+    /**
+     * Receives the pixels of a traversal, in order
+     */
+    interface PixelVisitor
+    {
+        /**
+         * @param y The row of the pixel
+         * @param x The column of the pixel
+         * @return {@code true} to continue the traversal, {@code false} to stop it
+         */
+        boolean visit(int y, int x);
+    }
+
+    /** Row after row, as {@link Steganography#embedBitArray(int[][], boolean[])} */
+    Traversal LINEAR = new Linear();
+
+    /** Clockwise spiral from the outer border, as {@link Steganography#embedSpiralBitArray(int[][], boolean[])} */
+    Traversal SPIRAL = new Spiral();
+
+    /** Blocks of 64x64 pixels in row-major order, each one followed along a Hilbert curve */
+    Traversal HILBERT = new Hilbert(64);
+
+    /**
+     * @return The layout identifying this traversal in a {@link PayloadHeader}
+     */
+    int getLayout();
+
+    /**
+     * Visits the pixels of an image in the order of this traversal, until the visitor stops it
+     * @param height The height of the image
+     * @param width The width of the image
+     * @param visitor The visitor receiving the pixels
+     */
+    void traverse(int height, int width, PixelVisitor visitor);
+
+    /**
+     * Returns the traversal recorded in a header
+     * @param layout The layout of a {@link PayloadHeader}
+     * @return The traversal, or {@code null} if the layout is unknown
+     */
+    static Traversal forLayout(int layout)
+    {
+        switch(layout)
+        {
+            case PayloadHeader.LINEAR:
+                return LINEAR;
+            case PayloadHeader.SPIRAL:
+                return SPIRAL;
+            case PayloadHeader.HILBERT:
+                return HILBERT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Row-major traversal
+     */
+    final class Linear implements Traversal
+    {
+        private Linear()
+        {
+        }
+
+        @Override
+        public int getLayout()
+        {
+            return PayloadHeader.LINEAR;
+        }
+
+        @Override
+        public void traverse(int height, int width, PixelVisitor visitor)
+        {
+            for(int y=0; y<height; ++y)
+                for(int x=0; x<width; ++x)
+                    if(!visitor.visit(y, x))
+                        return;
+        }
+    }
+
+    /**
+     * Spiral traversal, bit-compatible with {@link Steganography#embedSpiralBitArray(int[][], boolean[])}.
+     * When the smaller side of the image is odd, the innermost ring is a single row or column which the rings
+     * loop would walk back along; the traversal stops after height*width visits, once every pixel was visited
+     */
+    final class Spiral implements Traversal
+    {
+        private Spiral()
+        {
+        }
+
+        @Override
+        public int getLayout()
+        {
+            return PayloadHeader.SPIRAL;
+        }
+
+        @Override
+        public void traverse(int height, int width, PixelVisitor visitor)
+        {
+            long remaining = (long)height * width;
+
+            for(int i=0; remaining > 0 && 2*i <= Math.min(height, width); ++i)
+            {
+                for(int x=i; x<width-i; ++x, --remaining)
+                    if(remaining == 0 || !visitor.visit(i, x))
+                        return;
+
+                for(int y=i+1; y<height-i; ++y, --remaining)
+                    if(remaining == 0 || !visitor.visit(y, width-i-1))
+                        return;
+
+                for(int x=width-i-2; x>=i; --x, --remaining)
+                    if(remaining == 0 || !visitor.visit(height-i-1, x))
+                        return;
+
+                for(int y=height-i-2; y>=i+1; --y, --remaining)
+                    if(remaining == 0 || !visitor.visit(y, i))
+                        return;
+            }
+        }
+    }
+
+    /**
+     * Blocked Hilbert curve traversal: the image is cut into square blocks visited in row-major order, and the pixels
+     * of each block are visited along a Hilbert curve. Consecutive pixels stay close in both directions, so the rows
+     * touched at any time fit in the cache
+     */
+    final class Hilbert implements Traversal
+    {
+        private final int blockSize;
+        private final int[] curveX;
+        private final int[] curveY;
+
+        /**
+         * @param blockSize The side of the blocks, a power of two
+         */
+        private Hilbert(int blockSize)
+        {
+            assert Integer.bitCount(blockSize) == 1 : "Block size must be a power of two";
+
+            this.blockSize = blockSize;
+            curveX = new int[blockSize * blockSize];
+            curveY = new int[blockSize * blockSize];
+
+            // Precompute the curve of a block, converting each distance along the curve to coordinates
+            for(int d=0; d<curveX.length; ++d)
+            {
+                int x = 0;
+                int y = 0;
+                int t = d;
+                for(int s=1; s<blockSize; s*=2)
+                {
+                    int rx = 1 & (t / 2);
+                    int ry = 1 & (t ^ rx);
+                    if(ry == 0)
+                    {
+                        if(rx == 1)
+                        {
+                            x = s-1 - x;
+                            y = s-1 - y;
+                        }
+                        int swap = x;
+                        x = y;
+                        y = swap;
+                    }
+                    x += s * rx;
+                    y += s * ry;
+                    t /= 4;
+                }
+                curveX[d] = x;
+                curveY[d] = y;
+            }
+        }
+
+        @Override
+        public int getLayout()
+        {
+            return PayloadHeader.HILBERT;
+        }
+
+        @Override
+        public void traverse(int height, int width, PixelVisitor visitor)
+        {
+            for(int blockY=0; blockY<height; blockY+=blockSize)
+                for(int blockX=0; blockX<width; blockX+=blockSize)
+                {
+                    boolean full = blockY + blockSize <= height && blockX + blockSize <= width;
+
+                    for(int d=0; d<curveX.length; ++d)
+                    {
+                        int y = blockY + curveY[d];
+                        int x = blockX + curveX[d];
+                        if(!full && (y >= height || x >= width))
+                            continue;
+                        if(!visitor.visit(y, x))
+                            return;
+                    }
+                }
+        }
+    }
+}
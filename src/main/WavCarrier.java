@@ -0,0 +1,308 @@
+package main;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hides framed payloads in the LSBs of the samples of 16-bit PCM WAV files, with the same semantics as the LSB layer
+ * of images: sample {@code i}, counted across channels, carries bit {@code i} of the header followed by the payload.
+ * <p>
+ * Files are streamed through a {@link FileChannel} in fixed-size blocks, so memory use does not depend on the length
+ * of the audio. The chunks around the samples are copied as is, and revealing stops as soon as the length given by
+ * the {@link PayloadHeader} is reached.
+ */
+public final class WavCarrier
+{
+    // Size of the blocks of samples, in bytes, a multiple of the sample size
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private static final int PCM = 1;
+    private static final int EXTENSIBLE = 0xFFFE;
+
+    /**
+     * Location of the samples in a WAV file
+     */
+    private static final class Samples
+    {
+        final long offset;
+        final long size;
+
+        Samples(long offset, long size)
+        {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        long getCount()
+        {
+            return size / BYTES_PER_SAMPLE;
+        }
+    }
+
+    /**
+     * Returns the number of payload bits a WAV file can hold
+     * @param path The path of a 16-bit PCM WAV file
+     * @return The capacity of the file, in payload bits, which is 0 if the file cannot even hold the header
+     * @throws IOException if the file cannot be read or is not a 16-bit PCM WAV file
+     */
+    public static long getCapacity(String path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            return Math.max(0, findSamples(channel).getCount() - PayloadHeader.SIZE);
+        }
+    }
+
+    /**
+     * Embeds a boolean array preceded by a header into the LSBs of the samples of a WAV file
+     * @param input The path of a 16-bit PCM WAV file
+     * @param output The path of the WAV file to write, which must differ from {@code input}
+     * @param payload The boolean array to be embedded
+     * @throws IOException if a file cannot be read or written, if {@code output} is {@code input}, or if {@code input}
+     * is not a 16-bit PCM WAV file
+     * @see WavCarrier#revealBitArray(String)
+     */
+    public static void embedBitArray(String input, String output, boolean[] payload) throws IOException
+    {
+        Path source = Paths.get(input);
+        Path target = Paths.get(output);
+
+        // Opening the output truncates it, which would wipe the samples before they are read
+        if(Files.exists(target) && Files.isSameFile(source, target))
+            throw new IOException("Cannot embed into the input file " + input);
+
+        try(FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            Samples samples = findSamples(in);
+            if(PayloadHeader.SIZE + (long)payload.length > samples.getCount())
+                throw new IOException("Message is too big for " + input);
+
+            boolean[] header = new PayloadHeader(PayloadHeader.LINEAR, PayloadHeader.UTF16, 0, payload.length).toBitArray();
+            long total = PayloadHeader.SIZE + (long)payload.length;
+
+            // The chunks before the samples are copied as is
+            transfer(in, 0, samples.offset, out);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            long position = samples.offset;
+            long embedded = 0;
+
+            while(embedded < total)
+            {
+                buffer.clear().limit((int)Math.min(BLOCK_SIZE, samples.offset + samples.size - position));
+                readFully(in, buffer, position);
+
+                // The LSB of a little-endian sample is the LSB of its first byte
+                int length = buffer.limit();
+                for(int i=0; i<length && embedded < total; i+=BYTES_PER_SAMPLE, ++embedded)
+                {
+                    boolean bit = embedded < PayloadHeader.SIZE ? header[(int)embedded] : payload[(int)(embedded - PayloadHeader.SIZE)];
+                    buffer.put(i, (byte)Steganography.embedInLSB(buffer.get(i), bit));
+                }
+
+                buffer.flip();
+                while(buffer.hasRemaining())
+                    out.write(buffer);
+                position += length;
+            }
+
+            // The remaining samples and the chunks after them are copied as is
+            transfer(in, position, in.size() - position, out);
+        }
+    }
+
+    /**
+     * Reveals the header embedded in the first samples of a WAV file
+     * @param path The path of a 16-bit PCM WAV file
+     * @return The header, or {@code null} if there is no valid header or if the payload it announces does not fit in the file
+     * @throws IOException if the file cannot be read or is not a 16-bit PCM WAV file
+     */
+    public static PayloadHeader revealHeader(String path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            return revealHeader(channel, findSamples(channel));
+        }
+    }
+
+    /**
+     * Reveals a boolean array which was embedded with a header in a WAV file, reading only the samples carrying it
+     * @param path The path of a 16-bit PCM WAV file
+     * @return The payload without its header, or {@code null} if the file does not contain a valid framed payload
+     * @throws IOException if the file cannot be read or is not a 16-bit PCM WAV file
+     * @see WavCarrier#embedBitArray(String, String, boolean[])
+     */
+    public static boolean[] revealBitArray(String path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            Samples samples = findSamples(channel);
+            PayloadHeader header = revealHeader(channel, samples);
+            if(header == null || header.getLayout() != PayloadHeader.LINEAR)
+                return null;
+
+            boolean[] payload = new boolean[header.getLength()];
+            readBits(channel, samples.offset + (long)PayloadHeader.SIZE * BYTES_PER_SAMPLE, payload);
+
+            return payload;
+        }
+    }
+
+    /**
+     * Embeds a String preceded by a header into the LSBs of the samples of a WAV file
+     * @param input The path of a 16-bit PCM WAV file
+     * @param output The path of the WAV file to write, which must differ from {@code input}
+     * @param message The String to be embedded
+     * @throws IOException if a file cannot be read or written, if {@code output} is {@code input}, or if {@code input}
+     * is not a 16-bit PCM WAV file
+     * @see WavCarrier#revealText(String)
+     */
+    public static void embedText(String input, String output, String message) throws IOException
+    {
+        embedBitArray(input, output, TextMessage.stringToBitArray(message));
+    }
+
+    /**
+     * Reveals a String which was embedded with a header in a WAV file
+     * @param path The path of a 16-bit PCM WAV file
+     * @return The String, or {@code null} if the file does not contain a valid framed text
+     * @throws IOException if the file cannot be read or is not a 16-bit PCM WAV file
+     * @see WavCarrier#embedText(String, String, String)
+     */
+    public static String revealText(String path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            Samples samples = findSamples(channel);
+            PayloadHeader header = revealHeader(channel, samples);
+            if(header == null || header.getLayout() != PayloadHeader.LINEAR || header.getCodec() != PayloadHeader.UTF16)
+                return null;
+
+            boolean[] payload = new boolean[header.getLength()];
+            readBits(channel, samples.offset + (long)PayloadHeader.SIZE * BYTES_PER_SAMPLE, payload);
+
+            return TextMessage.bitArrayToString(payload);
+        }
+    }
+
+    private static PayloadHeader revealHeader(FileChannel channel, Samples samples) throws IOException
+    {
+        if(samples.getCount() < PayloadHeader.SIZE)
+            return null;
+
+        boolean[] bits = new boolean[PayloadHeader.SIZE];
+        readBits(channel, samples.offset, bits);
+
+        PayloadHeader header = PayloadHeader.fromBitArray(bits, 0);
+        if(header == null || header.getFramedSize() > samples.getCount())
+            return null;
+
+        return header;
+    }
+
+    /**
+     * Reads the LSBs of consecutive samples, block after block
+     */
+    private static void readBits(FileChannel channel, long position, boolean[] destination) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int)Math.min(BLOCK_SIZE, (long)destination.length * BYTES_PER_SAMPLE));
+
+        for(int index=0; index<destination.length; )
+        {
+            buffer.clear().limit((int)Math.min(buffer.capacity(), (long)(destination.length - index) * BYTES_PER_SAMPLE));
+            readFully(channel, buffer, position);
+            position += buffer.limit();
+
+            for(int i=0; i<buffer.limit(); i+=BYTES_PER_SAMPLE)
+                destination[index++] = Steganography.getLSB(buffer.get(i));
+        }
+    }
+
+    /**
+     * Walks the chunks of a RIFF WAVE file, checking the format and locating the samples
+     */
+    private static Samples findSamples(FileChannel channel) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        long size = channel.size();
+
+        buffer.limit(12);
+        readFully(channel, buffer, 0);
+        if(buffer.getInt(0) != fourCC("RIFF") || buffer.getInt(8) != fourCC("WAVE"))
+            throw new IOException("Not a WAV file");
+
+        boolean pcm16 = false;
+        long position = 12;
+
+        while(position + 8 <= size)
+        {
+            buffer.clear().limit(8);
+            readFully(channel, buffer, position);
+            int id = buffer.getInt(0);
+            long length = buffer.getInt(4) & 0xFFFFFFFFL;
+            position += 8;
+
+            if(id == fourCC("fmt "))
+            {
+                if(length < 16)
+                    throw new IOException("Malformed fmt chunk in WAV file");
+                buffer.clear().limit(16);
+                readFully(channel, buffer, position);
+                int format = buffer.getShort(0) & 0xFFFF;
+                pcm16 = (format == PCM || format == EXTENSIBLE) && buffer.getShort(14) == 8 * BYTES_PER_SAMPLE;
+            }
+            else if(id == fourCC("data"))
+            {
+                if(!pcm16)
+                    throw new IOException("Not a 16-bit PCM WAV file");
+
+                // Streamed files may announce more samples than they contain
+                long available = Math.min(length, size - position);
+                return new Samples(position, available - available % BYTES_PER_SAMPLE);
+            }
+
+            // Chunks are padded to an even size
+            position += length + (length & 1);
+        }
+
+        throw new IOException("No samples in WAV file");
+    }
+
+    private static int fourCC(String id)
+    {
+        return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position);
+            if(read < 0)
+                throw new EOFException("Truncated WAV file");
+            position += read;
+        }
+    }
+
+    private static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException
+    {
+        while(count > 0)
+        {
+            long transferred = in.transferTo(position, count, out);
+            if(transferred <= 0)
+                throw new EOFException("Truncated WAV file");
+            position += transferred;
+            count -= transferred;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import main.*;
+import main.CapacityPlanner.Mode;
+import main.CapacityPlanner.Payload;
+import main.CapacityPlanner.Plan;
+
+public class CapacityPlannerTests {
+
+    private static final String TEXT = String.join(" ", Collections.nCopies(8, "the planner knows the sizes, so the embedder never has to guess them"));
+
+    @Test
+    public void framedTextTest() {
+        Payload payload = Payload.ofText(TEXT).withFlags(PayloadHeader.CRC32C);
+        assertEquals(HuffmanCodec.encode(TEXT).length, payload.getSize(PayloadHeader.HUFFMAN));
+
+        Plan plan = CapacityPlanner.plan(1, 1, payload);
+        assertEquals(PayloadHeader.HUFFMAN, plan.getCodec());
+        assertNull(plan.getBestMode());
+        long required = plan.getRequiredPixels(Mode.SPIRAL);
+        assertEquals(PayloadHeader.SIZE + payload.getSize(PayloadHeader.HUFFMAN) + PayloadHeader.TRAILER_SIZE, required);
+
+        // exactly the required pixels, then one less
+        plan = CapacityPlanner.plan(1, (int) required, payload);
+        assertTrue(plan.isViable(Mode.SPIRAL));
+        assertEquals(plan.getPayloadSize(), plan.getCapacity(Mode.SPIRAL));
+        assertFalse(plan.isViable(Mode.MATRIX));
+        assertEquals(Mode.LINEAR, plan.getBestMode());
+        int[][] hidden = Steganography.embedFramedText(new int[1][(int) required], TEXT, Mode.SPIRAL.getTraversal(), plan.getCodec(), PayloadHeader.CRC32C);
+        assertEquals(TEXT, Steganography.revealFramedText(hidden));
+        assertFalse(CapacityPlanner.plan(1, (int) required - 1, payload).isViable(Mode.SPIRAL));
+
+        long side = plan.getRequiredSide(Mode.LINEAR);
+        assertTrue(side * side >= required && (side - 1) * (side - 1) < required);
+    }
+
+    @Test
+    public void matrixTest() {
+        Payload payload = Payload.ofBits(1000);
+        Plan plan = CapacityPlanner.plan(40, 40, payload);
+        assertEquals(Mode.MATRIX, plan.getBestMode());
+        assertEquals(Mode.LINEAR, plan.getBestMode(Mode.LINEAR, Mode.SPIRAL, Mode.HILBERT));
+        assertTrue(plan.getExpectedChanges(Mode.MATRIX) < plan.getExpectedChanges(Mode.LINEAR));
+
+        // the largest group which fits
+        int k = plan.getMatrixBits();
+        assertTrue(MatrixEmbedding.getCapacity(40, 40, k) >= 1000);
+        assertTrue(k == MatrixEmbedding.MAX_BITS || MatrixEmbedding.getCapacity(40, 40, k + 1) < 1000);
+        assertEquals(MatrixEmbedding.getCapacity(40, 40, CapacityPlanner.MIN_MATRIX_BITS), plan.getCapacity(Mode.MATRIX));
+        assertEquals(1500, plan.getRequiredPixels(Mode.MATRIX));
+        assertFalse(CapacityPlanner.plan(30, 30, payload).isViable(Mode.MATRIX));
+    }
+
+    @Test
+    public void encryptedTest() {
+        Payload payload = Payload.ofBits(70_000).withFlags(PayloadHeader.ENCRYPTED);
+        long required = CapacityPlanner.plan(1, 1, payload).getRequiredPixels(Mode.LINEAR);
+        assertEquals(PayloadHeader.SIZE + PayloadCipher.getEncryptedSize(70_000), required);
+
+        Plan plan = CapacityPlanner.plan(1, (int) required, payload);
+        assertTrue(plan.isViable(Mode.LINEAR));
+        assertTrue(plan.getCapacity(Mode.LINEAR) >= 70_000);
+        assertEquals(0, plan.getCapacity(Mode.MATRIX));
+        assertFalse(CapacityPlanner.plan(1, (int) required - 1, payload).isViable(Mode.LINEAR));
+        assertTrue(CapacityPlanner.plan(1, (int) required - 1, payload).getCapacity(Mode.LINEAR) < 70_000);
+
+        boolean[] bits = new boolean[70_000];
+        bits[12345] = true;
+        char[] passphrase = "planner".toCharArray();
+        int[][] hidden = PayloadCipher.embedBitArray(new int[1][(int) required], bits, passphrase, Traversal.LINEAR);
+        assertArrayEquals(bits, PayloadCipher.revealBitArray(hidden, passphrase));
+
+        // the capacity is the inverse of the encrypted size
+        for (long available : new long[] { 0, 383, 384, 33_151, 33_152, 33_280, 1_000_000 }) {
+            long capacity = PayloadCipher.getPlaintextCapacity(available);
+            assertTrue(capacity == 0 || PayloadCipher.getEncryptedSize(capacity) <= available);
+            assertTrue(PayloadCipher.getEncryptedSize(capacity + 1) > available);
+        }
+    }
+
+    @Test
+    public void pathTest() throws IOException {
+        Path file = Files.createTempFile("planner-tests", ".png");
+        try {
+            Helper.write(file.toString(), new int[30][50]);
+            Plan plan = CapacityPlanner.plan(file.toString(), Payload.ofText(TEXT));
+            assertEquals(30 * 50 - PayloadHeader.SIZE, plan.getCapacity(Mode.HILBERT));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
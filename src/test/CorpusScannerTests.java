@@ -0,0 +1,93 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import main.*;
+
+public class CorpusScannerTests {
+
+    private static String lineOf(List<String> lines, String name) {
+        String found = null;
+        for (String line : lines)
+            if (line.contains(File.separator + name + "\""))
+                found = line;
+        assertNotNull("No line for " + name, found);
+        return found;
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        // links are deleted themselves, not followed
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+
+    @Test
+    public void scanTest() throws IOException {
+        Path root = Files.createTempDirectory("corpus-tests");
+        try {
+            Path nested = Files.createDirectory(root.resolve("nested"));
+            Path results = root.resolve("results.jsonl");
+            Path checkpoint = root.resolve("checkpoint.txt");
+
+            int[][] cover = new int[40][40];
+            Helper.write(root.resolve("framed.png").toString(),
+                    Steganography.embedFramedBitArray(cover, TextMessage.stringToBitArray("A \"quoted\" text"), Traversal.SPIRAL, PayloadHeader.CRC32C));
+            Helper.write(nested.resolve("spiral.png").toString(), Steganography.embedSpiralImage(cover, new boolean[5][7]));
+            Helper.write(nested.resolve("plain.png").toString(), cover);
+            Helper.write(nested.resolve("framed.bmp").toString(), Steganography.embedFramedText(cover, "Not a PNG", Traversal.LINEAR));
+            Files.write(root.resolve("broken.png"), new byte[] { 1, 2, 3 });
+            Files.write(root.resolve("notes.txt"), "not an image".getBytes(StandardCharsets.UTF_8));
+
+            // a link cycle is not walked
+            try {
+                Files.createSymbolicLink(nested.resolve("loop"), root);
+            } catch (UnsupportedOperationException | IOException e) {
+                // links are not available on this file system
+            }
+
+            // an unreadable image does not stop the scan
+            CorpusScanner.Summary summary = CorpusScanner.scan(root.toString(), results.toString(), checkpoint.toString(), 2);
+            assertEquals(5, summary.getScanned());
+            assertEquals(1, summary.getFailed());
+
+            List<String> lines = Files.readAllLines(results, StandardCharsets.UTF_8);
+            assertEquals(5, lines.size());
+            String framed = lineOf(lines, "framed.png");
+            assertTrue(framed.contains("\"mode\":\"framed\""));
+            assertTrue(framed.contains("\"checksum\":\"ok\""));
+            assertTrue(framed.contains("\"layout\":1"));
+            assertTrue(framed.contains("\"text\":\"A \\\"quoted\\\" text\""));
+            assertTrue(lineOf(lines, "spiral.png").contains("\"mode\":\"spiral-image\",\"length\":35"));
+            assertTrue(lineOf(lines, "plain.png").contains("\"mode\":\"none\""));
+            assertTrue(lineOf(lines, "framed.bmp").contains("\"text\":\"Not a PNG\""));
+            assertTrue(lineOf(lines, "broken.png").contains("\"mode\":\"error\""));
+
+            // resuming skips the images already scanned, and retries the failed one
+            Helper.write(root.resolve("broken.png").toString(), cover);
+            Helper.write(root.resolve("new.png").toString(), cover);
+            summary = CorpusScanner.scan(root.toString(), results.toString(), checkpoint.toString(), 2);
+            assertEquals(2, summary.getScanned());
+            assertEquals(4, summary.getSkipped());
+            assertEquals(0, summary.getFailed());
+            lines = Files.readAllLines(results, StandardCharsets.UTF_8);
+            assertEquals(7, lines.size());
+            assertTrue(lineOf(lines, "new.png").contains("\"mode\":\"none\""));
+            assertTrue(lineOf(lines, "broken.png").contains("\"mode\":\"none\""));
+        } finally {
+            deleteTree(root);
+        }
+    }
+}
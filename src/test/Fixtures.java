@@ -0,0 +1,56 @@
+package test;
+
+/**
+ * Deterministic covers and payloads shared by the tests
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Builds a cover whose LSBs vary from pixel to pixel without any pattern along the traversals
+     * 
+     * @param height
+     *            The height of the cover
+     * @param width
+     *            The width of the cover
+     * @return A HxW array of packed RGB colors
+     */
+    static int[][] noise(int height, int width) {
+        return noise(height, width, 0);
+    }
+
+    /**
+     * Builds a cover like {@link #noise(int, int)}, shifted by a seed so that successive frames differ
+     * 
+     * @param height
+     *            The height of the cover
+     * @param width
+     *            The width of the cover
+     * @param seed
+     *            The seed of the cover
+     * @return A HxW array of packed RGB colors
+     */
+    static int[][] noise(int height, int width, int seed) {
+        int[][] image = new int[height][width];
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                image[y][x] = (x * 7919 + y * 104729 + seed * 31) & 0xFFFFFF;
+        return image;
+    }
+
+    /**
+     * Builds a payload mixing runs and isolated values
+     * 
+     * @param length
+     *            The number of bits
+     * @return The payload
+     */
+    static boolean[] bits(int length) {
+        boolean[] bits = new boolean[length];
+        for (int i = 0; i < length; i++)
+            bits[i] = (i * 37 + i / 5) % 3 == 0;
+        return bits;
+    }
+}
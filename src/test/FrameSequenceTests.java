@@ -0,0 +1,100 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.Test;
+
+import main.*;
+
+public class FrameSequenceTests {
+
+    private static void delete(File... files) throws IOException {
+        for (File file : files)
+            try (Stream<Path> paths = Files.walk(file.toPath())) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                    Files.delete(path);
+            }
+    }
+
+    @Test
+    public void directoryRoundTripTest() throws IOException {
+        File input = Files.createTempDirectory("frames").toFile();
+        File output = Files.createTempDirectory("hidden").toFile();
+        try {
+            directoryRoundTrip(input, output);
+        } finally {
+            delete(input, output);
+        }
+    }
+
+    private static void directoryRoundTrip(File input, File output) throws IOException {
+        int[][] sizes = { { 20, 30 }, { 25, 16 }, { 10, 10 }, { 30, 30 }, { 12, 40 } };
+        for (int i = 0; i < sizes.length; i++)
+            assertTrue(Helper.writePng(new File(input, "in-" + i + ".png").getPath(), Fixtures.noise(sizes[i][0], sizes[i][1], i), 1,
+                    PngWriter.Filter.NONE));
+
+        try (FrameSequence frames = FrameSequence.open(input.getPath())) {
+            assertEquals(sizes.length, frames.getFrameCount());
+            assertEquals(600 + 400 + 100 + 900 + 480 - PayloadHeader.SIZE, frames.getCapacity());
+        }
+
+        // the payload spans the first four frames, the last one is copied unchanged
+        boolean[] payload = Fixtures.bits(1900);
+        for (Traversal traversal : new Traversal[] { Traversal.LINEAR, Traversal.SPIRAL, Traversal.HILBERT }) {
+            assertEquals(sizes.length, FrameSequence.embedBitArray(input.getPath(), output.getPath(), payload, traversal));
+            assertArrayEquals(payload, FrameSequence.revealBitArray(output.getPath()));
+            assertArrayEquals(Fixtures.noise(12, 40, 4), Helper.read(new File(output, String.format(FrameSequence.FRAME_FORMAT, 4)).getPath()));
+        }
+
+        FrameSequence.embedText(input.getPath(), output.getPath(), "Hello, frames!", Traversal.SPIRAL);
+        assertEquals("Hello, frames!", FrameSequence.revealText(output.getPath()));
+
+        // frames without a sequence header
+        assertNull(FrameSequence.revealBitArray(input.getPath()));
+    }
+
+    @Test
+    public void animatedGifTest() throws IOException {
+        File gif = File.createTempFile("animated", ".gif");
+        File output = Files.createTempDirectory("hidden").toFile();
+        try {
+            animatedGif(gif, output);
+        } finally {
+            delete(gif, output);
+        }
+    }
+
+    private static void animatedGif(File gif, File output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(gif)) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            for (int i = 0; i < 3; i++) {
+                BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_INDEXED);
+                image.setRGB(i, i, 0xFFFFFF);
+                writer.writeToSequence(new javax.imageio.IIOImage(image, null,
+                        writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null)), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+
+        boolean[] payload = Fixtures.bits(600);
+        assertEquals(3, FrameSequence.embedBitArray(gif.getPath(), output.getPath(), payload, Traversal.LINEAR));
+        assertArrayEquals(payload, FrameSequence.revealBitArray(output.getPath()));
+    }
+}
@@ -0,0 +1,104 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import main.*;
+
+public class ImageCacheTests {
+
+    private static File image(int height, int width, int color) throws IOException {
+        File file = File.createTempFile("cache-tests", ".png");
+        file.deleteOnExit();
+        int[][] pixels = new int[height][width];
+        for (int[] row : pixels)
+            Arrays.fill(row, color);
+        Helper.write(file.getPath(), pixels);
+        return file;
+    }
+
+    @After
+    public void disableCache() {
+        Helper.disableCache();
+    }
+
+    @Test
+    public void hitMissTest() throws IOException {
+        File file = image(10, 20, 0x123456);
+        ImageCache cache = Helper.enableCache(1 << 20);
+
+        int[][] first = Helper.readShared(file.getPath());
+        int[][] second = Helper.readShared(file.getPath());
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(10 * 20 * Integer.BYTES, cache.getBytes());
+    }
+
+    @Test
+    public void evictionTest() throws IOException {
+        // room for two 10x10 images only
+        ImageCache cache = new ImageCache(2 * 10 * 10 * Integer.BYTES);
+        File a = image(1, 1, 0), b = image(1, 1, 0), c = image(1, 1, 0);
+        cache.put(a, a.length(), a.lastModified(), new int[10][10]);
+        cache.put(b, b.length(), b.lastModified(), new int[10][10]);
+        assertNotNull(cache.get(a));
+        cache.put(c, c.length(), c.lastModified(), new int[10][10]);
+
+        // b was the least recently used
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(a));
+        assertNotNull(cache.get(c));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2 * 10 * 10 * Integer.BYTES, cache.getBytes());
+
+        // an image larger than the cache is not stored
+        cache.put(b, b.length(), b.lastModified(), new int[30][30]);
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(a));
+    }
+
+    @Test
+    public void invalidationTest() throws IOException {
+        File file = image(10, 10, 0);
+        ImageCache cache = new ImageCache(1 << 20);
+
+        // metadata sampled before a rewrite never matches the file afterwards
+        cache.put(file, file.length(), file.lastModified() - 1000, new int[10][10]);
+        assertNull(cache.get(file));
+        assertEquals(0, cache.getBytes());
+
+        cache.put(file, file.length(), file.lastModified(), new int[10][10]);
+        assertNotNull(cache.get(file));
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertNull(cache.get(file));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedFormatTest() throws IOException {
+        File file = File.createTempFile("cache-tests", ".png");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        Helper.readChecked(file.getPath());
+    }
+
+    @Test
+    public void copyOnReadTest() throws IOException {
+        File file = image(4, 4, 0xABCDEF);
+        Helper.enableCache(1 << 20);
+
+        int[][] copy = Helper.read(file.getPath());
+        copy[0][0] = 0;
+        assertEquals(0xABCDEF, Helper.read(file.getPath())[0][0]);
+        assertEquals(0xABCDEF, Helper.readShared(file.getPath())[0][0]);
+        assertNotSame(Helper.read(file.getPath()), Helper.readShared(file.getPath()));
+    }
+}
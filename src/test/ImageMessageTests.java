@@ -6,6 +6,7 @@ import java.util.Arrays;
 
 import org.junit.Test;
 
+import main.ColorConversion;
 import main.ImageMessage;
 
 public class ImageMessageTests {
@@ -85,4 +86,31 @@ public class ImageMessageTests {
         assert Arrays.equals(bitarray, ImageMessage.bwImageToBitArray(image));
         assertArrayEquals(image, ImageMessage.bitArrayToImage(bitarray));
     }
+
+    @Test
+    public void colorConversionTest() {
+        for (int rgb : new int[] { COLOUR, GREY, RED_FULL, GREEN_FULL, BLUE_FULL, WHITE, 0 }) {
+            assertEquals(ImageMessage.getGray(rgb), ColorConversion.AVERAGE.getGray(rgb));
+        }
+        ColorConversion rec601 = new ColorConversion(ColorConversion.Weighting.REC601);
+        assertEquals(255, rec601.getGray(WHITE));
+        assertEquals(GREY_VALUE, rec601.getGray(GREY));
+        assertEquals(76, rec601.getGray(0xFF0000));
+    }
+
+    @Test
+    public void otsuThresholdTest() {
+        int[][] image = { { 0x101010, 0x0F0F0F, WHITE }, { 0x111111, WHITE, 0xFEFEFE } };
+        int[] histogram = new int[ColorConversion.LEVELS];
+        int[][] gray = ColorConversion.AVERAGE.toGray(image, new int[2][3], histogram);
+
+        assertArrayEquals(ImageMessage.toGray(image), gray);
+        assertEquals(1, histogram[0x10]);
+        assertEquals(2, histogram[255]);
+
+        int threshold = ColorConversion.otsuThreshold(histogram);
+        assertTrue(threshold > 0x11 && threshold <= 0xFE);
+        assertArrayEquals(new boolean[][] { { false, false, true }, { false, true, true } },
+                ColorConversion.AVERAGE.toBW(image));
+    }
 }
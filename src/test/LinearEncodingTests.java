@@ -2,8 +2,13 @@ package test;
 
 import static org.junit.Assert.*;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
+import javax.imageio.ImageIO;
+
 import org.junit.Test;
 
 import main.*;
@@ -90,6 +95,150 @@ public class LinearEncodingTests {
         assertEquals(TEXT, Steganography.revealText(CODED_TEXT).substring(0, TEXT.length()));
     }
 
+    @Test
+    public void embedBitArrayInPlaceTest() {
+        int[][] cover = new int[10][10];
+        assertSame(cover, Steganography.embedBitArray(cover, flattenArray(BIT_IMAGE), cover));
+        assertArrayEquals(IMAGE, cover);
+
+        boolean[] bits = new boolean[128];
+        assertSame(bits, Steganography.revealBitArray(IMAGE, bits));
+        assertArrayEquals(flattenArray(BIT_IMAGE), Arrays.copyOf(bits, 100));
+    }
+
+    @Test
+    public void pooledTextTest() {
+        BufferPool pool = new BufferPool(2);
+
+        int[][] encoded = Steganography.embedText(new int[10][10], TEXT, pool);
+        assertArrayEquals(CODED_TEXT, encoded);
+        assertEquals(TEXT, Steganography.revealText(encoded, pool).substring(0, TEXT.length()));
+
+        pool.releaseRaster(encoded);
+        assertSame(encoded, pool.acquireRaster(10, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pooledBitsLimitTest() {
+        new BufferPool(1).acquireBits(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void pooledReadTest() throws IOException {
+        File file = File.createTempFile("linear-tests", ".png");
+        file.deleteOnExit();
+        assertTrue(Helper.write(file.getPath(), CODED_TEXT));
+
+        // a released raster is handed out again for the next image of the same size
+        BufferPool pool = new BufferPool(1);
+        int[][] first = Helper.readChecked(file.getPath(), pool);
+        assertArrayEquals(CODED_TEXT, first);
+        pool.releaseRaster(first);
+        assertSame(first, Helper.readChecked(file.getPath(), pool));
+    }
+
+    @Test
+    public void destinationOverloadsTest() {
+        int[][] cover = new int[10][10];
+        assertSame(cover, Steganography.embedText(cover, TEXT, cover));
+        assertArrayEquals(CODED_TEXT, cover);
+
+        int[][] spiral = new int[13][13];
+        assertSame(spiral, Steganography.embedSpiralImage(spiral, BIT_IMAGE, spiral));
+        assertArrayEquals(Steganography.embedSpiralImage(new int[13][13], BIT_IMAGE), spiral);
+        boolean[][] image = new boolean[BIT_IMAGE.length][BIT_IMAGE[0].length];
+        assertSame(image, Steganography.revealSpiralImage(spiral, image));
+        assertArrayEquals(BIT_IMAGE, image);
+
+        boolean[] bits = new boolean[256];
+        int length = ImageMessage.bwImageToBitArray(BIT_IMAGE, bits);
+        assertArrayEquals(ImageMessage.bwImageToBitArray(BIT_IMAGE), Arrays.copyOf(bits, length));
+    }
+
+    @Test
+    public void updateBitArrayTest() {
+        int[][] hidden = Steganography.embedBitArray(new int[10][10], flattenArray(BIT_IMAGE));
+        boolean[] message = flattenArray(BIT_IMAGE);
+        message[15] = !message[15];
+        message[42] = !message[42];
+
+        PixelChanges changes = Steganography.updateBitArray(hidden, message);
+
+        assertEquals(2, changes.getCount());
+        assertEquals(1, changes.getFirstRow());
+        assertEquals(4, changes.getLastRow());
+        assertArrayEquals(Steganography.embedBitArray(new int[10][10], message), hidden);
+        assertTrue(Steganography.updateBitArray(hidden, message).isEmpty());
+    }
+
+    @Test
+    public void writeChangesTest() throws IOException {
+        File file = File.createTempFile("linear-tests", ".bmp");
+        file.deleteOnExit();
+        boolean[] message = flattenArray(BIT_IMAGE);
+        int[][] hidden = Steganography.embedBitArray(IMAGE, message);
+        assertTrue(Helper.write(file.getPath(), hidden));
+        long size = file.length();
+
+        // a 24-bit BMP is patched in place, only on the changed rows
+        message[15] = !message[15];
+        message[42] = !message[42];
+        assertTrue(Helper.write(file.getPath(), hidden, Steganography.updateBitArray(hidden, message)));
+        assertArrayEquals(hidden, Helper.read(file.getPath()));
+        assertEquals(size, file.length());
+
+        // nothing is written without changes
+        long lastModified = (file.lastModified() / 1000 - 60) * 1000;
+        assertTrue(file.setLastModified(lastModified));
+        assertTrue(Helper.write(file.getPath(), hidden, Steganography.updateBitArray(hidden, message)));
+        assertEquals(lastModified, file.lastModified());
+
+        // other layouts are fully re-encoded
+        assertTrue(ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY), "bmp", file));
+        message[77] = !message[77];
+        assertTrue(Helper.write(file.getPath(), hidden, Steganography.updateBitArray(hidden, message)));
+        assertArrayEquals(hidden, Helper.read(file.getPath()));
+    }
+
+    @Test
+    public void offHeapTest() {
+        try (OffHeapRaster raster = new OffHeapRaster(10, 10);
+                OffHeapBitArray message = OffHeapBitArray.fromBitArray(flattenArray(BIT_IMAGE));
+                OffHeapBitArray revealed = new OffHeapBitArray(100)) {
+            Steganography.embedBitArray(raster, message);
+            assertArrayEquals(IMAGE, raster.toArray());
+
+            Steganography.revealBitArray(raster, revealed);
+            assertArrayEquals(flattenArray(BIT_IMAGE), revealed.toBitArray(0, 100));
+        }
+    }
+
+    @Test
+    public void packedBitArrayTest() {
+        long[] packed = Steganography.revealPackedBitArray(IMAGE);
+        assertEquals(2, packed.length);
+        assertArrayEquals(flattenArray(BIT_IMAGE), LsbKernels.unpack(packed, 100));
+        assertArrayEquals(packed, LsbKernels.pack(flattenArray(BIT_IMAGE)));
+
+        assertArrayEquals(IMAGE, Steganography.embedPackedBitArray(new int[10][10], packed, 100));
+        assertArrayEquals(CODED_TEXT, Steganography.embedPackedBitArray(new int[10][10],
+                LsbKernels.pack(TextMessage.stringToBitArray(TEXT)), TEXT.length() * Character.SIZE));
+    }
+
+    @Test
+    public void bitPlanesTest() {
+        long[][] planes = BitPlanes.decompose(IMAGE, 1 | 1 << 23);
+        assertArrayEquals(BIT_IMAGE, BitPlanes.toBWImage(planes[0], 10, 10));
+        assertArrayEquals(new boolean[10][10], BitPlanes.toBWImage(planes[23], 10, 10));
+        assertNull(planes[1]);
+
+        int[][] image = { { 0xFFFFFF, 0x800001 }, { 0x00FF00, 0 } };
+        planes = BitPlanes.decompose(image);
+        assertArrayEquals(new boolean[][] { { true, true }, { false, false } }, BitPlanes.toBWImage(planes[23], 2, 2));
+        assertArrayEquals(new boolean[][] { { true, false }, { true, false } }, BitPlanes.toBWImage(planes[8], 2, 2));
+        assertArrayEquals(Steganography.revealBWImage(image), BitPlanes.toBWImage(planes[0], 2, 2));
+    }
+
     @Test
     public void getLSBTest() {
         assertTrue(Steganography.getLSB(1));
@@ -107,4 +256,43 @@ public class LinearEncodingTests {
         assertEquals(testInt, Steganography.embedInLSB(testInt, true));
     }
 
+    @Test
+    public void embedMetricsTest() {
+        int[][] cover = Fixtures.noise(150, 7);
+        boolean[] bits = new boolean[900];
+        for (int i = 0; i < bits.length; ++i)
+            bits[i] = i % 3 == 0;
+
+        // same pixels as the plain embedding, and the distortion a second pass would measure
+        for (boolean spiral : new boolean[] { false, true }) {
+            EmbedMetrics metrics = new EmbedMetrics();
+            int[][] measured = new int[150][7];
+            int[][] expected;
+            if (spiral) {
+                Steganography.embedSpiralBitArray(cover, bits, measured, metrics);
+                expected = Steganography.embedSpiralBitArray(cover, bits, new int[150][7]);
+            } else {
+                Steganography.embedBitArray(cover, bits, measured, metrics);
+                expected = Steganography.embedBitArray(cover, bits);
+            }
+            assertArrayEquals(expected, measured);
+
+            long changed = 0;
+            for (int y = 0; y < cover.length; ++y)
+                for (int x = 0; x < cover[y].length; ++x)
+                    if (cover[y][x] != measured[y][x])
+                        ++changed;
+            assertEquals(150 * 7, metrics.getPixelCount());
+            assertEquals(changed, metrics.getChangedPixelCount());
+            assertEquals(0, metrics.getSquaredError(EmbedMetrics.RED));
+            assertEquals(0, metrics.getSquaredError(EmbedMetrics.GREEN));
+            assertEquals(changed, metrics.getSquaredError(EmbedMetrics.BLUE));
+            assertEquals(10 * Math.log10(255.0 * 255 * 3 * 150 * 7 / changed), metrics.getPSNR(), 1e-9);
+        }
+
+        EmbedMetrics unchanged = new EmbedMetrics();
+        Steganography.embedBitArray(cover, Steganography.revealBitArray(cover), new int[150][7], unchanged);
+        assertEquals(0, unchanged.getChangedPixelCount());
+        assertEquals(Double.POSITIVE_INFINITY, unchanged.getPSNR(), 0);
+    }
 }
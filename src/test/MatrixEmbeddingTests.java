@@ -0,0 +1,46 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import main.*;
+
+public class MatrixEmbeddingTests {
+
+    @Test
+    public void roundTripTest() {
+        int[][] cover = Fixtures.noise(31, 29);
+        for (Traversal traversal : new Traversal[] { Traversal.LINEAR, Traversal.SPIRAL, Traversal.HILBERT }) {
+            for (int k = 1; k <= 5; ++k) {
+                int n = MatrixEmbedding.getGroupSize(k);
+                boolean[] bits = new boolean[(int) MatrixEmbedding.getCapacity(31, 29, k) - 1];
+                for (int i = 0; i < bits.length; ++i)
+                    bits[i] = (i * 31 + k) % 7 < 3;
+
+                EmbedMetrics metrics = new EmbedMetrics();
+                int[][] hidden = MatrixEmbedding.embedBitArray(cover, bits, k, traversal, metrics);
+                assertArrayEquals(bits, MatrixEmbedding.revealBitArray(hidden, bits.length, k, traversal));
+
+                // at most one LSB changed per group, and nothing else
+                int groups = (bits.length + k - 1) / k;
+                assertTrue(metrics.getChangedPixelCount() <= groups);
+                assertEquals(metrics.getChangedPixelCount(), metrics.getSquaredError(EmbedMetrics.BLUE));
+                assertEquals(0, metrics.getSquaredError(EmbedMetrics.RED) + metrics.getSquaredError(EmbedMetrics.GREEN));
+                assertEquals(31 * 29 / n * k, MatrixEmbedding.getCapacity(31, 29, k));
+            }
+        }
+    }
+
+    @Test
+    public void plainLsbTest() {
+        int[][] cover = Fixtures.noise(10, 12);
+        boolean[] bits = new boolean[100];
+        for (int i = 0; i < bits.length; ++i)
+            bits[i] = i % 3 == 0;
+
+        // single-pixel groups are plain LSB embedding
+        assertArrayEquals(Steganography.embedBitArray(cover, bits, Traversal.SPIRAL),
+                MatrixEmbedding.embedBitArray(cover, bits, 1, Traversal.SPIRAL));
+    }
+}
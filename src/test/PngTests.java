@@ -0,0 +1,154 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import main.*;
+
+public class PngTests {
+
+    /**
+     * Builds a noisy image, so that every filter and the LSB layer are exercised
+     * 
+     * @param height
+     *            The height of the image
+     * @param width
+     *            The width of the image
+     * @return A HxW array of random packed RGB colors
+     */
+    private static int[][] randomImage(int height, int width) {
+        Random random = new Random(height * 31 + width);
+        int[][] image = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image[y][x] = ((y * 7 + x) & 0xFF) << 8 | random.nextInt(0x100) << 16 | random.nextInt(4);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void writeRoundTripTest() throws IOException {
+        File file = File.createTempFile("png-tests", ".png");
+        file.deleteOnExit();
+
+        for (PngWriter.Filter filter : PngWriter.Filter.values()) {
+            int[][] image = randomImage(13, 17);
+            assertTrue(Helper.writePng(file.getPath(), image, 6, filter));
+            assertArrayEquals(image, Helper.read(file.getPath()));
+        }
+    }
+
+    @Test
+    public void parallelWriteRoundTripTest() throws IOException {
+        File file = File.createTempFile("png-tests", ".png");
+        file.deleteOnExit();
+
+        // several blocks of rows, deflated independently
+        int[][] image = randomImage(700, 300);
+        for (int level = 0; level <= 9; level += 3) {
+            assertTrue(Helper.writePng(file.getPath(), image, level, PngWriter.Filter.ADAPTIVE));
+            assertArrayEquals(image, Helper.read(file.getPath()));
+        }
+    }
+
+    @Test
+    public void readRowsTest() throws IOException {
+        File file = File.createTempFile("png-tests", ".png");
+        file.deleteOnExit();
+        int[][] image = randomImage(700, 300);
+        assertTrue(Helper.writePng(file.getPath(), image, 6, PngWriter.Filter.ADAPTIVE));
+
+        try (PngReader reader = PngReader.open(file.getPath())) {
+            int[] row = new int[reader.getWidth()];
+            for (int y = 0; y < image.length; y++) {
+                assertTrue(reader.readRow(row));
+                assertArrayEquals(image[y], row);
+            }
+            assertFalse(reader.readRow(row));
+        }
+    }
+
+    @Test
+    public void revealFramedTextTest() throws IOException {
+        File file = File.createTempFile("png-tests", ".png");
+        file.deleteOnExit();
+        String message = "Hello! This is a super secret hidden message!";
+        int[][] hidden = Steganography.embedFramedText(randomImage(700, 300), message);
+        assertEquals(message, Steganography.revealFramedText(hidden));
+
+        assertTrue(Helper.writePng(file.getPath(), hidden, 6, PngWriter.Filter.PAETH));
+        assertEquals(message, PngReveal.revealFramedText(file.getPath()));
+
+        // ImageIO output, possibly using other filters and chunk sizes
+        assertTrue(Helper.write(file.getPath(), hidden));
+        assertEquals(message, PngReveal.revealFramedText(file.getPath()));
+
+        hidden = Steganography.embedFramedText(randomImage(700, 300), message, Traversal.LINEAR, PayloadHeader.UTF8);
+        assertTrue(Helper.writePng(file.getPath(), hidden, 6, PngWriter.Filter.PAETH));
+        assertEquals(message, PngReveal.revealFramedText(file.getPath()));
+
+        hidden = Steganography.embedFramedText(randomImage(700, 300), message, Traversal.LINEAR, PayloadHeader.UTF16,
+                PayloadHeader.CRC32C);
+        assertTrue(Helper.writePng(file.getPath(), hidden, 6, PngWriter.Filter.PAETH));
+        assertTrue(PngReveal.verify(file.getPath()));
+        assertEquals(message, PngReveal.revealFramedText(file.getPath()));
+
+        // UTF-8 is decoded while streaming too, with or without a checksum
+        String accented = "Un message tr\u00e8s secret \ud83d\ude00";
+        hidden = Steganography.embedFramedText(randomImage(700, 300), accented, Traversal.LINEAR, PayloadHeader.UTF8,
+                PayloadHeader.CRC32C);
+        assertTrue(Helper.writePng(file.getPath(), hidden, 6, PngWriter.Filter.PAETH));
+        assertEquals(accented, PngReveal.revealFramedText(file.getPath()));
+        hidden[0][PayloadHeader.SIZE + 5] ^= 1;
+        assertTrue(Helper.writePng(file.getPath(), hidden, 6, PngWriter.Filter.PAETH));
+        assertNull(PngReveal.revealFramedText(file.getPath()));
+
+        assertTrue(Helper.writePng(file.getPath(), randomImage(20, 20), 6, PngWriter.Filter.NONE));
+        assertNull(PngReveal.revealFramedText(file.getPath()));
+        assertFalse(PngReveal.verify(file.getPath()));
+    }
+
+    @Test
+    public void probeTest() throws IOException {
+        File file = File.createTempFile("png-tests", ".png");
+        file.deleteOnExit();
+        int[][] cover = randomImage(300, 200);
+
+        int[][] framed = Steganography.embedFramedText(cover, "Probe me", Traversal.SPIRAL);
+        assertEquals(PayloadProbe.Kind.FRAMED, PayloadProbe.probe(framed));
+        assertTrue(Helper.writePng(file.getPath(), framed, 6, PngWriter.Filter.SUB));
+        assertEquals(PayloadProbe.Kind.FRAMED, PayloadProbe.probe(file.getPath()));
+
+        boolean[][] image = new boolean[30][40];
+        image[3][4] = true;
+        int[][] spiral = Steganography.embedSpiralImage(cover, image);
+        assertEquals(PayloadProbe.Kind.SPIRAL_IMAGE, PayloadProbe.probe(spiral));
+        assertTrue(Helper.writePng(file.getPath(), spiral, 6, PngWriter.Filter.SUB));
+        assertEquals(PayloadProbe.Kind.SPIRAL_IMAGE, PayloadProbe.probe(file.getPath()));
+
+        // narrow covers, whose spiral header goes down the right column
+        int[][] narrow = Steganography.embedSpiralImage(randomImage(100, 10), new boolean[5][5]);
+        assertEquals(PayloadProbe.Kind.SPIRAL_IMAGE, PayloadProbe.probe(narrow));
+        assertTrue(Helper.writePng(file.getPath(), narrow, 6, PngWriter.Filter.SUB));
+        assertEquals(PayloadProbe.Kind.SPIRAL_IMAGE, PayloadProbe.probe(file.getPath()));
+
+        assertEquals(PayloadProbe.Kind.NONE, PayloadProbe.probe(cover));
+        assertTrue(Helper.writePng(file.getPath(), cover, 6, PngWriter.Filter.SUB));
+        assertEquals(PayloadProbe.Kind.NONE, PayloadProbe.probe(file.getPath()));
+        assertEquals(PayloadProbe.Kind.NONE, PayloadProbe.probe(new int[4][4]));
+
+        // other formats are decoded as a whole
+        File bmp = File.createTempFile("png-tests", ".bmp");
+        bmp.deleteOnExit();
+        assertTrue(Helper.write(bmp.getPath(), framed));
+        assertEquals(PayloadProbe.Kind.FRAMED, PayloadProbe.probe(bmp.getPath()));
+        assertTrue(Helper.write(bmp.getPath(), cover));
+        assertEquals(PayloadProbe.Kind.NONE, PayloadProbe.probe(bmp.getPath()));
+    }
+}
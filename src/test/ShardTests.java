@@ -0,0 +1,91 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import main.*;
+
+public class ShardTests {
+
+    private static final String TEXT = "A message which does not fit in any single one of these covers";
+
+    private static List<int[][]> covers() {
+        return Arrays.asList(new int[30][30], new int[20][40], new int[40][20], new int[27][27]);
+    }
+
+    @Test
+    public void shardedTextTest() {
+        List<int[][]> covers = covers();
+        List<int[][]> hidden = Shards.embedText(covers, TEXT);
+        assertEquals(covers.size(), hidden.size());
+        assertEquals(TEXT, Shards.revealText(hidden));
+
+        // covers are left untouched
+        assertArrayEquals(new int[30][30], covers.get(0));
+    }
+
+    @Test
+    public void shuffledShardsTest() {
+        boolean[] payload = TextMessage.stringToBitArray(TEXT);
+        List<int[][]> hidden = new ArrayList<>(Shards.embedBitArray(covers(), payload, 42));
+        Collections.reverse(hidden);
+        Collections.swap(hidden, 1, 2);
+        assertArrayEquals(payload, Shards.revealBitArray(hidden));
+    }
+
+    @Test
+    public void missingShardTest() {
+        List<int[][]> hidden = new ArrayList<>(Shards.embedText(covers(), TEXT));
+        hidden.remove(2);
+        assertNull(Shards.revealText(hidden));
+
+        hidden.add(new int[30][30]);
+        assertNull(Shards.revealText(hidden));
+    }
+
+    private static void setTotalLength(List<int[][]> hidden, int totalLength) {
+        // the total length follows the frame header and the id, sequence and count of the shard
+        for (int[][] image : hidden)
+            for (int i = 0; i < 32; ++i) {
+                int pixel = PayloadHeader.SIZE + 64 + i;
+                int width = image[0].length;
+                image[pixel / width][pixel % width] = Steganography.embedInLSB(image[pixel / width][pixel % width], ((totalLength >> i) & 1) == 1);
+            }
+    }
+
+    @Test
+    public void corruptedLengthTest() {
+        List<int[][]> hidden = Shards.embedText(covers(), TEXT);
+        setTotalLength(hidden, -5);
+        assertNull(Shards.revealText(hidden));
+
+        hidden = Shards.embedText(covers(), TEXT);
+        setTotalLength(hidden, Integer.MAX_VALUE);
+        assertNull(Shards.revealText(hidden));
+    }
+
+    @Test
+    public void shardMetricsTest() {
+        List<int[][]> covers = covers();
+        EmbedMetrics[] metrics = new EmbedMetrics[covers.size()];
+        List<int[][]> hidden = Shards.embedBitArray(covers, TextMessage.stringToBitArray(TEXT), 7, metrics);
+        assertEquals(TEXT, Shards.revealText(hidden));
+
+        for (int i = 0; i < covers.size(); ++i) {
+            int[][] cover = covers.get(i);
+            assertEquals((long) cover.length * cover[0].length, metrics[i].getPixelCount());
+            long changed = 0;
+            for (int y = 0; y < cover.length; ++y)
+                for (int x = 0; x < cover[y].length; ++x)
+                    if (hidden.get(i)[y][x] != 0)
+                        ++changed;
+            assertEquals(changed, metrics[i].getChangedPixelCount());
+        }
+    }
+}
@@ -52,4 +52,94 @@ public class SpiralEncodingTests {
     public void revealBitArrayTest() {
         assert Arrays.equals(bitArray, Arrays.copyOfRange(Steganography.revealSpiralBitArray(encodedCover), 0, bitArray.length));
     }
+
+    @Test
+    public void updateBitArrayTest() {
+        int[][] hidden = new int[10][10];
+        for (int y = 0; y < hidden.length; ++y)
+            hidden[y] = encodedCover[y].clone();
+        boolean[] message = bitArray.clone();
+        // first pixel of the second row of the image data, located on the left edge of the spiral
+        message[67] = !message[67];
+
+        PixelChanges changes = Steganography.updateSpiralBitArray(hidden, message);
+
+        assertEquals(1, changes.getCount());
+        assertEquals(changes.getFirstRow(), changes.getLastRow());
+        assertArrayEquals(message, Arrays.copyOfRange(Steganography.revealSpiralBitArray(hidden), 0, message.length));
+    }
+
+    @Test
+    public void embedBitArrayCopyOnWriteTest() {
+        int[][] original = new int[10][10];
+        int[][] embedded = Steganography.embedSpiralBitArray(original, bitArray);
+
+        assertArrayEquals(encodedCover, embedded);
+        assertArrayEquals(new int[10][10], original);
+        // rows without any modified pixel are shared, the others are copies
+        assertSame(original[1], embedded[1]);
+        assertNotSame(original[0], embedded[0]);
+    }
+
+    @Test
+    public void embedBitArrayInPlaceTest() {
+        int[][] inPlace = new int[10][10];
+        assertSame(inPlace, Steganography.embedSpiralBitArrayInPlace(inPlace, bitArray));
+        assertArrayEquals(encodedCover, inPlace);
+    }
+
+    @Test
+    public void offHeapTest() {
+        try (OffHeapRaster raster = OffHeapRaster.fromArray(cover);
+                OffHeapBitArray message = OffHeapBitArray.fromBitArray(bitArray);
+                OffHeapBitArray revealed = new OffHeapBitArray(bitArray.length)) {
+            Steganography.embedSpiralBitArray(raster, message);
+            assertArrayEquals(encodedCover, raster.toArray());
+
+            Steganography.revealSpiralBitArray(raster, revealed);
+            assertArrayEquals(bitArray, revealed.toBitArray(0, bitArray.length));
+        }
+    }
+
+    @Test
+    public void packedBitArrayTest() {
+        assertArrayEquals(encodedCover, Steganography.embedSpiralPackedBitArray(cover, LsbKernels.pack(bitArray), bitArray.length));
+        assertArrayEquals(Steganography.revealSpiralBitArray(encodedCover),
+                LsbKernels.unpack(Steganography.revealSpiralPackedBitArray(encodedCover), 100));
+
+        // wide image, so that rows of the spiral span several words
+        int[][] wide = new int[7][150];
+        for (int y = 0; y < wide.length; y++)
+            for (int x = 0; x < wide[y].length; x++)
+                wide[y][x] = (x * 31 + y * 17) % 7;
+        boolean[] bits = Steganography.revealSpiralBitArray(wide);
+        assertArrayEquals(bits, LsbKernels.unpack(Steganography.revealSpiralPackedBitArray(wide), bits.length));
+        assertArrayEquals(Steganography.embedSpiralBitArray(new int[7][150], bits),
+                Steganography.embedSpiralPackedBitArray(new int[7][150], LsbKernels.pack(bits), bits.length));
+    }
+
+    @Test
+    public void progressiveRevealTest() {
+        assertArrayEquals(new int[] { 2, 3 }, Steganography.revealSpiralImageSize(encodedCover));
+        assertNull(Steganography.revealSpiralImageSize(cover));
+
+        boolean[][] image = new boolean[13][17];
+        for (int y = 0; y < image.length; ++y)
+            for (int x = 0; x < image[y].length; ++x)
+                image[y][x] = (x * 7 + y * 3) % 5 < 2;
+        int[][] hidden = Steganography.embedSpiralImage(new int[20][20], image);
+
+        // batches follow each other and cover every row
+        int[] next = { 0 };
+        boolean[][] revealed = Steganography.revealSpiralImage(hidden, 4, (rows, first, last) -> {
+            assertEquals(next[0], first);
+            assertTrue(last - first <= 4);
+            for (int y = 0; y < last; ++y)
+                assertArrayEquals(image[y], rows[y]);
+            next[0] = last;
+        });
+        assertEquals(image.length, next[0]);
+        assertArrayEquals(image, revealed);
+        assertArrayEquals(Steganography.revealSpiralImage(hidden), revealed);
+    }
 }
@@ -6,6 +6,7 @@ import java.util.Arrays;
 
 import org.junit.Test;
 
+import main.HuffmanCodec;
 import main.TextMessage;
 
 public class TextMessageTests {
@@ -36,4 +37,59 @@ public class TextMessageTests {
         assertEquals(STRING_MESSAGE, TextMessage.bitArrayToString(STRING_BIT_ARRAY));
     }
 
+    @Test
+    public void utf8ConversionTest() {
+        // ASCII chars take 8 bits
+        assertEquals(8 * STRING_MESSAGE.length(), TextMessage.stringToUtf8BitArray(STRING_MESSAGE).length);
+        assertEquals(STRING_MESSAGE, TextMessage.utf8BitArrayToString(TextMessage.stringToUtf8BitArray(STRING_MESSAGE)));
+
+        String message = "caf\u00e9 \u20ac \ud83d\ude00 \u65e5\u672c";
+        boolean[] bits = TextMessage.stringToUtf8BitArray(message);
+        assertEquals(8 * message.getBytes(java.nio.charset.StandardCharsets.UTF_8).length, bits.length);
+        assertEquals(message, TextMessage.utf8BitArrayToString(bits));
+
+        // unpaired surrogates survive the round trip
+        String unpaired = "a\ud800b\udc00";
+        assertEquals(unpaired, TextMessage.utf8BitArrayToString(TextMessage.stringToUtf8BitArray(unpaired)));
+
+        // truncated and invalid sequences are replaced
+        boolean[] truncated = Arrays.copyOf(TextMessage.stringToUtf8BitArray("\u20acA"), 16);
+        assertEquals("\ufffd", TextMessage.utf8BitArrayToString(truncated));
+        assertEquals("\ufffdA", TextMessage.utf8BitArrayToString(TextMessage.intToBitArray(0x41FF, 16)));
+    }
+
+    @Test
+    public void huffmanTest() throws java.io.IOException {
+        String text = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get("images/AdeleBlochBauer/message.txt")),
+                java.nio.charset.StandardCharsets.UTF_8);
+        boolean[] bits = HuffmanCodec.encode(text);
+        assertTrue(bits.length < TextMessage.stringToUtf8BitArray(text).length);
+        assertEquals(text, HuffmanCodec.decode(bits));
+        assertEquals(text, HuffmanCodec.decode(main.LsbKernels.pack(bits), bits.length));
+
+        assertEquals("", HuffmanCodec.decode(HuffmanCodec.encode("")));
+        assertEquals("aaaa", HuffmanCodec.decode(HuffmanCodec.encode("aaaa")));
+        assertEquals("caf\u00e9 \ud83d\ude00", HuffmanCodec.decode(HuffmanCodec.encode("caf\u00e9 \ud83d\ude00")));
+
+        // Fibonacci frequencies would need codes longer than the limit
+        StringBuilder skewed = new StringBuilder();
+        for (int i = 0, a = 1, b = 1; i < 25; i++, b = a + b, a = b - a)
+            for (int j = 0; j < a; j++)
+                skewed.append((char) ('A' + i));
+        assertEquals(skewed.toString(), HuffmanCodec.decode(HuffmanCodec.encode(skewed.toString())));
+
+        // truncated codes
+        assertNull(HuffmanCodec.decode(bits, bits.length - 40));
+    }
+
+    @Test
+    public void huffmanHugeCountTest() {
+        // a count of 2^31-1 bytes, announced by a few hundred bits, is rejected before allocating
+        boolean[] bits = HuffmanCodec.encode("abracadabra");
+        Arrays.fill(bits, 0, 31, true);
+        bits[31] = false;
+        assertNull(HuffmanCodec.decode(bits));
+        assertNull(HuffmanCodec.decode(main.LsbKernels.pack(bits), bits.length));
+    }
+
 }
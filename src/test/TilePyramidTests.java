@@ -0,0 +1,99 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import main.*;
+
+public class TilePyramidTests {
+
+    private static final int SIZE = TilePyramid.TILE_SIZE;
+
+    @Test
+    public void keyTest() {
+        long[][] tiles = { { 0, 0, 0 }, { 3, 17, 42 }, { 31, (1 << 29) - 1, (1 << 29) - 1 } };
+        for (long[] tile : tiles) {
+            long key = TilePyramid.key((int) tile[0], tile[1], tile[2]);
+            assertEquals(tile[0], TilePyramid.levelOf(key));
+            assertEquals(tile[1], TilePyramid.rowOf(key));
+            assertEquals(tile[2], TilePyramid.columnOf(key));
+        }
+        assertNotEquals(TilePyramid.key(1, 0, 1), TilePyramid.key(1, 1, 0));
+    }
+
+    @Test
+    public void levelsTest() {
+        // 3 levels: 1000x600, 500x300 and 250x150, which fits in a tile
+        TilePyramid pyramid = new TilePyramid(600, 1000);
+        assertEquals(2, pyramid.getMaxLevel());
+        assertEquals(0, new TilePyramid(SIZE, SIZE).getMaxLevel());
+        assertEquals(1, new TilePyramid(SIZE + 1, 1).getMaxLevel());
+
+        assertEquals(0, pyramid.getLevel(1));
+        assertEquals(0, pyramid.getLevel(0.6));
+        assertEquals(1, pyramid.getLevel(0.5));
+        assertEquals(2, pyramid.getLevel(0.25));
+        assertEquals(2, pyramid.getLevel(0.001));
+    }
+
+    @Test
+    public void edgeTilesTest() {
+        TilePyramid pyramid = new TilePyramid(600, 1000);
+        assertEquals(2, pyramid.getLastRow(0));
+        assertEquals(3, pyramid.getLastColumn(0));
+        assertEquals(SIZE, pyramid.getTileHeight(0, 1));
+        assertEquals(600 - 2 * SIZE, pyramid.getTileHeight(0, 2));
+        assertEquals(1000 - 3 * SIZE, pyramid.getTileWidth(0, 3));
+        assertEquals(300 - SIZE, pyramid.getTileHeight(1, 1));
+        assertEquals(150, pyramid.getTileHeight(2, 0));
+        assertEquals(250, pyramid.getTileWidth(2, 0));
+
+        // the last tile of level 0 holds the bottom right pixels as they are
+        TilePyramid.Source source = (y, x) -> (int) (y * 1000 + x) & 0xFFFFFF;
+        int[] tile = pyramid.render(source, TilePyramid.key(0, 2, 3));
+        int height = pyramid.getTileHeight(0, 2), width = pyramid.getTileWidth(0, 3);
+        assertEquals(height * width, tile.length);
+        assertEquals(source.get(2 * SIZE, 3 * SIZE), tile[0]);
+        assertEquals(source.get(599, 999), tile[height * width - 1]);
+    }
+
+    @Test
+    public void downsampleTest() {
+        // odd sizes: the samples of the last tile pixels are clamped to the image
+        TilePyramid pyramid = new TilePyramid(601, 1001);
+        TilePyramid.Source uniform = (y, x) -> 0x336699;
+        for (int level = 1; level <= pyramid.getMaxLevel(); ++level)
+            for (int value : pyramid.render(uniform, TilePyramid.key(level, pyramid.getLastRow(level), pyramid.getLastColumn(level))))
+                assertEquals(0x336699, value);
+
+        // 4 samples per pixel at the centers of the quarters of the block, averaged per channel
+        TilePyramid.Source stripes = (y, x) -> x % 4 < 2 ? 0x000000 : 0x0000FF;
+        int[] tile = new TilePyramid(SIZE * 2, SIZE * 2).render(stripes, TilePyramid.key(2, 0, 0));
+        assertEquals(0x000080, tile[0]);
+    }
+
+    @Test
+    public void cacheTest() {
+        TilePyramid.Cache<String> cache = new TilePyramid.Cache<>();
+        cache.setMaxTiles(2);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        assertEquals("a", cache.get(1));
+        cache.put(3, "c");
+
+        // 2 was the least recently used
+        assertEquals(2, cache.size());
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(1) && cache.contains(3));
+
+        cache.setMaxTiles(1);
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains(3));
+
+        // the budget grows with the view and keeps the coarsest tiles
+        TilePyramid pyramid = new TilePyramid(600, 1000);
+        assertEquals(3 * 2 * 2 + 3, pyramid.getTileBudget(1, 1));
+        assertTrue(pyramid.getTileBudget(3, 4) > pyramid.getTileBudget(3, 3));
+    }
+}
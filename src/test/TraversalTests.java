@@ -0,0 +1,159 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import main.*;
+
+public class TraversalTests {
+
+    @Test
+    public void linearTest() {
+        int[][] cover = Fixtures.noise(13, 17);
+        boolean[] message = Fixtures.bits(150);
+        assertArrayEquals(Steganography.embedBitArray(cover, message),
+                Steganography.embedBitArray(cover, message, Traversal.LINEAR));
+        assertArrayEquals(Arrays.copyOf(Steganography.revealBitArray(cover), 200),
+                Steganography.revealBitArray(cover, 200, Traversal.LINEAR));
+    }
+
+    @Test
+    public void spiralTest() {
+        assertArrayEquals(SpiralEncodingTests.encodedCover, Steganography.embedBitArray(SpiralEncodingTests.cover,
+                SpiralEncodingTests.bitArray, Traversal.SPIRAL));
+
+        int[][] cover = Fixtures.noise(12, 9);
+        boolean[] message = Fixtures.bits(100);
+        assertArrayEquals(Steganography.embedSpiralBitArray(cover, message),
+                Steganography.embedBitArray(cover, message, Traversal.SPIRAL));
+        assertArrayEquals(Steganography.revealSpiralBitArray(cover),
+                Steganography.revealBitArray(cover, 12 * 9, Traversal.SPIRAL));
+    }
+
+    @Test
+    public void hilbertVisitsEachPixelOnceTest() {
+        int[][] sizes = { { 1, 1 }, { 64, 64 }, { 70, 130 }, { 3, 200 } };
+        for (int[] size : sizes) {
+            int[][] visits = new int[size[0]][size[1]];
+            Traversal.HILBERT.traverse(size[0], size[1], (y, x) -> {
+                ++visits[y][x];
+                return true;
+            });
+            for (int[] row : visits)
+                for (int count : row)
+                    assertEquals(1, count);
+        }
+    }
+
+    @Test
+    public void hilbertIsContinuousTest() {
+        int[] previous = { 0, -1 };
+        Traversal.HILBERT.traverse(64, 64, (y, x) -> {
+            if (previous[1] >= 0)
+                assertEquals(1, Math.abs(y - previous[0]) + Math.abs(x - previous[1]));
+            previous[0] = y;
+            previous[1] = x;
+            return true;
+        });
+    }
+
+    @Test
+    public void framedRoundTripTest() {
+        int[][] cover = Fixtures.noise(90, 75);
+        boolean[] message = Fixtures.bits(3000);
+        for (Traversal traversal : new Traversal[] { Traversal.LINEAR, Traversal.SPIRAL, Traversal.HILBERT }) {
+            int[][] hidden = Steganography.embedFramedBitArray(cover, message, traversal);
+            assertEquals(traversal.getLayout(), Steganography.revealHeader(hidden).getLayout());
+            assertArrayEquals(message, Steganography.revealFramedBitArray(hidden));
+
+            hidden = Steganography.embedFramedText(cover, "Hello, world!", traversal);
+            assertEquals("Hello, world!", Steganography.revealFramedText(hidden));
+        }
+
+        // UTF-8 text takes half the pixels of ASCII text
+        int[][] hidden = Steganography.embedFramedText(cover, "Hello, \u00e9t\u00e9 \ud83d\ude00", Traversal.HILBERT, PayloadHeader.UTF8);
+        assertEquals(8 * 17, Steganography.revealHeader(hidden).getLength());
+        assertEquals("Hello, \u00e9t\u00e9 \ud83d\ude00", Steganography.revealFramedText(hidden));
+
+        hidden = Steganography.embedFramedText(cover, "abracadabra, abracadabra", Traversal.SPIRAL, PayloadHeader.HUFFMAN);
+        assertEquals("abracadabra, abracadabra", Steganography.revealFramedText(hidden));
+
+        // the linear layout stays compatible with the framed text written before traversals
+        hidden = Steganography.embedFramedText(cover, "Hi");
+        PayloadHeader header = Steganography.revealHeader(hidden);
+        assertEquals(PayloadHeader.LINEAR, header.getLayout());
+        assertEquals(PayloadHeader.UTF16, header.getCodec());
+        assertEquals(0, header.getFlags());
+        assertEquals(2 * Character.SIZE, header.getLength());
+        assertArrayEquals(TextMessage.stringToBitArray("Hi"), Steganography.revealBitArray(hidden, PayloadHeader.SIZE, 2 * Character.SIZE));
+    }
+
+    @Test
+    public void checksumTest() {
+        int[][] cover = Fixtures.noise(60, 70);
+        boolean[] message = Fixtures.bits(2000);
+        for (Traversal traversal : new Traversal[] { Traversal.LINEAR, Traversal.SPIRAL, Traversal.HILBERT }) {
+            int[][] hidden = Steganography.embedFramedBitArray(cover, message, traversal, PayloadHeader.CRC32C);
+            assertTrue(Steganography.verify(hidden));
+            assertArrayEquals(message, Steganography.revealFramedBitArray(hidden));
+
+            // a single flipped payload bit is detected
+            int[][] damaged = Steganography.embedFramedBitArray(cover, message, traversal, PayloadHeader.CRC32C);
+            int[] count = { 0 };
+            traversal.traverse(60, 70, (y, x) -> {
+                if (y * 70 + x >= PayloadHeader.SIZE && ++count[0] == 1000) {
+                    damaged[y][x] ^= 1;
+                    return false;
+                }
+                return true;
+            });
+            assertFalse(Steganography.verify(damaged));
+            assertNull(Steganography.revealFramedBitArray(damaged));
+        }
+
+        String text = "Checked text";
+        int[][] hidden = Steganography.embedFramedText(cover, text, Traversal.LINEAR, PayloadHeader.UTF8, PayloadHeader.CRC32C);
+        assertEquals(text, Steganography.revealFramedText(hidden));
+
+        assertFalse(Steganography.verify(cover));
+        assertFalse(Steganography.verify(Steganography.embedFramedBitArray(cover, message, Traversal.LINEAR)));
+    }
+
+    @Test
+    public void encryptedRoundTripTest() {
+        char[] passphrase = "correct horse battery staple".toCharArray();
+        int[][] cover = Fixtures.noise(200, 200);
+
+        // several segments, and a multi-byte sequence cut by a segment boundary
+        StringBuilder builder = new StringBuilder("\u00E9 ");
+        for (int i = 0; i < 300; ++i)
+            builder.append("Fr\u00FChling \uD83C\uDF38 ");
+        String text = builder.toString();
+
+        for (Traversal traversal : new Traversal[] { Traversal.LINEAR, Traversal.SPIRAL, Traversal.HILBERT }) {
+            int[][] hidden = PayloadCipher.embedText(cover, text, passphrase, traversal);
+            assertEquals(text, PayloadCipher.revealText(hidden, passphrase));
+            assertNull(PayloadCipher.revealText(hidden, "wrong".toCharArray()));
+            assertNull(Steganography.revealFramedText(hidden));
+
+            PayloadHeader header = Steganography.revealHeader(hidden);
+            assertEquals(PayloadHeader.ENCRYPTED, header.getFlags());
+            assertEquals(PayloadCipher.getEncryptedSize(8L * TextMessage.utf8Length(text)), header.getLength());
+        }
+
+        boolean[] bits = new boolean[1001];
+        for (int i = 0; i < bits.length; ++i)
+            bits[i] = i % 7 < 3;
+        int[][] hidden = PayloadCipher.embedBitArray(cover, bits, passphrase, Traversal.SPIRAL);
+        assertArrayEquals(bits, PayloadCipher.revealBitArray(hidden, passphrase));
+        assertArrayEquals(new boolean[0], PayloadCipher.revealBitArray(PayloadCipher.embedBitArray(cover, new boolean[0], passphrase, Traversal.LINEAR), passphrase));
+
+        // a single flipped LSB of the ciphertext is detected
+        hidden[199][0] ^= 1;
+        assertNull(PayloadCipher.revealBitArray(hidden, passphrase));
+        assertNull(PayloadCipher.revealBitArray(cover, passphrase));
+    }
+}
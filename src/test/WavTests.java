@@ -0,0 +1,91 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Test;
+
+import main.*;
+
+public class WavTests {
+
+    private static File writeWav(int samples, int bits) throws IOException {
+        AudioFormat format = new AudioFormat(44100, bits, 2, true, false);
+        byte[] data = new byte[samples * bits / 8];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 7919 + i / 3);
+        File file = File.createTempFile("audio", ".wav");
+        file.deleteOnExit();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(data), format, data.length / format.getFrameSize()),
+                AudioFileFormat.Type.WAVE, file);
+        return file;
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        // several blocks of samples
+        File cover = writeWav(200_000, 16);
+        File hidden = File.createTempFile("hidden", ".wav");
+        hidden.deleteOnExit();
+        assertEquals(200_000 - PayloadHeader.SIZE, WavCarrier.getCapacity(cover.getPath()));
+
+        boolean[] payload = Fixtures.bits(150_000);
+        WavCarrier.embedBitArray(cover.getPath(), hidden.getPath(), payload);
+        assertArrayEquals(payload, WavCarrier.revealBitArray(hidden.getPath()));
+        assertEquals(payload.length, WavCarrier.revealHeader(hidden.getPath()).getLength());
+
+        // only the LSBs of the samples differ
+        byte[] before = Files.readAllBytes(cover.toPath());
+        byte[] after = Files.readAllBytes(hidden.toPath());
+        assertEquals(before.length, after.length);
+        for (int i = 0; i < before.length; i++)
+            assertEquals(before[i] & ~1, after[i] & ~1);
+
+        WavCarrier.embedText(cover.getPath(), hidden.getPath(), "Hello, audio!");
+        assertEquals("Hello, audio!", WavCarrier.revealText(hidden.getPath()));
+        assertNull(WavCarrier.revealText(cover.getPath()));
+    }
+
+    @Test
+    public void rejectsSameFileTest() throws IOException {
+        File cover = writeWav(1000, 16);
+        byte[] before = Files.readAllBytes(cover.toPath());
+        try {
+            WavCarrier.embedText(cover.getPath(), cover.getPath(), "Hi");
+            fail("Embedded into the input file");
+        } catch (IOException e) {
+            // the carrier is left untouched
+            assertArrayEquals(before, Files.readAllBytes(cover.toPath()));
+        }
+    }
+
+    @Test
+    public void rejectsShortFormatTest() throws IOException {
+        File cover = writeWav(1000, 16);
+        byte[] bytes = Files.readAllBytes(cover.toPath());
+        // the fmt chunk of the header written by AudioSystem starts at byte 12, its length at byte 16
+        assertEquals('f', bytes[12]);
+        bytes[16] = 8;
+        Files.write(cover.toPath(), bytes);
+        try {
+            WavCarrier.getCapacity(cover.getPath());
+            fail("Parsed a truncated fmt chunk");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("fmt"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsEightBitTest() throws IOException {
+        WavCarrier.getCapacity(writeWav(1000, 8).getPath());
+    }
+}